@@ -0,0 +1,96 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A digest of the contents of one bucket of a partitioned region, or one slice of a replicated
+ * region, as computed by the Digest function.
+ *
+ * The keys of the bucket are divided into key ranges (see KeyCursor.rangeOf) and each range
+ * has a hash that is the sum of the hashes of its entries, so it does not depend on the
+ * order in which the entries were visited.  The root hash combines the range hashes.  This
+ * makes a two level hash tree: equal roots mean the bucket is the same on both sites,
+ * otherwise comparing the range hashes finds the ranges that differ.
+ */
+public class BucketDigest implements Serializable {
+	private static final long serialVersionUID = -3641960390254718845L;
+
+	private int bucketId;
+	private long entryCount;
+	private long []rangeHashes;
+	private long root;
+
+	public BucketDigest(int bucketId, long entryCount, long []rangeHashes){
+		this.bucketId = bucketId;
+		this.entryCount = entryCount;
+		this.rangeHashes = rangeHashes;
+
+		long h = rangeHashes.length;
+		for(long rangeHash : rangeHashes) h = mix(h * 31 + rangeHash);
+		this.root = h;
+	}
+
+	public int getBucketId() {
+		return bucketId;
+	}
+
+	public long getEntryCount() {
+		return entryCount;
+	}
+
+	public long[] getRangeHashes() {
+		return rangeHashes;
+	}
+
+	public long getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return the key ranges in which this digest and other differ, an empty set if they are the
+	 * same, or null if the whole bucket must be considered different because other is missing or
+	 * was computed with a different number of ranges
+	 */
+	public Set<Integer> differingRanges(BucketDigest other){
+		if (other == null || other.rangeHashes.length != rangeHashes.length) return null;  // RETURN
+
+		Set<Integer> result = new TreeSet<Integer>();
+		if (other.root == root) return result;  // RETURN
+
+		for(int i=0; i < rangeHashes.length; ++i){
+			if (rangeHashes[i] != other.rangeHashes[i]) result.add(i);
+		}
+		return result;
+	}
+
+	/**
+	 * the 64 bit finalizer from MurmurHash3, spreads every input bit over the whole result
+	 */
+	public static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 64 bit FNV-1a of the bytes, mixed
+	 */
+	public static long hash(byte []bytes){
+		long h = 0xcbf29ce484222325L;
+		for(byte b : bytes){
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	@Override
+	public String toString(){
+		return "bucket " + bucketId + ": " + entryCount + " entries, root " + Long.toHexString(root);
+	}
+}
@@ -0,0 +1,52 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+
+public class DigestArgs implements Serializable {
+	private static final long serialVersionUID = 6310457712907139871L;
+
+	public static final int DEFAULT_KEY_RANGE_COUNT = 64;
+
+	private String regionName;
+	private int keyRangeCount;
+	private int parallelism;
+
+	public DigestArgs(){
+		// set defaults
+		regionName = null;
+		keyRangeCount = DEFAULT_KEY_RANGE_COUNT;
+		parallelism = 0;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public void setRegionName(String regionName) {
+		this.regionName = regionName;
+	}
+
+	public int getKeyRangeCount() {
+		return keyRangeCount;
+	}
+
+	/**
+	 * the number of key ranges in each bucket digest, both sites must use the same number
+	 */
+	public void setKeyRangeCount(int keyRangeCount) {
+		this.keyRangeCount = keyRangeCount;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * the number of buckets each member will digest at the same time, 0 (the default) means one
+	 * per processor
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+}
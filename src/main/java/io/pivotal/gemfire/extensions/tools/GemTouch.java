@@ -2,9 +2,18 @@ package io.pivotal.gemfire.extensions.tools;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,13 +28,24 @@ import org.apache.geode.cache.Region;
 import org.apache.geode.cache.client.ClientCache;
 import org.apache.geode.cache.client.ClientCacheFactory;
 import org.apache.geode.cache.client.ClientRegionShortcut;
+import org.apache.geode.cache.client.Pool;
+import org.apache.geode.cache.client.PoolManager;
+import org.apache.geode.cache.client.ServerConnectivityException;
 import org.apache.geode.cache.execute.Execution;
+import org.apache.geode.cache.execute.FunctionInvocationTargetException;
 import org.apache.geode.cache.execute.FunctionService;
-import org.apache.geode.cache.execute.ResultCollector;
+import org.apache.geode.internal.cache.execute.InternalExecution;
+import org.apache.geode.management.DistributedRegionMXBean;
 import org.apache.geode.management.DistributedSystemMXBean;
+import org.apache.geode.management.PartitionAttributesData;
+import org.apache.geode.management.RegionAttributesData;
 
 public class GemTouch {
 	public static String NAME = "Touch";
+	public static String CLEAR_CHECKPOINTS_NAME = "ClearTouchCheckpoints";
+	public static String DIGEST_NAME = "TouchDigest";
+	public static String ESTIMATE_NAME = "TouchEstimate";
+	public static String CONTROL_NAME = "TouchControl";
 	
 	private static String jmxManagerHost = null;
 	private static int jmxManagerPort = 0;
@@ -33,6 +53,30 @@ public class GemTouch {
 	private static String userName = null;
 	private static String password = null;
 	private static int regionCreationDelay = 20;
+	private static int parallelism = 1;
+	private static String jobName = TouchAllArgs.DEFAULT_JOB_NAME;
+	private static boolean resume = false;
+	private static int maxConcurrentRegions = 1;
+	private static int minBatchSize = 10;
+	private static int maxBatchSize = 1000;
+	private static boolean backpressure = false;
+	private static int maxQueueSize = 100000;
+	private static int resumeQueueSize = -1;
+	private static long modifiedSince = 0l;
+	private static boolean serializedValues = false;
+	private static boolean compareAndSwap = false;
+	private static boolean enqueue = false;
+	private static boolean overflowAware = false;
+	private static boolean dryRun = false;
+	private static List<String> gatewaySenderIds = new ArrayList<String>();
+	private static String compareWithLocator = null;
+	private static Set<String> partitionedRegions = new HashSet<String>();
+	private static Map<String, Integer> bucketCounts = new HashMap<String, Integer>();
+	private static Set<String> replicatedRegions = new HashSet<String>();
+	private static String runId = UUID.randomUUID().toString();
+	private static TouchProgressView progressView;
+	private static volatile boolean cancelled = false;
+	private static TouchEstimateReport estimateReport = new TouchEstimateReport();
 	
 	private static String JMX_MANAGER_HOST_PREFIX="--jmx-manager-host=";
 	private static String JMX_MANAGER_PORT_PREFIX="--jmx-manager-port=";
@@ -41,9 +85,32 @@ public class GemTouch {
 	private static String RATE_PER_SECOND_PREFIX="--rate-per-second=";
 	private static String METADATA_REGION_NAME_PREFIX="--metadata-region-name=";
 	private static String REGION_CREATION_DELAY_PREFIX="--region-creation-delay=";
+	private static String PARALLELISM_PREFIX="--parallelism=";
+	private static String JOB_NAME_PREFIX="--job-name=";
+	private static String RESUME_FLAG="--resume";
+	private static String MAX_CONCURRENT_REGIONS_PREFIX="--max-concurrent-regions=";
+	private static String MIN_BATCH_SIZE_PREFIX="--min-batch-size=";
+	private static String MAX_BATCH_SIZE_PREFIX="--max-batch-size=";
+	private static String BACKPRESSURE_FLAG="--backpressure";
+	private static String MAX_QUEUE_SIZE_PREFIX="--max-queue-size=";
+	private static String RESUME_QUEUE_SIZE_PREFIX="--resume-queue-size=";
+	private static String MODIFIED_SINCE_PREFIX="--modified-since=";
+	private static String SERIALIZED_VALUES_FLAG="--serialized-values";
+	private static String COMPARE_AND_SWAP_FLAG="--compare-and-swap";
+	private static String ENQUEUE_FLAG="--enqueue";
+	private static String OVERFLOW_AWARE_FLAG="--overflow-aware";
+	private static String DRY_RUN_FLAG="--dry-run";
+	private static String GATEWAY_SENDER_ID_PREFIX="--gateway-sender-id=";
+	private static String COMPARE_WITH_LOCATOR_PREFIX="--compare-with-locator=";
+	
+	private static Pattern LOCATOR_PATTERN = Pattern.compile("(.*)\\[(.*)\\]");
+	private static String REMOTE_POOL_NAME = "remote";
 	
 	private static String METADATA_REGION="/__regionAttributesMetadata";
 	
+	private static int MAX_RETRIES = 3;
+	private static long RETRY_POLL_MS = 1000l;
+	
 	//TODO: 
 	
 	public static void main(String []args){
@@ -51,6 +118,7 @@ public class GemTouch {
 		JMXConnector jmxc = null;
 		try {
 			parseArgs(args);
+			progressView = new TouchProgressView(modifiedSince > 0 || compareWithLocator != null);
 			
 			JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://" + jmxManagerHost + ":" + jmxManagerPort + "/jmxrmi");
 			HashMap<String, Serializable> env = null;
@@ -64,10 +132,27 @@ public class GemTouch {
 			DistributedSystemMXBean distributedSystemBean  = JMX.newMXBeanProxy(mbsc, oname, DistributedSystemMXBean.class);
 			initCache(distributedSystemBean);	
 			
+			if (!resume && !dryRun) clearCheckpoints();
+			if (!dryRun) resetControls();
+			
 			String []regionNames = distributedSystemBean.listAllRegionPaths();
 			ArrayList<String> regionNameList = new ArrayList<String>(regionNames.length);
 			for (String regionName : regionNames){
-				if (regionName.equals(METADATA_REGION)){
+				DistributedRegionMXBean regionBean = regionBean(mbsc, distributedSystemBean, regionName);
+				if (regionBean.getRegionType().contains("PARTITION")){
+					partitionedRegions.add(regionName);
+					bucketCounts.put(regionName, regionBean.listPartitionAttributes().getTotalNumBuckets());
+				}
+				if (regionBean.getRegionType().contains("REPLICATE")) replicatedRegions.add(regionName);
+				
+				if (!feedsGatewaySenders(regionBean)){
+					System.out.println("skipping " + regionName + ", it does not feed any of the gateway senders " + gatewaySenderIds);
+					continue;
+				}
+				
+				if (regionName.equals(METADATA_REGION) && dryRun){
+					estimateRegion(METADATA_REGION);
+				} else if (regionName.equals(METADATA_REGION)){
 					touchRegion(METADATA_REGION);
 					
 					if (regionCreationDelay > 0){
@@ -83,14 +168,29 @@ public class GemTouch {
 				}
 			}
 
-			
-			Collections.sort(regionNameList);
+			if (dryRun){
+				for(String regionName: regionNameList) estimateRegion(regionName);
+				estimateReport.printTotals(ratePerSecond, parallelism, maxConcurrentRegions);
+			} else {
+				TouchScheduler scheduler = new TouchScheduler(maxConcurrentRegions);
+				for(String regionName: regionNameList){
+					DistributedRegionMXBean regionBean = regionBean(mbsc, distributedSystemBean, regionName);
+					scheduler.add(regionName, regionBean.getSystemRegionEntryCount(), colocatedWith(regionBean));
+				}
+				
+				scheduler.run(new Consumer<String>(){
+					@Override
+					public void accept(String regionName) {
+						touchRegion(regionName);
+					}
+				});
 				
-			for(String regionName: regionNameList){
-				touchRegion(regionName);
+				// one JSON object per line so scripts can pick these out with grep
+				for(String summary : progressView.summary()) System.out.println("SUMMARY " + summary);
 			}
 			
-			rc = 0;
+			// a cancelled job did not fail but it is not finished either
+			rc = cancelled ? 2 : 0;
 			
 		} catch(Exception x){
 			x.printStackTrace(System.err);
@@ -111,15 +211,249 @@ public class GemTouch {
 		System.exit(rc);
 	}
 	
+	private static DistributedRegionMXBean regionBean(MBeanServerConnection mbsc, DistributedSystemMXBean distributedSystemBean, String regionName) throws Exception {
+		return JMX.newMXBeanProxy(mbsc, distributedSystemBean.fetchDistributedRegionObjectName(regionName), DistributedRegionMXBean.class);
+	}
+	
+	// true if no gateway senders were specified or the region feeds at least one of them, the 
+	// servers make the same check so this just avoids invoking Touch on regions it would skip
+	private static boolean feedsGatewaySenders(DistributedRegionMXBean regionBean){
+		if (gatewaySenderIds.isEmpty()) return true;  // RETURN
+		
+		RegionAttributesData attributes = regionBean.listRegionAttributes();
+		for(String id : gatewaySenderIds){
+			if (attributes.getGatewaySenderIds() != null && attributes.getGatewaySenderIds().contains(id)) return true;  // RETURN
+			if (attributes.getAsyncEventQueueIds() != null && attributes.getAsyncEventQueueIds().contains(id)) return true;  // RETURN
+		}
+		return false;
+	}
+	
+	private static String colocatedWith(DistributedRegionMXBean regionBean){
+		PartitionAttributesData partitionAttributes = regionBean.listPartitionAttributes();
+		if (partitionAttributes == null) return null; // RETURN
+		
+		String result = partitionAttributes.getColocatedWith();
+		if (result == null || result.length() == 0) return null;  // RETURN
+		
+		return result.startsWith("/") ? result : "/" + result;
+	}
+	
 	private static void touchRegion(String regionName){
+		if (cancelled){
+			System.out.println("skipping " + regionName + ", the job was cancelled");
+			return;  // RETURN
+		}
+		
+		Region<Object,Object> r = getRegion(regionName);
+		TouchAllArgs touchAllArgs = touchAllArgs(regionName);
+		if (touchAllArgs == null) return;  // RETURN - nothing to touch
+		
+		ProgressResultCollector collector = new ProgressResultCollector(progressView, r.getFullPath());
+		if (replicatedRegions.contains(regionName)){
+			touchReplicatedRegion(regionName, touchAllArgs, collector);
+		} else {
+			touchPartitionedRegion(r, touchAllArgs, collector);
+		}
+		
+		for(TouchProgress progress : collector.getResult()){
+			if (progress.isCancelled()) cancelled = true;
+		}
+		if (cancelled){
+			System.out.println("touch for " + r.getFullPath() + " was cancelled, use --resume with the same --job-name to finish it");
+			return;  // RETURN
+		}
+		System.out.println("finished touch for " + r.getFullPath());	
+	}
+	
+	// Every server is asked to touch the region, those hosting it share the slices between them 
+	// and the others report that they were skipped.  Losing a server fails the execution but not
+	// the touch, the servers that remain take over its slices (see SliceClaims), so we just join 
+	// them again and wait for them to finish.
+	private static void touchReplicatedRegion(String regionName, TouchAllArgs touchAllArgs, ProgressResultCollector collector){
+		touchAllArgs.setRegionName(regionName);
+		Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+		for(int attempt = 0; ; ++attempt){
+			try {
+				FunctionService.onServers(pool).withArgs(touchAllArgs).withCollector(collector).execute(GemTouch.NAME).getResult();
+				return;  // RETURN
+			} catch(RuntimeException x){
+				if (!lostMember(x) || attempt == MAX_RETRIES) throw x;
+				
+				System.out.println("lost a server while touching " + regionName + ", waiting for the others to finish: " + x.getMessage());
+				collector.nextAttempt();
+			}
+		}
+	}
+	
+	// Touch is not HA.  If a member is lost the buckets no member reported as completed are touched 
+	// again, by whichever members now hold their primaries, once the members that are still up have 
+	// finished with theirs.  The retry resumes the run, so buckets completed after their last report 
+	// are skipped too.
+	private static void touchPartitionedRegion(Region<Object,Object> r, TouchAllArgs touchAllArgs, ProgressResultCollector collector){
+		Set<Integer> remaining = null;  // all of them
+		for(int attempt = 0; ; ++attempt){
+			try {
+				InternalExecution exec = (InternalExecution) FunctionService.onRegion(r).withArgs(touchAllArgs).withCollector(collector);
+				if (remaining != null) exec = exec.withBucketFilter(remaining);
+				exec.execute(GemTouch.NAME).getResult();
+				return;  // RETURN
+			} catch(RuntimeException x){
+				if (!lostMember(x) || attempt == MAX_RETRIES || !bucketCounts.containsKey(r.getFullPath())) throw x;
+				
+				System.out.println("lost a server while touching " + r.getFullPath() + ": " + x.getMessage());
+				awaitFinished(r.getFullPath());
+				remaining = remainingBuckets(r.getFullPath(), touchAllArgs, collector.getCompletedUnits());
+				if (remaining.isEmpty()) return;  // RETURN
+				
+				System.out.println("touching the " + remaining.size() + " buckets of " + r.getFullPath() + " that were not completed again");
+				touchAllArgs.setResume(true);
+				collector.nextAttempt();
+			}
+		}
+	}
+	
+	// true if x, or what caused it, means that a server left while executing a function
+	private static boolean lostMember(Throwable x){
+		for(Throwable t = x; t != null; t = t.getCause()){
+			if (t instanceof ServerConnectivityException || t instanceof FunctionInvocationTargetException) return true;  // RETURN
+		}
+		return false;
+	}
+	
+	// waits until no server is touching the region for this job
+	private static void awaitFinished(String regionName){
+		Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+		for(int i=0; ; ++i){
+			boolean running = false;
+			try {
+				List<?> results = (List<?>) FunctionService.onServers(pool).withArgs(new String[]{GemTouchControl.STATUS, jobName}).execute(CONTROL_NAME).getResult();
+				for(Object result : results){
+					for(Object progress : (List<?>) result){
+						if (((TouchProgress) progress).getRegionName().equals(regionName)) running = true;
+					}
+				}
+			} catch(RuntimeException x){
+				// the pool has not yet noticed the server is gone, ask again
+				if (!lostMember(x)) throw x;
+				running = true;
+			}
+			if (!running) return;  // RETURN
+			
+			if (i == 0) System.out.println("waiting for the servers still touching " + regionName + " to finish");
+			try {
+				Thread.sleep(RETRY_POLL_MS);
+			} catch(InterruptedException x){
+				Thread.currentThread().interrupt();
+				return;  // RETURN
+			}
+		}
+	}
+	
+	// the buckets of the region that no member has reported as completed, less any that 
+	// --compare-with-locator found to be the same on both sites
+	private static Set<Integer> remainingBuckets(String regionName, TouchAllArgs touchAllArgs, Set<Integer> completed){
+		Set<Integer> result = new TreeSet<Integer>();
+		for(int i=0; i < bucketCounts.get(regionName); ++i) result.add(i);
+		result.removeAll(completed);
+		if (touchAllArgs.getKeyRanges() != null) result.retainAll(touchAllArgs.getKeyRanges().keySet());
+		return result;
+	}
+	
+	// a dry run, see Estimate
+	private static void estimateRegion(String regionName){
 		Region<Object,Object> r = getRegion(regionName);
+		TouchAllArgs touchAllArgs = touchAllArgs(regionName);
+		if (touchAllArgs == null) return;  // RETURN - nothing to touch
 		
+		List<TouchEstimate> results = (List<TouchEstimate>) FunctionService.onRegion(r).withArgs(touchAllArgs).execute(ESTIMATE_NAME).getResult();
+		estimateReport.add(regionName, results);
+	}
+	
+	// null if there is nothing to touch
+	private static TouchAllArgs touchAllArgs(String regionName){
 		TouchAllArgs touchAllArgs = new TouchAllArgs();
+		if (compareWithLocator != null){
+			Map<Integer, Set<Integer>> keyRanges = differences(regionName);
+			if (keyRanges.isEmpty()){
+				System.out.println(regionName + " is the same on both sites, nothing to touch");
+				return null;  // RETURN
+			}
+			
+			System.out.println(regionName + " differs in " + keyRanges.size() + " buckets");
+			touchAllArgs.setKeyRanges(DigestArgs.DEFAULT_KEY_RANGE_COUNT, keyRanges);
+		}
 		touchAllArgs.setRatePerSecond(ratePerSecond);
-		Execution exec = FunctionService.onRegion(r).withArgs(touchAllArgs).withCollector(new LoggingResultCollector());
-		ResultCollector<String,String> results = (ResultCollector<String,String>) exec.execute(GemTouch.NAME);
-		results.getResult();
-		System.out.println("finished touch for " + r.getFullPath());	
+		touchAllArgs.setParallelism(parallelism);
+		touchAllArgs.setJobName(jobName);
+		touchAllArgs.setRunId(runId);
+		touchAllArgs.setResume(resume);
+		touchAllArgs.setMinBatchSize(minBatchSize);
+		touchAllArgs.setMaxBatchSize(maxBatchSize);
+		touchAllArgs.setBackpressure(backpressure);
+		touchAllArgs.setMaxQueueSize(maxQueueSize);
+		touchAllArgs.setResumeQueueSize(resumeQueueSize);
+		touchAllArgs.setModifiedSince(modifiedSince);
+		touchAllArgs.setSerializedValues(serializedValues);
+		touchAllArgs.setOverflowAware(overflowAware);
+		if (enqueue)
+			touchAllArgs.setMode(TouchAllArgs.Mode.ENQUEUE);
+		else
+			touchAllArgs.setMode(compareAndSwap ? TouchAllArgs.Mode.COMPARE_AND_SWAP : TouchAllArgs.Mode.TRANSACTIONAL);
+		touchAllArgs.setGatewaySenderIds(gatewaySenderIds);
+		return touchAllArgs;
+	}
+	
+	// Digests the region on both sites and compares them.  Returns the buckets that differ, 
+	// mapped to the key ranges that differ within them (null for the whole bucket).
+	private static Map<Integer, Set<Integer>> differences(String regionName){
+		Pool localPool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+		Map<Integer, BucketDigest> local = digests(localPool, regionName);
+		Map<Integer, BucketDigest> remote = digests(PoolManager.find(REMOTE_POOL_NAME), regionName);
+		return differences(local, remote);
+	}
+	
+	// the buckets in which the digests of the two sites differ, see differences(String)
+	static Map<Integer, Set<Integer>> differences(Map<Integer, BucketDigest> local, Map<Integer, BucketDigest> remote){
+		Map<Integer, Set<Integer>> result = new TreeMap<Integer, Set<Integer>>();
+		Set<Integer> bucketIds = new TreeSet<Integer>(local.keySet());
+		bucketIds.addAll(remote.keySet());
+		for(Integer bucketId : bucketIds){
+			BucketDigest digest = local.get(bucketId);
+			Set<Integer> ranges = digest == null ? null : digest.differingRanges(remote.get(bucketId));
+			if (ranges == null || !ranges.isEmpty()) result.put(bucketId, ranges);
+		}
+		
+		return result;
+	}
+	
+	private static Map<Integer, BucketDigest> digests(Pool pool, String regionName){
+		DigestArgs digestArgs = new DigestArgs();
+		digestArgs.setRegionName(regionName);
+		
+		// every member digests its own primary buckets but any one member can digest a replicated region
+		Execution exec = partitionedRegions.contains(regionName) ? FunctionService.onServers(pool) : FunctionService.onServer(pool);
+		List<List<BucketDigest>> results = (List<List<BucketDigest>>) exec.withArgs(digestArgs).execute(DIGEST_NAME).getResult();
+		
+		Map<Integer, BucketDigest> result = new HashMap<Integer, BucketDigest>();
+		for(List<BucketDigest> memberResult : results){
+			for(BucketDigest digest : memberResult) result.put(digest.getBucketId(), digest);
+		}
+		
+		return result;
+	}
+	
+	// a new run starts from scratch - forget whatever an earlier run with the same job name completed
+	private static void clearCheckpoints(){
+		Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+		Execution exec = FunctionService.onServer(pool).withArgs(jobName).withCollector(new PrintResultCollector());
+		exec.execute(CLEAR_CHECKPOINTS_NAME).getResult();
+	}
+	
+	// a new run of the job is not paused, cancelled or held to the rate of an earlier one, see gemtouchctl
+	private static void resetControls(){
+		Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+		Execution exec = FunctionService.onServer(pool).withArgs(new String[]{GemTouchControl.RESET, jobName}).withCollector(new PrintResultCollector());
+		exec.execute(CONTROL_NAME).getResult();
 	}
 	
 	private static void initCache(DistributedSystemMXBean dsBean){
@@ -128,13 +462,19 @@ public class GemTouch {
 		setupPools(factory, locatorString);
 		factory.create();
 		System.out.println("connected to distributed system  with locator " + dsBean.listLocators()[0]);
+		
+		if (compareWithLocator != null){
+			Matcher matcher = LOCATOR_PATTERN.matcher(compareWithLocator);
+			matcher.matches();
+			PoolManager.createFactory().addLocator(matcher.group(1), Integer.parseInt(matcher.group(2))).create(REMOTE_POOL_NAME);
+			System.out.println("comparing with distributed system with locator " + compareWithLocator);
+		}
 	}
 	
 	
 	// this will need to be enhanced to support server groups
 	private static void setupPools(ClientCacheFactory ccf, String locator){
-		Pattern pattern = Pattern.compile("(.*)\\[(.*)\\]");
-		Matcher matcher = pattern.matcher(locator);
+		Matcher matcher = LOCATOR_PATTERN.matcher(locator);
 		
 		if (!matcher.matches())
 			throw new RuntimeException("unexpected exception: could not parse locator string retrieved from distributed system: " + locator);
@@ -145,7 +485,8 @@ public class GemTouch {
 		ccf.addPoolLocator(host, port);
 	}
 	
-	private static Region<Object,Object> getRegion(String name){
+	// synchronized because regions are touched concurrently and may share parent regions
+	private static synchronized Region<Object,Object> getRegion(String name){
 		Region<Object,Object> result = ClientCacheFactory.getAnyInstance().getRegion(name);
 		if (result != null) return result; // RETURN
 		
@@ -216,6 +557,100 @@ public class GemTouch {
 					System.err.println("--region-creation-delay must be an integer: " + s);
 					System.exit(1);
 				}
+			} else if (arg.startsWith(PARALLELISM_PREFIX)){
+				String s = arg.substring(PARALLELISM_PREFIX.length());
+				try {
+					parallelism = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--parallelism must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(JOB_NAME_PREFIX)){
+				jobName = arg.substring(JOB_NAME_PREFIX.length());
+				if (jobName.length() == 0){
+					System.err.println("--job-name must not be empty");
+					System.exit(1);
+				}
+				// it separates the parts of the keys of the touch state region, see TouchState.key
+				if (jobName.contains("|")){
+					System.err.println("--job-name must not contain \"|\": " + jobName);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(MAX_CONCURRENT_REGIONS_PREFIX)){
+				String s = arg.substring(MAX_CONCURRENT_REGIONS_PREFIX.length());
+				try {
+					maxConcurrentRegions = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--max-concurrent-regions must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(MIN_BATCH_SIZE_PREFIX)){
+				String s = arg.substring(MIN_BATCH_SIZE_PREFIX.length());
+				try {
+					minBatchSize = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--min-batch-size must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(MAX_BATCH_SIZE_PREFIX)){
+				String s = arg.substring(MAX_BATCH_SIZE_PREFIX.length());
+				try {
+					maxBatchSize = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--max-batch-size must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.equals(BACKPRESSURE_FLAG)){
+				backpressure = true;
+			} else if (arg.startsWith(MAX_QUEUE_SIZE_PREFIX)){
+				String s = arg.substring(MAX_QUEUE_SIZE_PREFIX.length());
+				try {
+					maxQueueSize = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--max-queue-size must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(RESUME_QUEUE_SIZE_PREFIX)){
+				String s = arg.substring(RESUME_QUEUE_SIZE_PREFIX.length());
+				try {
+					resumeQueueSize = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--resume-queue-size must be an integer: " + s);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(MODIFIED_SINCE_PREFIX)){
+				String s = arg.substring(MODIFIED_SINCE_PREFIX.length());
+				try {
+					if (s.matches("[0-9]+"))
+						modifiedSince = Long.parseLong(s);
+					else
+						modifiedSince = Instant.parse(s).toEpochMilli();
+				} catch(DateTimeParseException x){
+					System.err.println("--modified-since must be ms since the epoch or a UTC time like 2021-12-02T10:15:30Z: " + s);
+					System.exit(1);
+				}
+			} else if (arg.equals(SERIALIZED_VALUES_FLAG)){
+				serializedValues = true;
+			} else if (arg.equals(COMPARE_AND_SWAP_FLAG)){
+				compareAndSwap = true;
+			} else if (arg.equals(ENQUEUE_FLAG)){
+				enqueue = true;
+			} else if (arg.equals(OVERFLOW_AWARE_FLAG)){
+				overflowAware = true;
+			} else if (arg.equals(DRY_RUN_FLAG)){
+				dryRun = true;
+			} else if (arg.startsWith(COMPARE_WITH_LOCATOR_PREFIX)){
+				compareWithLocator = arg.substring(COMPARE_WITH_LOCATOR_PREFIX.length());
+				if (!LOCATOR_PATTERN.matcher(compareWithLocator).matches()){
+					System.err.println("--compare-with-locator must be of the form host[port]: " + compareWithLocator);
+					System.exit(1);
+				}
+			} else if (arg.startsWith(GATEWAY_SENDER_ID_PREFIX)){
+				for(String id : arg.substring(GATEWAY_SENDER_ID_PREFIX.length()).split(",")){
+					if (id.trim().length() > 0) gatewaySenderIds.add(id.trim());
+				}
+			} else if (arg.equals(RESUME_FLAG)){
+				resume = true;
 			} else if (arg.startsWith(METADATA_REGION_NAME_PREFIX)){
 				METADATA_REGION = arg.substring(METADATA_REGION_NAME_PREFIX.length());
 				if (! METADATA_REGION.startsWith("/")){
@@ -249,6 +684,37 @@ public class GemTouch {
 			System.err.println("rate per second must be greater than equal 0 if provided");
 			System.exit(1);
 		}
+		
+		if (minBatchSize < 1 || maxBatchSize < minBatchSize){
+			System.err.println("--min-batch-size must be at least 1 and --max-batch-size must not be less than --min-batch-size");
+			System.exit(1);
+		}
+		
+		if (resumeQueueSize == -1) resumeQueueSize = maxQueueSize / 2;
+		if (maxQueueSize < 1 || resumeQueueSize < 0 || resumeQueueSize > maxQueueSize){
+			System.err.println("--max-queue-size must be at least 1 and --resume-queue-size must be between 0 and --max-queue-size");
+			System.exit(1);
+		}
+		
+		if (maxConcurrentRegions < 1){
+			System.err.println("--max-concurrent-regions must be at least 1 if provided");
+			System.exit(1);
+		}
+		
+		if (parallelism < 1){
+			System.err.println("--parallelism must be at least 1 if provided");
+			System.exit(1);
+		}
+		
+		if (enqueue && compareAndSwap){
+			System.err.println("--enqueue and --compare-and-swap can not be used together");
+			System.exit(1);
+		}
+		
+		if (enqueue && overflowAware){
+			System.err.println("--enqueue and --overflow-aware can not be used together");
+			System.exit(1);
+		}
 	}
 	
 	private static void printUsage(){
@@ -256,7 +722,29 @@ public class GemTouch {
 		System.err.println("\t--jmx-manager-host and --jmx-manager-port must point to a GemFire jmx manager (usually the locator)");
 		System.err.println("\t\tif you are not sure of the port number try 1099");		
 		System.err.println("\t--jmxusername and --jmx-manager-password are optional but if either is present the other must also be provided");
-		System.err.println("\t--rate-per-second is optional - acts a a throttle if present");
+		System.err.println("\t--rate-per-second is optional - acts a a throttle if present, the rate is shared by all members");
+		System.err.println("\t--parallelism is optional - the number of buckets each member will touch at once (default 1)");
+		System.err.println("\t--max-concurrent-regions is optional - the number of regions touched at once, largest first (default 1)");
+		System.err.println("\t\tcolocated regions are not started until the region they are colocated with has finished");
+		System.err.println("\t--job-name is optional - runs with the same job name share one rate budget (default " + TouchAllArgs.DEFAULT_JOB_NAME + "), it must not contain \"|\"");
+		System.err.println("\t\tgemtouchctl can pause, resume, cancel, re-rate or show the status of a running job by its name");
+		System.err.println("\t--resume is optional - skips the buckets completed by an earlier, interrupted run with the same job name");
+		System.err.println("\t--min-batch-size and --max-batch-size are optional - bounds for the number of entries touched in each transaction (default 10 and 1000)");
+		System.err.println("\t--modified-since is optional - only touch entries modified at or after this time, given as ms since the epoch or as a UTC time like 2021-12-02T10:15:30Z");
+		System.err.println("\t--serialized-values is optional - re-puts values as they are stored, without deserializing them");
+		System.err.println("\t--compare-with-locator is optional - host[port] of a locator on the other site, only the buckets and key ranges that");
+		System.err.println("\t\tdiffer between the sites are touched");
+		System.err.println("\t--gateway-sender-id is optional - only regions feeding one of the given gateway senders or async event queues are touched,");
+		System.err.println("\t\tmay be repeated or given a comma separated list");
+		System.err.println("\t--compare-and-swap is optional - touches each entry with a conditional replace instead of using transactions");
+		System.err.println("\t--enqueue is optional - puts an event for each entry straight into the gateway senders and async event queues");
+		System.err.println("\t\twithout writing to the region, only parallel senders for partitioned regions");
+		System.err.println("\t--overflow-aware is optional - for regions that overflow to disk, touches entries in the order their values were written to disk");
+		System.err.println("\t\tand lets touched entries be evicted ahead of the entries applications are using");
+		System.err.println("\t--dry-run is optional - touches nothing, samples each bucket and prints the entries, bytes per gateway sender");
+		System.err.println("\t\tand time at --rate-per-second that a touch with the same options would take");
+		System.err.println("\t--backpressure is optional - slows touching down while the region's gateway queues are backing up or the heap is in the eviction state, and pauses it while they are full or the heap is critical");
+		System.err.println("\t\t--max-queue-size (default 100000) and --resume-queue-size (default half of max) control when touching slows down, pauses and resumes");
 		System.err.println();
 		System.err.println("\tif the metadata region \"" + METADATA_REGION + "\" is present it will be touched first ");
 		System.err.println("\tthe name of the metadata region can be set with the --metadata-region-name option");
@@ -0,0 +1,180 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.geode.cache.client.ClientCache;
+import org.apache.geode.cache.client.ClientCacheFactory;
+import org.apache.geode.cache.client.Pool;
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.cache.execute.ResultCollector;
+import org.apache.geode.distributed.DistributedMember;
+
+/**
+ * Controls touch jobs that are already running: pauses, resumes or cancels them, changes their
+ * rate or shows their progress on each member.  Jobs are identified by the --job-name they were
+ * started with.
+ */
+public class GemTouchControl {
+	public static String STATUS = "status";
+	public static String PAUSE = "pause";
+	public static String RESUME = "resume";
+	public static String CANCEL = "cancel";
+	public static String RATE = "rate";
+	public static String RESET = "reset";
+
+	private static String locatorString = null;
+	private static String command = null;
+	private static String jobName = null;
+	private static String rate = null;
+
+	public static void main(String []args){
+		int rc = 1;
+		try {
+			parseArgs(args);
+
+			initCache(locatorString);
+
+			Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+			if (command.equals(STATUS)){
+				// every member reports what it is running
+				FunctionService.onServers(pool).withArgs(new String[]{STATUS, jobName}).withCollector(new StatusResultCollector()).execute(GemTouch.CONTROL_NAME).getResult();
+			} else {
+				// the command is kept in a replicated region, one server is enough
+				FunctionService.onServer(pool).withArgs(new String[]{command, jobName, rate}).withCollector(new PrintResultCollector()).execute(GemTouch.CONTROL_NAME).getResult();
+			}
+
+			rc = 0;
+
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			ClientCache cache = ClientCacheFactory.getAnyInstance();
+			if (cache != null) cache.close();
+		}
+
+		System.exit(rc);
+	}
+
+	private static void initCache(String locatorString){
+		ClientCacheFactory factory = new ClientCacheFactory();
+		setupPools(factory, locatorString);
+		factory.create();
+		System.out.println("connected to distributed system  with locator " + locatorString);
+	}
+
+	// this will need to be enhanced to support server groups
+	private static void setupPools(ClientCacheFactory ccf, String locator){
+		Pattern pattern = Pattern.compile("(.*)\\[(.*)\\]");
+		Matcher matcher = pattern.matcher(locator);
+
+		if (!matcher.matches())
+			throw new RuntimeException("could not parse locator string: " + locator);
+
+		String host = matcher.group(1);
+		int port = Integer.parseInt(matcher.group(2));
+
+		ccf.addPoolLocator(host, port);
+	}
+
+	private static void parseArgs(String []args){
+		if (args.length < 2) {
+			printUsage();
+			System.exit(1);
+		}
+
+		locatorString = args[0];
+		command = args[1];
+		if (command.equals(STATUS)){
+			if (args.length > 3){
+				printUsage();
+				System.exit(1);
+			}
+			if (args.length == 3) jobName = args[2];
+		} else if (command.equals(PAUSE) || command.equals(RESUME) || command.equals(CANCEL)){
+			if (args.length > 3){
+				printUsage();
+				System.exit(1);
+			}
+			jobName = args.length == 3 ? args[2] : TouchAllArgs.DEFAULT_JOB_NAME;
+		} else if (command.equals(RATE)){
+			if (args.length < 3 || args.length > 4){
+				printUsage();
+				System.exit(1);
+			}
+			rate = args[2];
+			if (!rate.matches("[0-9]+")){
+				System.err.println("the rate must be a whole number of entries per second, 0 for unlimited: " + rate);
+				System.exit(1);
+			}
+			jobName = args.length == 4 ? args[3] : TouchAllArgs.DEFAULT_JOB_NAME;
+		} else {
+			System.err.println("unrecognized command: " + command);
+			printUsage();
+			System.exit(1);
+		}
+	}
+
+	private static void printUsage(){
+		System.err.println("usage: gemtouchctl locator-host[port] status [job-name]");
+		System.err.println("       gemtouchctl locator-host[port] pause|resume|cancel [job-name]");
+		System.err.println("       gemtouchctl locator-host[port] rate rate-per-second [job-name]");
+		System.err.println("\tjob-name is the --job-name given to gemtouch (default " + TouchAllArgs.DEFAULT_JOB_NAME + "), status shows all jobs if it is omitted");
+		System.err.println("\tpause holds the job where it is until it is resumed");
+		System.err.println("\tcancel stops the job before its next batch, gemtouch --resume with the same job name finishes it later");
+		System.err.println("\trate replaces the cluster wide rate of the job, 0 for unlimited");
+	}
+
+	/*
+	 * prints the progress reported by each member, grouped by job, once all have reported
+	 */
+	private static class StatusResultCollector implements ResultCollector<List<TouchProgress>, String> {
+		private Map<String, List<String>> jobs = new TreeMap<String, List<String>>();
+		private Map<String, Boolean> paused = new TreeMap<String, Boolean>();
+
+		@Override
+		public synchronized void addResult(DistributedMember member, List<TouchProgress> progressList) {
+			for(TouchProgress progress : progressList){
+				List<String> lines = jobs.get(progress.getJobName());
+				if (lines == null){
+					lines = new ArrayList<String>();
+					jobs.put(progress.getJobName(), lines);
+					paused.put(progress.getJobName(), Boolean.FALSE);
+				}
+				lines.add(member.getName() + " on " + member.getHost() + ": " + progress);
+				if (progress.isPaused()) paused.put(progress.getJobName(), Boolean.TRUE);
+			}
+		}
+
+		@Override
+		public void clearResults() {
+		}
+
+		@Override
+		public synchronized void endResults() {
+			if (jobs.isEmpty()) System.out.println(jobName == null ? "no touch jobs are running" : "touch job " + jobName + " is not running");
+
+			for(Map.Entry<String, List<String>> job : jobs.entrySet()){
+				System.out.println("job " + job.getKey() + (paused.get(job.getKey()) ? " PAUSED" : " RUNNING"));
+				for(String line : job.getValue()) System.out.println("\t" + line);
+			}
+		}
+
+		@Override
+		public String getResult() throws FunctionException {
+			return "done";
+		}
+
+		@Override
+		public String getResult(long arg0, TimeUnit arg1) throws FunctionException,
+				InterruptedException {
+			return "done";
+		}
+	}
+ }
@@ -0,0 +1,84 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The keys written most often to one region on one member, see server.HotKeySketch.  Keys are
+ * sent as text (toString, or JSON for PDX keys) so that the client does not need their classes.
+ */
+public class HotKeyReport implements Serializable {
+	private static final long serialVersionUID = 6154338207460361930L;
+
+	private String memberName;
+	private String regionName;
+	private long events;
+	private long error;
+	private long threshold;
+	private List<HotKey> keys;
+
+	public HotKeyReport(String memberName, String regionName, long events, long error, long threshold, List<HotKey> keys){
+		this.memberName = memberName;
+		this.regionName = regionName;
+		this.events = events;
+		this.error = error;
+		this.threshold = threshold;
+		this.keys = keys;
+	}
+
+	public String getMemberName() {
+		return memberName;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	/**
+	 * @return the number of events counted
+	 */
+	public long getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return how much a count may be over the true count, with 98% probability
+	 */
+	public long getError() {
+		return error;
+	}
+
+	/**
+	 * @return the smallest count kept, a key that is not reported has a lower count
+	 */
+	public long getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @return the keys, highest count first
+	 */
+	public List<HotKey> getKeys() {
+		return keys;
+	}
+
+	public static class HotKey implements Serializable {
+		private static final long serialVersionUID = -2391718230954416211L;
+
+		private String key;
+		private long count;
+
+		public HotKey(String key, long count){
+			this.key = key;
+			this.count = count;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
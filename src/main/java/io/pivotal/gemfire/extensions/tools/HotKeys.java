@@ -0,0 +1,167 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.geode.cache.client.ClientCache;
+import org.apache.geode.cache.client.ClientCacheFactory;
+import org.apache.geode.cache.client.Pool;
+import org.apache.geode.cache.execute.Execution;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.cache.execute.ResultCollector;
+
+/**
+ * Collects the HotKeyReports of a region from every member and prints the keys written most often
+ * across the cluster.
+ *
+ * One event can fire the listener on several members: every replica of a replicated region and, 
+ * besides the primary, the redundant copies of a partitioned region's bucket.  Every member that 
+ * counts a key sees the same events of it, so summing the reports would count an event once per copy.
+ * A key's count in the cluster is the highest count any member reports for it instead, which is also
+ * right for a copy that missed some of the key's events because it was created while the key was 
+ * being counted.
+ */
+public class HotKeys {
+	public static String NAME = "HotKeys";
+		
+	private static String TOP_PREFIX="--top=";
+	private static int DEFAULT_TOP = 20;
+	
+	private static String locatorString = null;
+	private static String regionName = null;
+	private static int top = DEFAULT_TOP;
+	
+	public static void main(String []args){
+		int rc = 1;
+		try {
+			parseArgs(args);
+
+			initCache(locatorString);
+			
+			Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+			
+			Execution exec = FunctionService.onServers(pool).withArgs(regionName);
+			
+			ResultCollector coll = exec.execute(NAME);
+			List<Object> results = (List<Object>) coll.getResult();
+			
+			List<HotKeyReport> reports = new ArrayList<HotKeyReport>(results.size());
+			for(Object result : results){
+				if (result instanceof HotKeyReport){
+					HotKeyReport report = (HotKeyReport) result;
+					reports.add(report);
+					System.out.println(report.getMemberName() + ": " + report.getEvents() + " events counted, counts may be over by " + report.getError()
+							+ ", keys not kept were written at most " + report.getThreshold() + " times");
+				} else {
+					System.out.println(result);
+				}
+			}
+			
+			printTop(merge(reports), top);
+			
+			rc = 0;
+			
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			ClientCache cache = ClientCacheFactory.getAnyInstance();
+			if (cache != null) cache.close();
+		}
+		
+		System.exit(rc);
+	}
+	
+	/**
+	 * @return the keys of all reports, each with the highest count reported for it, highest first
+	 */
+	public static List<HotKeyReport.HotKey> merge(List<HotKeyReport> reports){
+		Map<String, Long> counts = new HashMap<String, Long>();
+		for(HotKeyReport report : reports){
+			for(HotKeyReport.HotKey key : report.getKeys()){
+				Long count = counts.get(key.getKey());
+				if (count == null || count.longValue() < key.getCount()) counts.put(key.getKey(), key.getCount());
+			}
+		}
+		
+		List<HotKeyReport.HotKey> merged = new ArrayList<HotKeyReport.HotKey>(counts.size());
+		for(Map.Entry<String, Long> entry : counts.entrySet()) merged.add(new HotKeyReport.HotKey(entry.getKey(), entry.getValue()));
+		Collections.sort(merged, new Comparator<HotKeyReport.HotKey>(){
+			@Override
+			public int compare(HotKeyReport.HotKey a, HotKeyReport.HotKey b) {
+				return Long.compare(b.getCount(), a.getCount());
+			}
+		});
+		return merged;
+	}
+	
+	private static void printTop(List<HotKeyReport.HotKey> keys, int top){
+		System.out.println("rank\tcount\tkey");
+		for(int i=0; i < keys.size() && i < top; ++i){
+			System.out.println((i + 1) + "\t" + keys.get(i).getCount() + "\t" + keys.get(i).getKey());
+		}
+	}
+	
+	private static void initCache(String locatorString){
+		ClientCacheFactory factory = new ClientCacheFactory();
+		setupPools(factory, locatorString);
+		factory.create();
+		System.out.println("connected to distributed system  with locator " + locatorString);
+	}
+	
+	
+	// this will need to be enhanced to support server groups
+	private static void setupPools(ClientCacheFactory ccf, String locator){
+		Pattern pattern = Pattern.compile("(.*)\\[(.*)\\]");
+		Matcher matcher = pattern.matcher(locator);
+		
+		if (!matcher.matches())
+			throw new RuntimeException("could not parse locator string: " + locator);
+		
+		String host = matcher.group(1);
+		int port = Integer.parseInt(matcher.group(2));
+		
+		ccf.addPoolLocator(host, port);
+	}
+	
+	private static void parseArgs(String []args){
+		if (args.length < 2) {
+			printUsage();
+			System.exit(1);
+		}
+	
+		locatorString = args[0];
+		regionName = args[1];
+		for(int i=2; i < args.length; ++i){
+			String arg = args[i];
+			if (arg.startsWith(TOP_PREFIX)){
+				String s = arg.substring(TOP_PREFIX.length());
+				try {
+					top = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--top must be an integer: " + s);
+					System.exit(1);
+				}
+				if (top < 1){
+					System.err.println("--top must be at least 1");
+					System.exit(1);
+				}
+			} else {
+				System.err.println("unrecognized argument: " + arg);
+				printUsage();
+				System.exit(1);
+			}
+		}
+	}
+	
+	private static void printUsage(){
+		System.err.println("usage: hotkeys locator-host[port] region-name [--top=" + DEFAULT_TOP + "]");
+		System.err.println("\tprints the keys written most often, counted by a listener installed with trace --hot-keys");
+		System.err.println("\t--top is the number of keys printed");
+	}
+ }
@@ -0,0 +1,122 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small, fixed size histogram of latencies in microseconds.
+ *
+ * Each power of 2 is divided into 8 sub-buckets so any recorded value is known to within 12.5%,
+ * which is plenty for reporting percentiles.  Histograms from different members can be merged
+ * by adding their counts.
+ *
+ * Recording is synchronized, the histogram is meant for events that happen at most a few
+ * thousand times a second like batch commits.
+ */
+public class LatencyHistogram implements Serializable {
+	private static final long serialVersionUID = 4477036411263941617L;
+
+	private static int SUB_BUCKET_BITS = 3;
+	private static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static int SIZE = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private long []counts;
+	private long count;
+	private long maxMicros;
+
+	public LatencyHistogram(){
+		counts = new long[SIZE];
+		count = 0;
+		maxMicros = 0;
+	}
+
+	public synchronized void recordNanos(long nanos){
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		++counts[indexOf(micros)];
+		++count;
+		if (micros > maxMicros) maxMicros = micros;
+	}
+
+	public synchronized void merge(LatencyHistogram other){
+		if (other == null) return;  // RETURN
+
+		for(int i=0; i < SIZE; ++i) counts[i] += other.counts[i];
+		count += other.count;
+		maxMicros = Math.max(maxMicros, other.maxMicros);
+	}
+
+	public synchronized long getCount(){
+		return count;
+	}
+
+	public synchronized long getMaxMicros(){
+		return maxMicros;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return an upper bound for the latency, in microseconds, below which the given percentage
+	 * of the recorded values fall, 0 if nothing has been recorded
+	 */
+	public synchronized long getPercentileMicros(double percentile){
+		if (count == 0) return 0;  // RETURN
+
+		long threshold = (long) Math.ceil(count * percentile / 100d);
+		long seen = 0;
+		for(int i=0; i < SIZE; ++i){
+			seen += counts[i];
+			if (seen >= Math.max(1, threshold)) return Math.min(upperBoundOf(i), maxMicros);  // RETURN
+		}
+		return maxMicros;
+	}
+
+	/**
+	 * a copy that can be sent or merged while this one carries on recording
+	 */
+	public synchronized LatencyHistogram copy(){
+		LatencyHistogram result = new LatencyHistogram();
+		result.merge(this);
+		return result;
+	}
+
+	/**
+	 * @param earlier a copy of this histogram taken earlier
+	 * @return what has been recorded since the copy was taken.  The maximum is not known exactly,
+	 * it is the upper bound of the highest bucket recorded since, if lower than the maximum so far.
+	 */
+	public synchronized LatencyHistogram since(LatencyHistogram earlier){
+		LatencyHistogram result = new LatencyHistogram();
+		for(int i=0; i < SIZE; ++i){
+			result.counts[i] = counts[i] - earlier.counts[i];
+			if (result.counts[i] > 0) result.maxMicros = Math.min(upperBoundOf(i), maxMicros);
+		}
+		result.count = count - earlier.count;
+		return result;
+	}
+
+	private static int indexOf(long micros){
+		if (micros < SUB_BUCKETS) return (int) micros;  // RETURN
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int index){
+		if (index < SUB_BUCKETS) return index;  // RETURN
+
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		long width = 1l << (exponent - SUB_BUCKET_BITS);
+		return (1l << exponent) + (sub + 1) * width - 1;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "p50 " + formatMs(getPercentileMicros(50)) + " p99 " + formatMs(getPercentileMicros(99)) + " max " + formatMs(maxMicros);
+	}
+
+	private static String formatMs(long micros){
+		return String.format("%.1fms", micros / 1000d);
+	}
+}
@@ -0,0 +1,80 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.cache.execute.ResultCollector;
+import org.apache.geode.distributed.DistributedMember;
+
+/*
+ * feeds the progress reports of one Touch execution into the shared view as they arrive
+ */
+public class ProgressResultCollector implements ResultCollector<TouchProgress, List<TouchProgress>> {
+	private TouchProgressView view;
+	private String regionName;
+	private List<TouchProgress> finished;
+	private Set<Integer> completedUnits;
+	private int attempt;
+
+	public ProgressResultCollector(TouchProgressView view, String regionName){
+		this.view = view;
+		this.regionName = regionName;
+		this.finished = new ArrayList<TouchProgress>();
+		this.completedUnits = new TreeSet<Integer>();
+		this.attempt = 0;
+		view.start(regionName);
+	}
+
+	@Override
+	public synchronized void addResult(DistributedMember mbr, TouchProgress progress) {
+		String memberName = mbr.getName() +  " on " + mbr.getHost();
+		if (attempt > 0) memberName += " (attempt " + (attempt + 1) + ")";
+		view.update(memberName, progress);
+		completedUnits.addAll(progress.getCompletedUnitIds());
+		if (progress.isFinished()) finished.add(progress);
+	}
+
+	/**
+	 * Called before the function is executed again after a failure.  What the members report from 
+	 * then on counts in addition to what they reported before.
+	 */
+	public synchronized void nextAttempt(){
+		++attempt;
+		view.settle(regionName);
+	}
+
+	/**
+	 * @return the buckets (or slices) reported as completed by any member in any attempt
+	 */
+	public synchronized Set<Integer> getCompletedUnits(){
+		return new TreeSet<Integer>(completedUnits);
+	}
+
+	@Override
+	public void clearResults() {
+	}
+
+	@Override
+	public void endResults() {
+		view.finish(regionName);
+	}
+
+	/**
+	 * @return the final progress report of each member
+	 */
+	@Override
+	public synchronized List<TouchProgress> getResult() throws FunctionException {
+		return new ArrayList<TouchProgress>(finished);
+	}
+
+	@Override
+	public List<TouchProgress> getResult(long arg0, TimeUnit arg1) throws FunctionException,
+			InterruptedException {
+		return getResult();
+	}
+
+}
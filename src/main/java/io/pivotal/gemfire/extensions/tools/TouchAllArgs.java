@@ -1,24 +1,286 @@
 package io.pivotal.gemfire.extensions.tools;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TouchAllArgs implements Serializable {
 	private static final long serialVersionUID = 1251714908388691718L;
 	
+	public static final String DEFAULT_JOB_NAME = "gemtouch";
+	
+	/**
+	 * Replicated regions have no buckets so, for the purpose of checkpointing, their keys are
+	 * divided into this many slices by hash code.
+	 */
+	public static final int REPLICATE_SLICES = 16;
+	
+	/**
+	 * How a touch avoids overwriting a concurrent update.
+	 * 
+	 * TRANSACTIONAL touches each batch in a transaction and retries the batch one key per 
+	 * transaction if the commit conflicts.
+	 * 
+	 * COMPARE_AND_SWAP uses no transactions, each entry is touched with a replace that only 
+	 * succeeds if the value is still the one that was read.  Values are compared with equals, 
+	 * which for classes that do not implement it means identity, so with copy-on-read enabled
+	 * such entries will never match and are left untouched.
+	 * 
+	 * ENQUEUE does not write to the region at all, an update event for the current value and 
+	 * version of each entry is put straight into the region's gateway senders and async event 
+	 * queues, see GatewayEnqueue.
+	 */
+	public enum Mode { TRANSACTIONAL, COMPARE_AND_SWAP, ENQUEUE }
+	
 	private int ratePerSecond;
+	private int parallelism;
+	private String jobName;
+	private String runId;
+	private String regionName;
+	private boolean resume;
+	private int minBatchSize;
+	private int maxBatchSize;
+	private boolean backpressure;
+	private int maxQueueSize;
+	private int resumeQueueSize;
+	private long modifiedSince;
+	private boolean serializedValues;
+	private boolean overflowAware;
+	private int sampleSize;
+	private Mode mode;
+	private List<String> gatewaySenderIds;
+	private int keyRangeCount;
+	private Map<Integer, Set<Integer>> keyRanges;
 	
 	public TouchAllArgs(){
 		// set defaults
 		ratePerSecond = 0;
+		parallelism = 1;
+		jobName = DEFAULT_JOB_NAME;
+		runId = "";
+		regionName = null;
+		resume = false;
+		minBatchSize = 10;
+		maxBatchSize = 1000;
+		backpressure = false;
+		maxQueueSize = 100000;
+		resumeQueueSize = 50000;
+		modifiedSince = 0l;
+		serializedValues = false;
+		overflowAware = false;
+		sampleSize = 100;
+		mode = Mode.TRANSACTIONAL;
+		gatewaySenderIds = new ArrayList<String>();
+		keyRangeCount = 0;
+		keyRanges = null;
 	}
 
 	public int getRatePerSecond() {
 		return ratePerSecond;
 	}
 
+	/**
+	 * the touch rate for the whole cluster, shared by all members and all regions touched
+	 * under the same job name
+	 */
 	public void setRatePerSecond(int ratePerSecond) {
 		this.ratePerSecond = ratePerSecond;
 	}
 
-}
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * the number of local primary buckets (or slices of a replicated region) each member will 
+	 * touch at the same time
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public void setJobName(String jobName) {
+		this.jobName = jobName;
+	}
+
+	public String getRunId() {
+		return runId;
+	}
+
+	/**
+	 * identifies one run of gemtouch, members sharing the slices of a replicated region ignore
+	 * the claims of other runs with the same job name
+	 */
+	public void setRunId(String runId) {
+		this.runId = runId;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	/**
+	 * the replicated region to touch when Touch is executed on servers rather than on a region, 
+	 * every member hosting a replica touches a share of its slices
+	 */
+	public void setRegionName(String regionName) {
+		this.regionName = regionName;
+	}
+
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * if true, buckets (or slices) that were completed by an earlier run with the same job name 
+	 * are skipped
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	public int getMinBatchSize() {
+		return minBatchSize;
+	}
+
+	/**
+	 * The number of entries touched in each transaction adapts to commit latency and conflicts
+	 * but never goes below this.  Set min and max to the same value for a fixed batch size.
+	 */
+	public void setMinBatchSize(int minBatchSize) {
+		this.minBatchSize = minBatchSize;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public boolean isBackpressure() {
+		return backpressure;
+	}
+
+	/**
+	 * if true, touching pauses while the local gateway sender / async event queues of the 
+	 * region are longer than the max queue size, until they drain to the resume queue size, 
+	 * and while the heap is in the eviction or critical state
+	 */
+	public void setBackpressure(boolean backpressure) {
+		this.backpressure = backpressure;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
 
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	public int getResumeQueueSize() {
+		return resumeQueueSize;
+	}
+
+	public void setResumeQueueSize(int resumeQueueSize) {
+		this.resumeQueueSize = resumeQueueSize;
+	}
+
+	public long getModifiedSince() {
+		return modifiedSince;
+	}
+
+	/**
+	 * if greater than 0, only entries modified at or after this time (ms since the epoch) 
+	 * are touched
+	 */
+	public void setModifiedSince(long modifiedSince) {
+		this.modifiedSince = modifiedSince;
+	}
+
+	public boolean isSerializedValues() {
+		return serializedValues;
+	}
+
+	/**
+	 * if true, values are re-put in the form in which they are stored (usually serialized) 
+	 * rather than being deserialized by a get and serialized again by the put
+	 */
+	public void setSerializedValues(boolean serializedValues) {
+		this.serializedValues = serializedValues;
+	}
+
+	public boolean isOverflowAware() {
+		return overflowAware;
+	}
+
+	/**
+	 * if true, entries of regions that overflow to disk are touched in the order in which their 
+	 * values are stored on disk and touched entries are left to be evicted ahead of the entries
+	 * applications are using.  Such regions are always touched in COMPARE_AND_SWAP mode with 
+	 * serialized values.
+	 */
+	public void setOverflowAware(boolean overflowAware) {
+		this.overflowAware = overflowAware;
+	}
+
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * the number of entries in each bucket (or slice) read by a dry run to estimate the size of a 
+	 * touch
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public List<String> getGatewaySenderIds() {
+		return gatewaySenderIds;
+	}
+
+	/**
+	 * if not empty, only regions that feed at least one of these gateway senders (or async event 
+	 * queues) are touched, other regions are skipped
+	 */
+	public void setGatewaySenderIds(List<String> gatewaySenderIds) {
+		this.gatewaySenderIds = gatewaySenderIds;
+	}
+
+	public int getKeyRangeCount() {
+		return keyRangeCount;
+	}
+
+	public Map<Integer, Set<Integer>> getKeyRanges() {
+		return keyRanges;
+	}
+
+	/**
+	 * Restricts the touch to some buckets (or slices of a replicated region) and, within them,
+	 * to some of the keyRangeCount key ranges.  Maps bucket id to the key ranges to touch, a null 
+	 * set means the whole bucket.  Buckets that are not in the map are not touched at all.  A 
+	 * null map, the default, touches everything.
+	 */
+	public void setKeyRanges(int keyRangeCount, Map<Integer, Set<Integer>> keyRanges) {
+		this.keyRangeCount = keyRangeCount;
+		this.keyRanges = keyRanges;
+	}
+
+}
@@ -0,0 +1,131 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Returned by the TouchEstimate function, a dry run of Touch, from each member for one region.
+ * The entry and byte counts are extrapolated from a sample of each bucket.
+ */
+public class TouchEstimate implements Serializable {
+	private static final long serialVersionUID = -3862412094187753180L;
+
+	private String regionName;
+	private String memberName;
+	private List<String> gatewaySenderIds;
+	private int units;
+	private long examined;
+	private long sampled;
+	private long entries;
+	private long bytes;
+	private long readNanos;
+	private long elapsedMs;
+
+	public TouchEstimate(String regionName, String memberName){
+		this.regionName = regionName;
+		this.memberName = memberName;
+		this.gatewaySenderIds = new ArrayList<String>();
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public String getMemberName() {
+		return memberName;
+	}
+
+	/**
+	 * the gateway senders and async event queues the region feeds, every one of them is sent
+	 * each entry touched
+	 */
+	public List<String> getGatewaySenderIds() {
+		return gatewaySenderIds;
+	}
+
+	public void setGatewaySenderIds(List<String> gatewaySenderIds) {
+		this.gatewaySenderIds = gatewaySenderIds;
+	}
+
+	/**
+	 * the number of buckets (or slices) the member would touch
+	 */
+	public int getUnits() {
+		return units;
+	}
+
+	public void setUnits(int units) {
+		this.units = units;
+	}
+
+	/**
+	 * keys looked at, including those a touch would pass over because of --modified-since or
+	 * --compare-with-locator
+	 */
+	public long getExamined() {
+		return examined;
+	}
+
+	public void setExamined(long examined) {
+		this.examined = examined;
+	}
+
+	/**
+	 * entries whose values were read to measure their size
+	 */
+	public long getSampled() {
+		return sampled;
+	}
+
+	public void setSampled(long sampled) {
+		this.sampled = sampled;
+	}
+
+	/**
+	 * the estimated number of entries the member would touch
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	public void setEntries(long entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * the estimated serialized size of the keys and values the member would touch
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * the total time taken to read the sampled values, from memory or from disk
+	 */
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	public void setReadNanos(long readNanos) {
+		this.readNanos = readNanos;
+	}
+
+	public long getElapsedMs() {
+		return elapsedMs;
+	}
+
+	public void setElapsedMs(long elapsedMs) {
+		this.elapsedMs = elapsedMs;
+	}
+
+	@Override
+	public String toString(){
+		return "about " + entries + " entries (" + (bytes / 1024) + "KB) to touch in " + regionName + " on " + memberName
+				+ ", sampled " + sampled + " of " + examined + " keys in " + units + " buckets in " + elapsedMs + "ms";
+	}
+}
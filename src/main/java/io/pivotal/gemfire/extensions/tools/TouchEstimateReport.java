@@ -0,0 +1,141 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Combines the TouchEstimates of all members for each region of a dry run and prints what a
+ * touch would cost: entries, bytes sent to each gateway sender and how long it would take.
+ */
+public class TouchEstimateReport {
+	private Map<String, RegionEstimate> regions;
+
+	public TouchEstimateReport(){
+		this.regions = new LinkedHashMap<String, RegionEstimate>();
+	}
+
+	public synchronized void add(String regionName, List<TouchEstimate> estimates){
+		RegionEstimate region = new RegionEstimate(regionName);
+		for(TouchEstimate estimate : estimates) region.add(estimate);
+		regions.put(regionName, region);
+		System.out.println(region.describe());
+	}
+
+	/**
+	 * @param ratePerSecond the cluster wide rate, 0 if unthrottled
+	 * @param parallelism buckets touched at once by each member
+	 * @param maxConcurrentRegions regions touched at once
+	 */
+	public synchronized void printTotals(int ratePerSecond, int parallelism, int maxConcurrentRegions){
+		long entries = 0;
+		long bytes = 0;
+		long readNanos = 0;
+		Map<String, Long> bytesBySender = new TreeMap<String, Long>();
+		for(RegionEstimate region : regions.values()){
+			entries += region.entries;
+			bytes += region.bytes;
+			readNanos += region.slowestMemberReadNanos();
+			for(String senderId : region.senderIds){
+				Long total = bytesBySender.get(senderId);
+				bytesBySender.put(senderId, (total == null ? 0l : total) + region.bytes);
+			}
+		}
+
+		System.out.println("ESTIMATED TOTAL: " + entries + " entries, " + formatBytes(bytes));
+		for(Map.Entry<String, Long> sender : bytesBySender.entrySet()){
+			System.out.println("\tgateway sender " + sender.getKey() + ": " + formatBytes(sender.getValue()));
+		}
+
+		if (ratePerSecond > 0){
+			System.out.println("\tat " + ratePerSecond + " entries/s: " + formatTime(entries * 1000l / ratePerSecond));
+		} else {
+			// commits cannot be timed without writing, so only the reads give a bound
+			long readMs = readNanos / 1000000l / ((long) parallelism * maxConcurrentRegions);
+			System.out.println("\tunthrottled: at least " + formatTime(readMs) + " to read the values, commits and gateway queues will add to that");
+		}
+
+		// one JSON object per line so scripts can pick these out with grep
+		for(RegionEstimate region : regions.values()) System.out.println("ESTIMATE " + region.toJson());
+	}
+
+	private static String formatBytes(long bytes){
+		return String.format("%.1fMB", bytes / (1024d * 1024d));
+	}
+
+	private static String formatTime(long ms){
+		long seconds = ms / 1000;
+		return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+
+	private static class RegionEstimate {
+		private String regionName;
+		private List<String> senderIds;
+		private int members;
+		private int units;
+		private long sampled;
+		private long entries;
+		private long bytes;
+		private long readNanos;
+		private Map<String, Long> memberReadNanos;
+
+		public RegionEstimate(String regionName){
+			this.regionName = regionName;
+			this.memberReadNanos = new TreeMap<String, Long>();
+		}
+
+		public void add(TouchEstimate estimate){
+			if (senderIds == null) senderIds = estimate.getGatewaySenderIds();
+			++members;
+			units += estimate.getUnits();
+			sampled += estimate.getSampled();
+			entries += estimate.getEntries();
+			bytes += estimate.getBytes();
+			readNanos += estimate.getReadNanos();
+
+			// the time the member would spend reading, extrapolated from its sample
+			long memberEntries = estimate.getEntries();
+			long nanos = estimate.getSampled() == 0 ? 0 : estimate.getReadNanos() * memberEntries / estimate.getSampled();
+			memberReadNanos.put(estimate.getMemberName(), nanos);
+		}
+
+		// members work at the same time, the slowest decides
+		public long slowestMemberReadNanos(){
+			long result = 0;
+			for(Long nanos : memberReadNanos.values()) result = Math.max(result, nanos);
+			return result;
+		}
+
+		private long averageReadMicros(){
+			return sampled == 0 ? 0 : readNanos / sampled / 1000;
+		}
+
+		public String describe(){
+			String result = regionName + ": about " + entries + " entries, " + formatBytes(bytes) + " to touch on " + members + " members";
+			result += " (" + units + " buckets, sampled " + sampled + " entries, average read " + averageReadMicros() + "us)";
+			result += senderIds == null || senderIds.isEmpty() ? ", feeds no gateway senders" : ", feeds " + senderIds;
+			return result;
+		}
+
+		public String toJson(){
+			StringBuilder result = new StringBuilder("{");
+			result.append("\"region\":\"").append(regionName.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+			result.append(",\"members\":").append(members);
+			result.append(",\"buckets\":").append(units);
+			result.append(",\"sampled\":").append(sampled);
+			result.append(",\"entries\":").append(entries);
+			result.append(",\"bytes\":").append(bytes);
+			result.append(",\"averageReadMicros\":").append(averageReadMicros());
+			result.append(",\"gatewaySenders\":[");
+			if (senderIds != null){
+				for(int i=0; i < senderIds.size(); ++i){
+					if (i > 0) result.append(',');
+					result.append('"').append(senderIds.get(i).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+				}
+			}
+			result.append("]}");
+			return result.toString();
+		}
+	}
+}
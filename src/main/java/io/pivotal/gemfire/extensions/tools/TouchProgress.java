@@ -0,0 +1,318 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Sent by the Touch function on each member, periodically while it runs and once at the end,
+ * describing what has been done so far for one region on that member.  All counts are
+ * cumulative.
+ */
+public class TouchProgress implements Serializable {
+	private static final long serialVersionUID = -2154409815622960472L;
+
+	private String regionName;
+	private String jobName;
+	private boolean finished;
+	private boolean skipped;
+	private String note;
+	private long elapsedMs;
+	private long touched;
+	private long totalEntries;
+	private long unchanged;
+	private long batches;
+	private long conflicts;
+	private long misses;
+	private long bytes;
+	private long throttleMs;
+	private long stallMs;
+	private boolean paused;
+	private long pausedMs;
+	private boolean cancelled;
+	private long ratePerSecond;
+	private int batchSize;
+	private int completedUnits;
+	private int totalUnits;
+	private int skippedUnits;
+	private Set<Integer> completedUnitIds;
+	private LatencyHistogram commitLatency;
+
+	public TouchProgress(String regionName){
+		this.regionName = regionName;
+		this.finished = false;
+		this.skipped = false;
+		this.note = null;
+		this.completedUnitIds = new TreeSet<Integer>();
+		this.commitLatency = new LatencyHistogram();
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public void setJobName(String jobName) {
+		this.jobName = jobName;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public void setFinished(boolean finished) {
+		this.finished = finished;
+	}
+
+	public boolean isSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * true if the member did not touch the region at all, the note says why
+	 */
+	public void setSkipped(boolean skipped) {
+		this.skipped = skipped;
+	}
+
+	public String getNote() {
+		return note;
+	}
+
+	public void setNote(String note) {
+		this.note = note;
+	}
+
+	public long getElapsedMs() {
+		return elapsedMs;
+	}
+
+	public void setElapsedMs(long elapsedMs) {
+		this.elapsedMs = elapsedMs;
+	}
+
+	public long getTouched() {
+		return touched;
+	}
+
+	public void setTouched(long touched) {
+		this.touched = touched;
+	}
+
+	/**
+	 * the number of entries the member held when it started, an upper bound for touched
+	 */
+	public long getTotalEntries() {
+		return totalEntries;
+	}
+
+	public void setTotalEntries(long totalEntries) {
+		this.totalEntries = totalEntries;
+	}
+
+	/**
+	 * entries passed over because they were not modified since --modified-since
+	 */
+	public long getUnchanged() {
+		return unchanged;
+	}
+
+	public void setUnchanged(long unchanged) {
+		this.unchanged = unchanged;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	public void setBatches(long batches) {
+		this.batches = batches;
+	}
+
+	/**
+	 * batches whose transaction conflicted and were retried one entry at a time
+	 */
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	public void setConflicts(long conflicts) {
+		this.conflicts = conflicts;
+	}
+
+	/**
+	 * compare and swap touches that did not happen because the entry had changed
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(long misses) {
+		this.misses = misses;
+	}
+
+	/**
+	 * the serialized size of the values touched, only known with --serialized-values
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * time spent waiting to stay within the rate limit
+	 */
+	public long getThrottleMs() {
+		return throttleMs;
+	}
+
+	public void setThrottleMs(long throttleMs) {
+		this.throttleMs = throttleMs;
+	}
+
+	/**
+	 * time spent paused for backpressure
+	 */
+	public long getStallMs() {
+		return stallMs;
+	}
+
+	public void setStallMs(long stallMs) {
+		this.stallMs = stallMs;
+	}
+
+	/**
+	 * true if the job is paused at the moment, see gemtouchctl
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+
+	/**
+	 * time spent paused by gemtouchctl
+	 */
+	public long getPausedMs() {
+		return pausedMs;
+	}
+
+	public void setPausedMs(long pausedMs) {
+		this.pausedMs = pausedMs;
+	}
+
+	/**
+	 * true if the job was cancelled before the member finished, the buckets it had not completed 
+	 * are left for gemtouch --resume
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * the member's current share of the job's rate, 0 if unthrottled
+	 */
+	public long getRatePerSecond() {
+		return ratePerSecond;
+	}
+
+	public void setRatePerSecond(long ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+	}
+
+	/**
+	 * the size of the member's most recent batches, which Touch adapts to commit latency and 
+	 * conflicts, see BatchSizer
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getCompletedUnits() {
+		return completedUnits;
+	}
+
+	public void setCompletedUnits(int completedUnits) {
+		this.completedUnits = completedUnits;
+	}
+
+	/**
+	 * the number of buckets (or slices) the member has to touch in this run
+	 */
+	public int getTotalUnits() {
+		return totalUnits;
+	}
+
+	public void setTotalUnits(int totalUnits) {
+		this.totalUnits = totalUnits;
+	}
+
+	/**
+	 * buckets (or slices) skipped because an earlier run completed them
+	 */
+	public int getSkippedUnits() {
+		return skippedUnits;
+	}
+
+	public void setSkippedUnits(int skippedUnits) {
+		this.skippedUnits = skippedUnits;
+	}
+
+	public Set<Integer> getCompletedUnitIds() {
+		return completedUnitIds;
+	}
+
+	/**
+	 * the buckets (or slices) the member has completed so far, if the member fails only the others 
+	 * are touched again
+	 */
+	public void setCompletedUnitIds(Set<Integer> completedUnitIds) {
+		this.completedUnitIds = completedUnitIds;
+	}
+
+	/**
+	 * the time taken to commit each batch or, in compare and swap mode, to touch it
+	 */
+	public LatencyHistogram getCommitLatency() {
+		return commitLatency;
+	}
+
+	public void setCommitLatency(LatencyHistogram commitLatency) {
+		this.commitLatency = commitLatency;
+	}
+
+	@Override
+	public String toString(){
+		if (skipped) return "SKIPPED: " + regionName + " " + note;  // RETURN
+
+		String result = (cancelled ? "CANCELLED: " : finished ? "FINISHED: " : paused ? "PAUSED: " : "") + "touched " + touched + "/" + totalEntries + " entries in " + regionName;
+		result += " (" + completedUnits + "/" + totalUnits + " buckets, " + conflicts + "/" + batches + " batches had conflicts, commit " + commitLatency;
+		if (misses > 0) result += ", " + misses + " entries changed concurrently";
+		if (unchanged > 0) result += ", " + unchanged + " entries skipped as unmodified";
+		if (throttleMs > 0) result += ", throttled " + (throttleMs / 1000) + "s";
+		if (stallMs > 0) result += ", stalled " + (stallMs / 1000) + "s for backpressure";
+		if (pausedMs > 0) result += ", paused " + (pausedMs / 1000) + "s";
+		if (ratePerSecond > 0) result += ", " + ratePerSecond + "/s share of the rate";
+		if (batchSize > 0) result += ", batch size " + batchSize;
+		if (skippedUnits > 0) result += ", " + skippedUnits + " buckets skipped, already completed";
+		result += ")";
+		if (note != null) result += " " + note;
+		return result;
+	}
+}
@@ -0,0 +1,226 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the TouchProgress reports of all members into a cluster wide view of each region
+ * being touched.  A line with the region's overall progress, rate and ETA is printed whenever
+ * a member reports, no more than once every few seconds per region, and when the region
+ * finishes.
+ *
+ * At the end, summary() gives one line of JSON per region for scripts to consume.
+ */
+public class TouchProgressView {
+	private static long PRINT_INTERVAL_MS = 5000l;
+
+	private Map<String, RegionView> regions;
+	private boolean partial;
+
+	/**
+	 * @param partial true if only some of the entries will be touched (--modified-since or 
+	 * --compare-with-locator), in which case the ETA is based on buckets completed rather than entries
+	 */
+	public TouchProgressView(boolean partial){
+		this.regions = new LinkedHashMap<String, RegionView>();
+		this.partial = partial;
+	}
+
+	public synchronized void start(String regionName){
+		regions.put(regionName, new RegionView(regionName));
+	}
+
+	public synchronized void update(String memberName, TouchProgress progress){
+		RegionView region = regions.get(progress.getRegionName());
+		if (region == null){
+			region = new RegionView(progress.getRegionName());
+			regions.put(progress.getRegionName(), region);
+		}
+
+		region.latest.put(memberName, progress);
+		if (progress.isSkipped()) System.out.println(memberName + " " + progress);
+
+		long now = System.currentTimeMillis();
+		if (now - region.lastPrint > PRINT_INTERVAL_MS){
+			System.out.println(region.describe());
+			region.lastPrint = now;
+		}
+	}
+
+	/**
+	 * Called when the region is about to be touched again after losing a member.  The members that 
+	 * had not finished are taken to have done only what they had reported, the rest is counted 
+	 * again as the next attempt reports it.
+	 */
+	public synchronized void settle(String regionName){
+		RegionView region = regions.get(regionName);
+		if (region == null) return;  // RETURN
+
+		for(TouchProgress progress : region.latest.values()){
+			if (progress.isFinished()) continue;
+
+			progress.setTotalEntries(progress.getTouched());
+			progress.setTotalUnits(progress.getCompletedUnits());
+		}
+	}
+
+	public synchronized void finish(String regionName){
+		RegionView region = regions.get(regionName);
+		if (region == null) return;  // RETURN
+
+		region.endTime = System.currentTimeMillis();
+		System.out.println("FINISHED " + region.describe());
+	}
+
+	/**
+	 * @return one JSON object per region
+	 */
+	public synchronized List<String> summary(){
+		List<String> result = new ArrayList<String>(regions.size());
+		for(RegionView region : regions.values()) result.add(region.toJson());
+		return result;
+	}
+
+	private class RegionView {
+		private String regionName;
+		private Map<String, TouchProgress> latest;
+		private long startTime;
+		private long endTime;
+		private long lastPrint;
+
+		public RegionView(String regionName){
+			this.regionName = regionName;
+			this.latest = new LinkedHashMap<String, TouchProgress>();
+			this.startTime = System.currentTimeMillis();
+			this.endTime = 0;
+			this.lastPrint = 0;
+		}
+
+		private long elapsedMs(){
+			return Math.max(1, (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime);
+		}
+
+		private Totals totals(){
+			Totals result = new Totals();
+			for(TouchProgress progress : latest.values()){
+				if (progress.isSkipped()){
+					++result.skippedMembers;
+					continue;
+				}
+
+				result.touched += progress.getTouched();
+				result.totalEntries += progress.getTotalEntries();
+				result.unchanged += progress.getUnchanged();
+				result.batches += progress.getBatches();
+				result.conflicts += progress.getConflicts();
+				result.misses += progress.getMisses();
+				result.bytes += progress.getBytes();
+				result.throttleMs += progress.getThrottleMs();
+				result.stallMs += progress.getStallMs();
+				result.pausedMs = Math.max(result.pausedMs, progress.getPausedMs());
+				result.paused |= progress.isPaused();
+				result.cancelled |= progress.isCancelled();
+				result.completedUnits += progress.getCompletedUnits();
+				result.totalUnits += progress.getTotalUnits();
+				result.skippedUnits += progress.getSkippedUnits();
+				result.commitLatency.merge(progress.getCommitLatency());
+				if (progress.getBatchSize() > 0){
+					result.minBatchSize = result.minBatchSize == 0 ? progress.getBatchSize() : Math.min(result.minBatchSize, progress.getBatchSize());
+					result.maxBatchSize = Math.max(result.maxBatchSize, progress.getBatchSize());
+				}
+			}
+			return result;
+		}
+
+		public String describe(){
+			Totals totals = totals();
+			long rate = totals.touched * 1000l / elapsedMs();
+			String result = regionName + ": touched " + totals.touched + "/" + totals.totalEntries + " entries on " + latest.size() + " members";
+			result += ", " + totals.completedUnits + "/" + totals.totalUnits + " buckets, " + rate + "/s";
+			if (endTime == 0) result += ", ETA " + eta(totals, rate);
+			result += ", " + totals.conflicts + "/" + totals.batches + " batches had conflicts, commit " + totals.commitLatency;
+			if (totals.maxBatchSize > 0) result += ", batch size " + (totals.minBatchSize == totals.maxBatchSize ? "" + totals.maxBatchSize : totals.minBatchSize + "-" + totals.maxBatchSize);
+			if (totals.misses > 0) result += ", " + totals.misses + " entries changed concurrently";
+			if (totals.unchanged > 0) result += ", " + totals.unchanged + " unmodified";
+			if (totals.bytes > 0) result += ", " + (totals.bytes / (1024 * 1024)) + "MB";
+			if (totals.throttleMs > 0) result += ", throttled " + (totals.throttleMs / 1000) + "s";
+			if (totals.stallMs > 0) result += ", stalled " + (totals.stallMs / 1000) + "s";
+			if (totals.pausedMs > 0) result += ", paused " + (totals.pausedMs / 1000) + "s";
+			if (totals.paused) result += ", PAUSED";
+			if (totals.cancelled) result += ", CANCELLED";
+			return result;
+		}
+
+		// Based on the entries that remain, which overstates the remaining work when only some
+		// entries are being touched, so in that case use the fraction of buckets completed instead.
+		private String eta(Totals totals, long rate){
+			long remainingMs;
+			if (partial || rate == 0){
+				if (totals.completedUnits == 0) return "unknown";  // RETURN
+
+				remainingMs = elapsedMs() * (totals.totalUnits - totals.completedUnits) / totals.completedUnits;
+			} else {
+				remainingMs = Math.max(0, totals.totalEntries - totals.touched) * 1000l / rate;
+			}
+
+			long seconds = remainingMs / 1000;
+			return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+		}
+
+		public String toJson(){
+			Totals totals = totals();
+			StringBuilder result = new StringBuilder("{");
+			result.append("\"region\":\"").append(regionName.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+			result.append(",\"members\":").append(latest.size() - totals.skippedMembers);
+			result.append(",\"skippedMembers\":").append(totals.skippedMembers);
+			result.append(",\"elapsedMs\":").append(elapsedMs());
+			result.append(",\"touched\":").append(totals.touched);
+			result.append(",\"totalEntries\":").append(totals.totalEntries);
+			result.append(",\"unmodified\":").append(totals.unchanged);
+			result.append(",\"ratePerSecond\":").append(totals.touched * 1000l / elapsedMs());
+			result.append(",\"batches\":").append(totals.batches);
+			result.append(",\"conflicts\":").append(totals.conflicts);
+			result.append(",\"minBatchSize\":").append(totals.minBatchSize);
+			result.append(",\"maxBatchSize\":").append(totals.maxBatchSize);
+			result.append(",\"casMisses\":").append(totals.misses);
+			result.append(",\"bytes\":").append(totals.bytes);
+			result.append(",\"throttleMs\":").append(totals.throttleMs);
+			result.append(",\"stallMs\":").append(totals.stallMs);
+			result.append(",\"pausedMs\":").append(totals.pausedMs);
+			result.append(",\"cancelled\":").append(totals.cancelled);
+			result.append(",\"completedBuckets\":").append(totals.completedUnits);
+			result.append(",\"totalBuckets\":").append(totals.totalUnits);
+			result.append(",\"skippedBuckets\":").append(totals.skippedUnits);
+			result.append(",\"commitP50Micros\":").append(totals.commitLatency.getPercentileMicros(50));
+			result.append(",\"commitP99Micros\":").append(totals.commitLatency.getPercentileMicros(99));
+			result.append(",\"commitP999Micros\":").append(totals.commitLatency.getPercentileMicros(99.9));
+			result.append(",\"commitMaxMicros\":").append(totals.commitLatency.getMaxMicros());
+			result.append('}');
+			return result.toString();
+		}
+	}
+
+	private static class Totals {
+		private long touched;
+		private long totalEntries;
+		private long unchanged;
+		private long batches;
+		private long conflicts;
+		private long misses;
+		private long bytes;
+		private long throttleMs;
+		private long stallMs;
+		private long pausedMs;
+		private boolean paused;
+		private boolean cancelled;
+		private int completedUnits;
+		private int totalUnits;
+		private int skippedUnits;
+		private int skippedMembers;
+		private int minBatchSize;
+		private int maxBatchSize;
+		private LatencyHistogram commitLatency = new LatencyHistogram();
+	}
+}
@@ -0,0 +1,104 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Decides the order in which gemtouch touches regions and runs up to maxConcurrent of them
+ * at once.
+ *
+ * The largest regions (by entry count) are started first so that one huge region does not
+ * end up running alone at the end.  A region that is colocated with another region is not
+ * started until its parent region has finished.
+ *
+ * If touching a region fails no further regions are started, the regions already running are
+ * allowed to finish and then the failure is thrown.
+ */
+public class TouchScheduler {
+	private int maxConcurrent;
+	private List<String> pending;
+	private Map<String, Long> entryCounts;
+	private Map<String, String> parents;
+
+	public TouchScheduler(int maxConcurrent){
+		this.maxConcurrent = maxConcurrent;
+		this.pending = new ArrayList<String>();
+		this.entryCounts = new HashMap<String, Long>();
+		this.parents = new HashMap<String, String>();
+	}
+
+	/**
+	 * @param colocatedWith the full path of the region this one is colocated with, or null
+	 */
+	public void add(String regionPath, long entryCount, String colocatedWith){
+		pending.add(regionPath);
+		entryCounts.put(regionPath, entryCount);
+		if (colocatedWith != null) parents.put(regionPath, colocatedWith);
+	}
+
+	public void run(final Consumer<String> touch) throws Exception {
+		// largest first, ties in alphabetical order
+		Collections.sort(pending, new Comparator<String>(){
+			@Override
+			public int compare(String left, String right) {
+				int result = entryCounts.get(right).compareTo(entryCounts.get(left));
+				return result != 0 ? result : left.compareTo(right);
+			}
+		});
+
+		Set<String> unfinished = new HashSet<String>(pending);
+		ExecutorService pool = Executors.newFixedThreadPool(maxConcurrent);
+		CompletionService<String> completions = new ExecutorCompletionService<String>(pool);
+		int running = 0;
+		Exception failure = null;
+		try {
+			while(!pending.isEmpty() || running > 0){
+				if (failure == null){
+					Iterator<String> it = pending.iterator();
+					while(running < maxConcurrent && it.hasNext()){
+						final String regionPath = it.next();
+						String parent = parents.get(regionPath);
+						if (parent != null && unfinished.contains(parent)) continue;  // wait for the parent
+
+						it.remove();
+						++running;
+						completions.submit(new Runnable(){
+							@Override
+							public void run() {
+								touch.accept(regionPath);
+							}
+						}, regionPath);
+					}
+				}
+
+				if (running == 0) break;  // BREAK - either failed or only children of failed parents remain
+
+				Future<String> done = completions.take();
+				--running;
+				try {
+					unfinished.remove(done.get());
+				} catch(ExecutionException x){
+					if (failure == null) failure = x.getCause() instanceof Exception ? (Exception) x.getCause() : x;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		if (failure != null) throw failure;
+	}
+}
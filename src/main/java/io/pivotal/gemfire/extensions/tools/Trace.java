@@ -1,7 +1,14 @@
 package io.pivotal.gemfire.extensions.tools;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.geode.cache.client.ClientCache;
 import org.apache.geode.cache.client.ClientCacheFactory;
@@ -12,9 +19,29 @@ import org.apache.geode.cache.execute.ResultCollector;
 
 public class Trace {
 	public static String NAME = "Trace";
+	public static String STREAM_NAME = "TraceStream";
 		
+	private static String BUFFER_SIZE_PREFIX="--buffer-size=";
+	private static String BLOCK_WHEN_FULL_FLAG="--block-when-full";
+	private static String JOURNAL_DIR_PREFIX="--journal-dir=";
+	private static String JOURNAL_SEGMENT_SIZE_PREFIX="--journal-segment-size=";
+	private static String JOURNAL_SEGMENTS_PREFIX="--journal-segments=";
+	private static String KEY_PREFIX="--key=";
+	private static String KEY_PREFIX_PREFIX="--key-prefix=";
+	private static String KEY_REGEX_PREFIX="--key-regex=";
+	private static String SAMPLE_RATE_PREFIX="--sample-rate=";
+	private static String VALUE_FIELD_PREFIX="--value-field=";
+	private static String HOT_KEYS_FLAG="--hot-keys";
+	private static String HOT_KEY_CAPACITY_PREFIX="--hot-key-capacity=";
+	private static String WAN_LAG_FLAG="--wan-lag";
+	private static String STREAM_FLAG="--stream";
+	private static String OUTPUT_PREFIX="--output=";
+	private static String DURATION_PREFIX="--duration=";
+	
 	private static String locatorString = null;
-	private static String regionName = null;
+	private static TraceArgs traceArgs = new TraceArgs();
+	private static boolean stream = false;
+	private static String outputFile = null;
 	
 	public static void main(String []args){
 		int rc = 1;
@@ -25,12 +52,24 @@ public class Trace {
 			
 			Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
 			
-			Execution exec = FunctionService.onServers(pool)
-					.withArgs(regionName)
-					.withCollector(new PrintResultCollector());
-			
-			ResultCollector coll = exec.execute(NAME);
-			coll.getResult();
+			if (stream){
+				PrintWriter out = new PrintWriter(new BufferedWriter(outputFile == null ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+						: new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), 64 * 1024));
+				Execution exec = FunctionService.onServers(pool)
+						.withArgs(traceArgs)
+						.withCollector(new TraceStreamCollector(out));
+				
+				ResultCollector coll = exec.execute(STREAM_NAME);
+				System.out.println(coll.getResult());
+				out.close();
+			} else {
+				Execution exec = FunctionService.onServers(pool)
+						.withArgs(traceArgs)
+						.withCollector(new PrintResultCollector());
+				
+				ResultCollector coll = exec.execute(NAME);
+				coll.getResult();
+			}
 			
 			rc = 0;
 			
@@ -68,16 +107,156 @@ public class Trace {
 	}
 	
 	private static void parseArgs(String []args){
-		if (args.length != 2) {
+		if (args.length < 2) {
 			printUsage();
 			System.exit(1);
 		}
 	
 		locatorString = args[0];
-		regionName = args[1];
+		traceArgs.setRegionName(args[1]);
+		for(int i=2; i < args.length; ++i){
+			String arg = args[i];
+			if (arg.startsWith(BUFFER_SIZE_PREFIX)){
+				String s = arg.substring(BUFFER_SIZE_PREFIX.length());
+				try {
+					traceArgs.setBufferSize(Integer.parseInt(s));
+				} catch(NumberFormatException x){
+					System.err.println("--buffer-size must be an integer: " + s);
+					System.exit(1);
+				}
+				if (traceArgs.getBufferSize() < 1){
+					System.err.println("--buffer-size must be at least 1");
+					System.exit(1);
+				}
+			} else if (arg.equals(BLOCK_WHEN_FULL_FLAG)){
+				traceArgs.setWhenFull(TraceArgs.WhenFull.BLOCK);
+			} else if (arg.startsWith(JOURNAL_DIR_PREFIX)){
+				traceArgs.setJournalDir(arg.substring(JOURNAL_DIR_PREFIX.length()));
+			} else if (arg.startsWith(JOURNAL_SEGMENT_SIZE_PREFIX)){
+				String s = arg.substring(JOURNAL_SEGMENT_SIZE_PREFIX.length());
+				try {
+					traceArgs.setJournalSegmentSize(Integer.parseInt(s));
+				} catch(NumberFormatException x){
+					System.err.println("--journal-segment-size must be an integer: " + s);
+					System.exit(1);
+				}
+				if (traceArgs.getJournalSegmentSize() < 1 || traceArgs.getJournalSegmentSize() > 2047){
+					System.err.println("--journal-segment-size must be between 1 and 2047 MB");
+					System.exit(1);
+				}
+			} else if (arg.startsWith(JOURNAL_SEGMENTS_PREFIX)){
+				String s = arg.substring(JOURNAL_SEGMENTS_PREFIX.length());
+				try {
+					traceArgs.setJournalSegments(Integer.parseInt(s));
+				} catch(NumberFormatException x){
+					System.err.println("--journal-segments must be an integer: " + s);
+					System.exit(1);
+				}
+				if (traceArgs.getJournalSegments() < 1){
+					System.err.println("--journal-segments must be at least 1");
+					System.exit(1);
+				}
+			} else if (arg.startsWith(KEY_PREFIX)){
+				if (traceArgs.getKeys() == null) traceArgs.setKeys(new ArrayList<String>());
+				traceArgs.getKeys().add(arg.substring(KEY_PREFIX.length()));
+			} else if (arg.startsWith(KEY_PREFIX_PREFIX)){
+				traceArgs.setKeyPrefix(arg.substring(KEY_PREFIX_PREFIX.length()));
+			} else if (arg.startsWith(KEY_REGEX_PREFIX)){
+				String s = arg.substring(KEY_REGEX_PREFIX.length());
+				try {
+					Pattern.compile(s);
+				} catch(PatternSyntaxException x){
+					System.err.println("--key-regex is not a valid regular expression: " + x.getMessage());
+					System.exit(1);
+				}
+				traceArgs.setKeyRegex(s);
+			} else if (arg.startsWith(SAMPLE_RATE_PREFIX)){
+				String s = arg.substring(SAMPLE_RATE_PREFIX.length());
+				try {
+					traceArgs.setSampleRate(Double.parseDouble(s));
+				} catch(NumberFormatException x){
+					System.err.println("--sample-rate must be a number: " + s);
+					System.exit(1);
+				}
+				if (!(traceArgs.getSampleRate() > 0.0d && traceArgs.getSampleRate() <= 1.0d)){
+					System.err.println("--sample-rate must be more than 0 and at most 1");
+					System.exit(1);
+				}
+			} else if (arg.startsWith(VALUE_FIELD_PREFIX)){
+				String s = arg.substring(VALUE_FIELD_PREFIX.length());
+				if (s.indexOf('=') < 1){
+					System.err.println("--value-field must be given as field-name=value: " + s);
+					System.exit(1);
+				}
+				traceArgs.setValueField(s);
+			} else if (arg.equals(HOT_KEYS_FLAG)){
+				traceArgs.setMode(TraceArgs.Mode.HOT_KEYS);
+			} else if (arg.equals(WAN_LAG_FLAG)){
+				traceArgs.setMode(TraceArgs.Mode.WAN_LAG);
+			} else if (arg.equals(STREAM_FLAG)){
+				stream = true;
+			} else if (arg.startsWith(OUTPUT_PREFIX)){
+				outputFile = arg.substring(OUTPUT_PREFIX.length());
+			} else if (arg.startsWith(DURATION_PREFIX)){
+				String s = arg.substring(DURATION_PREFIX.length());
+				try {
+					traceArgs.setStreamSeconds(Integer.parseInt(s));
+				} catch(NumberFormatException x){
+					System.err.println("--duration must be an integer: " + s);
+					System.exit(1);
+				}
+				if (traceArgs.getStreamSeconds() < 1){
+					System.err.println("--duration must be at least 1");
+					System.exit(1);
+				}
+			} else if (arg.startsWith(HOT_KEY_CAPACITY_PREFIX)){
+				String s = arg.substring(HOT_KEY_CAPACITY_PREFIX.length());
+				try {
+					traceArgs.setHotKeyCapacity(Integer.parseInt(s));
+				} catch(NumberFormatException x){
+					System.err.println("--hot-key-capacity must be an integer: " + s);
+					System.exit(1);
+				}
+				if (traceArgs.getHotKeyCapacity() < 1){
+					System.err.println("--hot-key-capacity must be at least 1");
+					System.exit(1);
+				}
+			} else {
+				System.err.println("unrecognized argument: " + arg);
+				printUsage();
+				System.exit(1);
+			}
+		}
+		
+		if (stream && (traceArgs.getJournalDir() != null || traceArgs.getWhenFull() == TraceArgs.WhenFull.BLOCK || traceArgs.getMode() != TraceArgs.Mode.EVENTS)){
+			System.err.println("--stream cannot be combined with --journal-dir, --block-when-full, --hot-keys or --wan-lag");
+			System.exit(1);
+		}
+		if (!stream && (outputFile != null || traceArgs.getStreamSeconds() > 0)){
+			System.err.println("--output and --duration can only be given with --stream");
+			System.exit(1);
+		}
 	}
 	
 	private static void printUsage(){
-		System.err.println("usage: trace locator-host[port] region-name");
+		System.err.println("usage: trace locator-host[port] region-name [--buffer-size=65536] [--block-when-full] [--journal-dir=dir [--journal-segment-size=64] [--journal-segments=16]]");
+		System.err.println("             [--key=key ...] [--key-prefix=prefix] [--key-regex=regex] [--sample-rate=fraction] [--value-field=field-name=value]");
+		System.err.println("             [--hot-keys [--hot-key-capacity=" + TraceArgs.DEFAULT_HOT_KEY_CAPACITY + "]] [--wan-lag] [--stream [--output=file] [--duration=seconds]]");
+		System.err.println("\t--buffer-size is the number of events each member holds for the region until they are written to its log, default " + TraceArgs.DEFAULT_BUFFER_SIZE);
+		System.err.println("\t--block-when-full makes operations on the region wait for room in the buffer, by default events that do not fit are dropped and counted");
+		System.err.println("\t--journal-dir writes the events to binary journal files in this directory on each member instead of to the log, read them with tracequery");
+		System.err.println("\t--journal-segment-size is the size of each journal file in MB, default " + TraceArgs.DEFAULT_JOURNAL_SEGMENT_SIZE);
+		System.err.println("\t--journal-segments is the number of journal files kept for each region on each member, default " + TraceArgs.DEFAULT_JOURNAL_SEGMENTS);
+		System.err.println("\t--key only traces the given key, may be given more than once");
+		System.err.println("\t--key-prefix and --key-regex only trace keys that start with or match the given text");
+		System.err.println("\t--sample-rate only traces this fraction of the keys, all the events of a sampled key are traced");
+		System.err.println("\t--value-field only traces events whose new value is a PDX instance with the given field value");
+		System.err.println("\t--hot-keys only counts the events of each key instead of recording them, print the keys written most often with hotkeys");
+		System.err.println("\t--hot-key-capacity is the number of keys each member keeps with --hot-keys, default " + TraceArgs.DEFAULT_HOT_KEY_CAPACITY);
+		System.err.println("\t--wan-lag only measures the lag of the events that arrive from other sites, print the lag percentiles with wanlag");
+		System.err.println("\t--stream sends the events from all members to this client, which prints them until killed, the listeners are removed when it goes");
+		System.err.println("\t--output writes the streamed events to this file instead of the console");
+		System.err.println("\t--duration stops streaming after this many seconds");
+		System.err.println("\tan event is traced if it passes all of the filters given, clear and destroy region events are always traced");
 	}
  }
@@ -0,0 +1,231 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class TraceArgs implements Serializable {
+	private static final long serialVersionUID = -4419268871023520117L;
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+	public static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 64;
+	public static final int DEFAULT_JOURNAL_SEGMENTS = 16;
+	public static final int DEFAULT_HOT_KEY_CAPACITY = 1000;
+
+	/**
+	 * What the trace listener does with an event when its buffer is full, because the events are
+	 * coming in faster than they can be written to the log.
+	 *
+	 * DROP discards the event and counts it.  The operation that caused it is not held up.
+	 *
+	 * BLOCK holds up the thread delivering the event, and so the operation, until there is room.
+	 * No event is lost but a busy region is slowed to the rate at which the log can be written.
+	 */
+	public enum WhenFull { DROP, BLOCK }
+
+	/**
+	 * What the listener installed by Trace does.
+	 *
+	 * EVENTS records each event, to the log or a journal.
+	 *
+	 * HOT_KEYS only counts the events of each key, in fixed memory, so that HotKeys can report the
+	 * keys written most often.
+	 *
+	 * WAN_LAG only measures, for events that came from another site, the time from the operation on
+	 * the origin site to its arrival here, so that WanLag can report the lag of each site.
+	 */
+	public enum Mode { EVENTS, HOT_KEYS, WAN_LAG }
+
+	private String regionName;
+	private Mode mode;
+	private int bufferSize;
+	private WhenFull whenFull;
+	private String journalDir;
+	private int journalSegmentSize;
+	private int journalSegments;
+	private List<String> keys;
+	private String keyPrefix;
+	private String keyRegex;
+	private double sampleRate;
+	private String valueField;
+	private int hotKeyCapacity;
+	private int streamSeconds;
+
+	public TraceArgs(){
+		// set defaults
+		regionName = null;
+		mode = Mode.EVENTS;
+		bufferSize = DEFAULT_BUFFER_SIZE;
+		whenFull = WhenFull.DROP;
+		journalDir = null;
+		journalSegmentSize = DEFAULT_JOURNAL_SEGMENT_SIZE;
+		journalSegments = DEFAULT_JOURNAL_SEGMENTS;
+		keys = null;
+		keyPrefix = null;
+		keyRegex = null;
+		sampleRate = 1.0d;
+		valueField = null;
+		hotKeyCapacity = DEFAULT_HOT_KEY_CAPACITY;
+		streamSeconds = 0;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public void setRegionName(String regionName) {
+		this.regionName = regionName;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * EVENTS (the default) to record each event, HOT_KEYS to count the events of each key or WAN_LAG
+	 * to measure the lag of events from other sites
+	 */
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * the number of events each member can hold for a region before they are written, rounded up
+	 * to a power of 2.  The buffer is allocated when the listener is installed.
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public WhenFull getWhenFull() {
+		return whenFull;
+	}
+
+	/**
+	 * what to do with an event when the buffer is full, DROP (the default) or BLOCK
+	 */
+	public void setWhenFull(WhenFull whenFull) {
+		this.whenFull = whenFull;
+	}
+
+	public String getJournalDir() {
+		return journalDir;
+	}
+
+	/**
+	 * the directory, on each member, to write a binary journal of the events to instead of the log,
+	 * see TraceJournal.  Relative to the member's working directory.  null (the default) means the log.
+	 */
+	public void setJournalDir(String journalDir) {
+		this.journalDir = journalDir;
+	}
+
+	public int getJournalSegmentSize() {
+		return journalSegmentSize;
+	}
+
+	/**
+	 * the size of each journal file in MB
+	 */
+	public void setJournalSegmentSize(int journalSegmentSize) {
+		this.journalSegmentSize = journalSegmentSize;
+	}
+
+	public int getJournalSegments() {
+		return journalSegments;
+	}
+
+	/**
+	 * the number of journal files kept for each region on each member, the oldest is deleted when
+	 * a new one is started
+	 */
+	public void setJournalSegments(int journalSegments) {
+		this.journalSegments = journalSegments;
+	}
+
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * only trace these keys, given as text.  String, Integer and Long keys are matched by value,
+	 * keys of other types by their toString().
+	 */
+	public void setKeys(List<String> keys) {
+		this.keys = keys;
+	}
+
+	public String getKeyPrefix() {
+		return keyPrefix;
+	}
+
+	/**
+	 * only trace keys that start with this text
+	 */
+	public void setKeyPrefix(String keyPrefix) {
+		this.keyPrefix = keyPrefix;
+	}
+
+	public String getKeyRegex() {
+		return keyRegex;
+	}
+
+	/**
+	 * only trace keys that match this java.util.regex pattern
+	 */
+	public void setKeyRegex(String keyRegex) {
+		this.keyRegex = keyRegex;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * the fraction of keys to trace, chosen by hash code so that all the events of a sampled key
+	 * are traced, 1 (the default) for all of them
+	 */
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public String getValueField() {
+		return valueField;
+	}
+
+	/**
+	 * only trace events whose new value is a PDX instance with the given field value, given as
+	 * field-name=value
+	 */
+	public void setValueField(String valueField) {
+		this.valueField = valueField;
+	}
+
+	public int getHotKeyCapacity() {
+		return hotKeyCapacity;
+	}
+
+	/**
+	 * in HOT_KEYS mode, the number of keys each member keeps for the region, those with the highest
+	 * counts
+	 */
+	public void setHotKeyCapacity(int hotKeyCapacity) {
+		this.hotKeyCapacity = hotKeyCapacity;
+	}
+
+	public int getStreamSeconds() {
+		return streamSeconds;
+	}
+
+	/**
+	 * when streaming, how long each member streams events for, 0 (the default) until the client
+	 * goes away or the listener is removed
+	 */
+	public void setStreamSeconds(int streamSeconds) {
+		this.streamSeconds = streamSeconds;
+	}
+
+}
@@ -0,0 +1,63 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+
+/**
+ * A batch of trace events streamed from one member to the client, see server.TraceStreamSink.
+ *
+ * The events are lines of UTF-8 text, compressed with Deflater, one per event:
+ *
+ *   timestamp (ms since the epoch) TAB operation TAB key TAB originating member TAB value size
+ *
+ * with - for an unknown member or value size.  A chunk with no events and none dropped is a
+ * heartbeat, sent when there has been nothing else to send for a while so that the client and the
+ * member each know the other is still there.
+ */
+public class TraceChunk implements Serializable {
+	private static final long serialVersionUID = -6870356124373907214L;
+
+	private String memberName;
+	private String regionName;
+	private byte []data;
+	private int events;
+	private long dropped;
+
+	public TraceChunk(String memberName, String regionName, byte []data, int events, long dropped){
+		this.memberName = memberName;
+		this.regionName = regionName;
+		this.data = data;
+		this.events = events;
+		this.dropped = dropped;
+	}
+
+	public String getMemberName() {
+		return memberName;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	/**
+	 * @return the compressed lines, empty if there are no events
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return the number of events dropped on the member since the last chunk, because they came
+	 * faster than they could be sent
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	public boolean isHeartbeat(){
+		return events == 0 && dropped == 0;
+	}
+}
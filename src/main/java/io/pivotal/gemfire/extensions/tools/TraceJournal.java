@@ -0,0 +1,140 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import io.pivotal.gemfire.extensions.tools.server.TraceCacheListener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.geode.pdx.JSONFormatter;
+import org.apache.geode.pdx.PdxInstance;
+
+/**
+ * The format of the binary trace journals written by TraceJournalWriter and read by TraceQuery.
+ *
+ * A journal is a series of segment files of fixed size, one series for each traced region on each
+ * member.  Each segment starts with a header of HEADER_SIZE bytes:
+ *
+ *   int magic, int version, long time of the first record, long time of the last record,
+ *   short length + UTF-8 member name, short length + UTF-8 region name
+ *
+ * followed by records, each starting with a type byte.  A type of 0 marks the end of the records,
+ * the rest of the file is zeros.  The type byte of a record is written last so a reader never
+ * sees half a record, even while the segment is still being written.
+ *
+ *   an event: type (the Op ordinal + 1), long timestamp, short origin member, int value size
+ *   (-1 if there is no value or it is held deserialized), byte key type, int key length, key
+ *
+ *   MEMBER defines a member id used by the events that follow it in the segment: short id,
+ *   short length + UTF-8 name.  Id 0 is an unknown member and is never defined.
+ *
+ *   DROPPED: long timestamp, long number of events dropped because the trace buffer was full
+ *
+ * Strings, Integers and Longs are stored as such, PDX keys as JSON and anything else as its
+ * toString(), so a key can be matched without deserializing it.
+ */
+public class TraceJournal {
+	public static final int MAGIC = 0x54524a31;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 1024;
+	public static final int MAX_NAME_BYTES = 400;
+	public static final int MAX_KEY_BYTES = 4096;
+	public static final String SUFFIX = ".trj";
+
+	public static final int FIRST_TIMESTAMP_OFFSET = 8;
+	public static final int LAST_TIMESTAMP_OFFSET = 16;
+	public static final int NAMES_OFFSET = 24;
+
+	public static final byte END = 0;
+	public static final byte MEMBER = 64;
+	public static final byte DROPPED = 65;
+
+	// type, timestamp, member, value size, key type, key length
+	public static final int EVENT_OVERHEAD = 1 + 8 + 2 + 4 + 1 + 4;
+
+	public static final byte KEY_STRING = 1;
+	public static final byte KEY_INTEGER = 2;
+	public static final byte KEY_LONG = 3;
+	public static final byte KEY_PDX = 4;
+	public static final byte KEY_OTHER = 5;
+
+	public static byte keyType(Object key){
+		if (key instanceof String) return KEY_STRING;  // RETURN
+		if (key instanceof Integer) return KEY_INTEGER;  // RETURN
+		if (key instanceof Long) return KEY_LONG;  // RETURN
+		if (key instanceof PdxInstance) return KEY_PDX;  // RETURN
+		return KEY_OTHER;
+	}
+
+	/**
+	 * @return the key as stored for its keyType, truncated to MAX_KEY_BYTES
+	 */
+	public static byte []keyBytes(Object key){
+		byte []result;
+		if (key instanceof Integer){
+			result = ByteBuffer.allocate(4).putInt(((Integer) key).intValue()).array();
+		} else if (key instanceof Long){
+			result = ByteBuffer.allocate(8).putLong(((Long) key).longValue()).array();
+		} else if (key instanceof PdxInstance){
+			result = JSONFormatter.toJSON((PdxInstance) key).getBytes(StandardCharsets.UTF_8);
+		} else {
+			String s;
+			try {
+				s = key.toString();
+			} catch(Exception x){
+				s = "instance of " + key.getClass().getName();
+			}
+			result = s.getBytes(StandardCharsets.UTF_8);
+		}
+
+		if (result.length <= MAX_KEY_BYTES) return result;  // RETURN
+		byte []truncated = new byte[MAX_KEY_BYTES];
+		System.arraycopy(result, 0, truncated, 0, MAX_KEY_BYTES);
+		return truncated;
+	}
+
+	/**
+	 * @return the key stored at offset in buffer, as text
+	 */
+	public static String formatKey(ByteBuffer buffer, int offset, byte keyType, int length){
+		if (keyType == KEY_INTEGER) return Integer.toString(buffer.getInt(offset));  // RETURN
+		if (keyType == KEY_LONG) return Long.toString(buffer.getLong(offset));  // RETURN
+
+		byte []bytes = new byte[length];
+		for(int i=0; i < length; ++i) bytes[i] = buffer.get(offset + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return true if type is the type byte of an event
+	 */
+	public static boolean isEvent(byte type){
+		return type >= 1 && type <= TraceCacheListener.Op.values().length;
+	}
+
+	public static TraceCacheListener.Op op(byte type){
+		return TraceCacheListener.Op.values()[type - 1];
+	}
+
+	public static byte type(TraceCacheListener.Op op){
+		return (byte) (op.ordinal() + 1);
+	}
+
+	/**
+	 * writes a length and as much of s as fits in MAX_NAME_BYTES at the buffer's position
+	 */
+	public static void putName(ByteBuffer buffer, String s){
+		byte []bytes = s.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, MAX_NAME_BYTES);
+		buffer.putShort((short) length);
+		buffer.put(bytes, 0, length);
+	}
+
+	/**
+	 * reads a name written by putName at the buffer's position
+	 */
+	public static String getName(ByteBuffer buffer){
+		byte []bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,353 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the binary trace journals written with trace --journal-dir, see TraceJournal.  It does not
+ * connect to the cluster: copy the journal directories of the members somewhere, or point it at
+ * a shared file system.
+ *
+ * Each segment file is memory mapped and scanned by one of a pool of threads.  The region and time
+ * range of a segment are in its header so segments that can not match are skipped without being
+ * read, and keys are matched in their stored form without decoding them.  The matching events of
+ * all the segments are printed in time order.
+ */
+public class TraceQuery {
+	private static String KEY_PREFIX="--key=";
+	private static String REGION_PREFIX="--region=";
+	private static String FROM_PREFIX="--from=";
+	private static String TO_PREFIX="--to=";
+	private static String THREADS_PREFIX="--threads=";
+	private static String COUNT_FLAG="--count";
+
+	private String key;
+	private String regionName;
+	private long from;
+	private long to;
+	private boolean countOnly;
+
+	// the key in each of the forms it may be stored in
+	private byte []keyText;
+	private Integer keyInteger;
+	private Long keyLong;
+
+	/**
+	 * @param key the key to look for, as text, null for any key
+	 * @param regionName the region to look in, null for any region
+	 * @param from the earliest event time in ms since the epoch
+	 * @param to the latest event time in ms since the epoch
+	 * @param countOnly if true the matches are counted but not kept
+	 */
+	public TraceQuery(String key, String regionName, long from, long to, boolean countOnly){
+		this.key = key;
+		this.regionName = regionName;
+		this.from = from;
+		this.to = to;
+		this.countOnly = countOnly;
+
+		if (key != null){
+			keyText = key.getBytes(StandardCharsets.UTF_8);
+			try {
+				keyInteger = Integer.valueOf(key);
+			} catch(NumberFormatException x){
+				keyInteger = null;
+			}
+			try {
+				keyLong = Long.valueOf(key);
+			} catch(NumberFormatException x){
+				keyLong = null;
+			}
+		}
+	}
+
+	public static void main(String []args){
+		int rc = 1;
+		try {
+			String key = null, region = null;
+			long from = Long.MIN_VALUE, to = Long.MAX_VALUE;
+			int threads = Runtime.getRuntime().availableProcessors();
+			boolean countOnly = false;
+			List<File> paths = new ArrayList<File>();
+			for(String arg : args){
+				if (arg.startsWith(KEY_PREFIX)){
+					key = arg.substring(KEY_PREFIX.length());
+				} else if (arg.startsWith(REGION_PREFIX)){
+					region = arg.substring(REGION_PREFIX.length());
+					if (!region.startsWith("/")) region = "/" + region;
+				} else if (arg.startsWith(FROM_PREFIX)){
+					from = parseTime(FROM_PREFIX, arg.substring(FROM_PREFIX.length()));
+				} else if (arg.startsWith(TO_PREFIX)){
+					to = parseTime(TO_PREFIX, arg.substring(TO_PREFIX.length()));
+				} else if (arg.startsWith(THREADS_PREFIX)){
+					String s = arg.substring(THREADS_PREFIX.length());
+					try {
+						threads = Integer.parseInt(s);
+					} catch(NumberFormatException x){
+						System.err.println("--threads must be an integer: " + s);
+						System.exit(1);
+					}
+				} else if (arg.equals(COUNT_FLAG)){
+					countOnly = true;
+				} else if (arg.startsWith("--")){
+					System.err.println("unrecognized argument: " + arg);
+					printUsage();
+					System.exit(1);
+				} else {
+					paths.add(new File(arg));
+				}
+			}
+			if (paths.isEmpty()){
+				printUsage();
+				System.exit(1);
+			}
+
+			List<File> segments = new ArrayList<File>();
+			for(File path : paths) findSegments(path, segments);
+
+			long start = System.currentTimeMillis();
+			Result result = new TraceQuery(key, region, from, to, countOnly).run(segments, Math.max(threads, 1));
+			long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+
+			for(Match match : result.getMatches()) System.out.println(match.getLine());
+			System.err.println("scanned " + result.getRecords() + " events in " + result.getScannedSegments() + " of " + segments.size() + " segments in "
+					+ elapsed + "ms (" + result.getRecords() * 1000l / elapsed + " events/s), " + result.getMatched() + " matched"
+					+ (result.getDropped() > 0 ? ", " + result.getDropped() + " events were dropped by the members in the time range" : ""));
+			rc = 0;
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		}
+
+		System.exit(rc);
+	}
+
+	/**
+	 * scans the segments in parallel
+	 */
+	public Result run(List<File> segments, int threads) throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(segments.size());
+			for(final File segment : segments){
+				futures.add(executor.submit(new Callable<Result>(){
+					@Override
+					public Result call() throws IOException {
+						return scan(segment);
+					}
+				}));
+			}
+
+			Result result = new Result();
+			for(Future<Result> future : futures) result.add(future.get());
+			Collections.sort(result.matches, new Comparator<Match>(){
+				@Override
+				public int compare(Match a, Match b) {
+					return Long.compare(a.timestamp, b.timestamp);
+				}
+			});
+			return result;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the matching events of one segment file
+	 */
+	public Result scan(File file) throws IOException {
+		Result result = new Result();
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			if (channel.size() < TraceJournal.HEADER_SIZE) return result;  // RETURN
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt(0) != TraceJournal.MAGIC || buffer.getInt(4) != TraceJournal.VERSION){
+			System.err.println("not a trace journal segment: " + file);
+			return result;  // RETURN
+		}
+
+		long first = buffer.getLong(TraceJournal.FIRST_TIMESTAMP_OFFSET);
+		long last = buffer.getLong(TraceJournal.LAST_TIMESTAMP_OFFSET);
+		buffer.position(TraceJournal.NAMES_OFFSET);
+		String member = TraceJournal.getName(buffer);
+		String region = TraceJournal.getName(buffer);
+		if (regionName != null && !regionName.equals(region)) return result;  // RETURN
+
+		// empty, or none of it in the time range
+		if (first == 0 || last < from || first > to) return result;  // RETURN
+
+		result.scannedSegments = 1;
+		String []members = new String[16];
+		int limit = buffer.capacity();
+		int pos = TraceJournal.HEADER_SIZE;
+		while(pos < limit){
+			byte type = buffer.get(pos);
+			if (type == TraceJournal.END) break;  // BREAK
+
+			if (type == TraceJournal.MEMBER){
+				int id = buffer.getShort(pos + 1);
+				if (id < 0) break;  // BREAK - a damaged segment
+				buffer.position(pos + 3);
+				if (id >= members.length) members = Arrays.copyOf(members, Math.max(id + 1, members.length * 2));
+				members[id] = TraceJournal.getName(buffer);
+				pos = buffer.position();
+			} else if (type == TraceJournal.DROPPED){
+				long timestamp = buffer.getLong(pos + 1);
+				long dropped = buffer.getLong(pos + 9);
+				pos += 17;
+				if (timestamp >= from && timestamp <= to){
+					result.dropped += dropped;
+					if (!countOnly && key == null) result.matches.add(new Match(timestamp, format(timestamp) + "\t" + member + "\t" + region + "\tDROPPED\t" + dropped + " events"));
+				}
+			} else if (!TraceJournal.isEvent(type)){
+				break;  // BREAK - a damaged segment
+			} else {
+				int start = pos;
+				long timestamp = buffer.getLong(start + 1);
+				int keyType = buffer.get(start + 15);
+				int keyLength = buffer.getInt(start + 16);
+				int keyOffset = start + TraceJournal.EVENT_OVERHEAD;
+				if (keyLength < 0 || keyOffset + keyLength > limit) break;  // BREAK - a damaged segment
+				pos = keyOffset + keyLength;
+				++result.records;
+
+				if (timestamp < from || timestamp > to) continue;
+				if (key != null && !keyMatches(buffer, keyOffset, (byte) keyType, keyLength)) continue;
+
+				++result.matched;
+				if (countOnly) continue;
+
+				short origin = buffer.getShort(start + 9);
+				int valueSize = buffer.getInt(start + 11);
+				result.matches.add(new Match(timestamp, format(timestamp) + "\t" + member + "\t" + region + "\t" + TraceJournal.op(type) + "\t"
+						+ TraceJournal.formatKey(buffer, keyOffset, (byte) keyType, keyLength) + "\t" + (origin > 0 && origin < members.length && members[origin] != null ? members[origin] : "-")
+						+ "\t" + (valueSize < 0 ? "-" : Integer.toString(valueSize))));
+			}
+		}
+		return result;
+	}
+
+	private boolean keyMatches(MappedByteBuffer buffer, int offset, byte keyType, int length){
+		if (keyType == TraceJournal.KEY_INTEGER) return keyInteger != null && buffer.getInt(offset) == keyInteger.intValue();  // RETURN
+		if (keyType == TraceJournal.KEY_LONG) return keyLong != null && buffer.getLong(offset) == keyLong.longValue();  // RETURN
+
+		if (length != keyText.length) return false;  // RETURN
+		for(int i=0; i < length; ++i){
+			if (buffer.get(offset + i) != keyText[i]) return false;  // RETURN
+		}
+		return true;
+	}
+
+	private static String format(long timestamp){
+		return Instant.ofEpochMilli(timestamp).toString();
+	}
+
+	private static long parseTime(String option, String s){
+		try {
+			if (s.matches("[0-9]+")) return Long.parseLong(s);  // RETURN
+			return Instant.parse(s).toEpochMilli();
+		} catch(DateTimeParseException x){
+			System.err.println(option + " must be ms since the epoch or a UTC time like 2021-12-02T10:15:30Z: " + s);
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	// the segment files in path, which may be one
+	private static void findSegments(File path, List<File> result){
+		if (path.isDirectory()){
+			File []children = path.listFiles();
+			if (children == null) return;  // RETURN
+			Arrays.sort(children);
+			for(File child : children) findSegments(child, result);
+		} else if (path.getName().endsWith(TraceJournal.SUFFIX)){
+			result.add(path);
+		}
+	}
+
+	private static void printUsage(){
+		System.err.println("usage: tracequery [--key=key] [--region=region-name] [--from=time] [--to=time] [--threads=n] [--count] journal-dir-or-file ...");
+		System.err.println("\tprints the events in the trace journals that match, in time order, one per line: time, member, region, operation, key, originating member, value size");
+		System.err.println("\t--key matches keys whose text (toString or, for PDX keys, JSON) is the given text");
+		System.err.println("\t--from and --to are ms since the epoch or UTC times like 2021-12-02T10:15:30Z, both inclusive");
+		System.err.println("\t--threads is the number of segment files scanned at once, default one per processor");
+		System.err.println("\t--count only counts the events that match");
+	}
+
+	public static class Match {
+		private long timestamp;
+		private String line;
+
+		Match(long timestamp, String line){
+			this.timestamp = timestamp;
+			this.line = line;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getLine() {
+			return line;
+		}
+	}
+
+	public static class Result {
+		private long records = 0;
+		private long matched = 0;
+		private long dropped = 0;
+		private int scannedSegments = 0;
+		private List<Match> matches = new ArrayList<Match>();
+
+		private void add(Result other){
+			records += other.records;
+			matched += other.matched;
+			dropped += other.dropped;
+			scannedSegments += other.scannedSegments;
+			matches.addAll(other.matches);
+		}
+
+		/**
+		 * @return the number of events read, matching or not
+		 */
+		public long getRecords() {
+			return records;
+		}
+
+		public long getMatched() {
+			return matched;
+		}
+
+		/**
+		 * @return the number of events the members dropped in the time range, see TraceArgs.WhenFull
+		 */
+		public long getDropped() {
+			return dropped;
+		}
+
+		public int getScannedSegments() {
+			return scannedSegments;
+		}
+
+		public List<Match> getMatches() {
+			return matches;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.cache.execute.ResultCollector;
+import org.apache.geode.distributed.DistributedMember;
+
+/*
+ * writes the events of the TraceChunks streamed by TraceStream as they arrive, one per line in
+ * the same format as tracequery: time, member, region, operation, key, originating member, value
+ * size.  Messages go to the console.
+ */
+public class TraceStreamCollector implements ResultCollector<Object, String> {
+	private PrintWriter out;
+	private Inflater inflater = new Inflater();
+	private byte []buffer = new byte[64 * 1024];
+	private long events = 0l;
+	private long dropped = 0l;
+	private long bytes = 0l;
+
+	public TraceStreamCollector(PrintWriter out){
+		this.out = out;
+	}
+
+	@Override
+	public synchronized void addResult(DistributedMember member, Object result) {
+		if (!(result instanceof TraceChunk)){
+			out.flush();
+			System.out.println(result);
+			return;  // RETURN
+		}
+
+		TraceChunk chunk = (TraceChunk) result;
+		if (chunk.getDropped() > 0){
+			System.err.println(chunk.getMemberName() + ": dropped " + chunk.getDropped() + " events on " + chunk.getRegionName() + ", they came faster than they could be sent");
+			dropped += chunk.getDropped();
+		}
+		if (chunk.getEvents() == 0) return;  // RETURN
+
+		String prefix = "\t" + chunk.getMemberName() + "\t" + chunk.getRegionName() + "\t";
+		String text = inflate(chunk.getData());
+		int start = 0;
+		while(start < text.length()){
+			int end = text.indexOf('\n', start);
+			if (end < 0) end = text.length();
+			int tab = text.indexOf('\t', start);
+			if (tab > start && tab < end){
+				out.print(Instant.ofEpochMilli(Long.parseLong(text.substring(start, tab))).toString());
+				out.print(prefix);
+				out.println(text.substring(tab + 1, end));
+			}
+			start = end + 1;
+		}
+		out.flush();
+		events += chunk.getEvents();
+		bytes += chunk.getData().length;
+	}
+
+	private String inflate(byte []data){
+		ByteArrayOutputStream text = new ByteArrayOutputStream(data.length * 4);
+		inflater.reset();
+		inflater.setInput(data);
+		try {
+			while(!inflater.finished()){
+				int n = inflater.inflate(buffer);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;  // BREAK - truncated
+				text.write(buffer, 0, n);
+			}
+		} catch(DataFormatException x){
+			System.err.println("could not decompress a trace chunk: " + x.getMessage());
+		}
+		return new String(text.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void clearResults() {
+	}
+
+	@Override
+	public synchronized void endResults() {
+		out.flush();
+	}
+
+	@Override
+	public synchronized String getResult() throws FunctionException {
+		return "received " + events + " events in " + bytes / 1024 + "KB, " + dropped + " dropped";
+	}
+
+	@Override
+	public String getResult(long timeout, TimeUnit unit) throws FunctionException, InterruptedException {
+		return getResult();
+	}
+
+}
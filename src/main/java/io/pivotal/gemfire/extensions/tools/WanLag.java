@@ -0,0 +1,199 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.geode.cache.client.ClientCache;
+import org.apache.geode.cache.client.ClientCacheFactory;
+import org.apache.geode.cache.client.Pool;
+import org.apache.geode.cache.execute.Execution;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.cache.execute.ResultCollector;
+
+/**
+ * Collects the WanLagReports of every member and prints the lag percentiles of each region for
+ * each site its events came from.  Each event is measured on one member only, so the histograms of
+ * all members are added together.  With an interval, polls until killed and prints the lag of the
+ * events that arrived since the last poll.
+ *
+ * Events enqueued by gemtouch --enqueue carry the time their entry was last written, so for them
+ * the lag printed is the age of the entry rather than how far behind this site is.
+ */
+public class WanLag {
+	public static String NAME = "WanLag";
+		
+	private static String INTERVAL_PREFIX="--interval=";
+	
+	private static String locatorString = null;
+	private static String regionName = null;
+	private static int intervalSeconds = 0;
+	
+	public static void main(String []args){
+		int rc = 1;
+		try {
+			parseArgs(args);
+
+			initCache(locatorString);
+			
+			Pool pool = ClientCacheFactory.getAnyInstance().getDefaultPool();
+			
+			Map<String, Map<Integer, LatencyHistogram>> previous = null;
+			while(true){
+				Map<String, Map<Integer, LatencyHistogram>> current = collect(pool);
+				if (previous == null){
+					print(current, "since the listeners were installed");
+				} else {
+					print(since(current, previous), "in the last " + intervalSeconds + "s");
+				}
+				
+				if (intervalSeconds == 0) break;  // BREAK
+				
+				previous = current;
+				Thread.sleep(intervalSeconds * 1000l);
+			}
+			
+			rc = 0;
+			
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			ClientCache cache = ClientCacheFactory.getAnyInstance();
+			if (cache != null) cache.close();
+		}
+		
+		System.exit(rc);
+	}
+	
+	// the histograms of all members, by region and site
+	private static Map<String, Map<Integer, LatencyHistogram>> collect(Pool pool){
+		Execution exec = FunctionService.onServers(pool);
+		if (regionName != null) exec = exec.withArgs(regionName);
+		
+		ResultCollector coll = exec.execute(NAME);
+		List<Object> results = (List<Object>) coll.getResult();
+		
+		Map<String, Map<Integer, LatencyHistogram>> merged = new TreeMap<String, Map<Integer, LatencyHistogram>>();
+		for(Object result : results){
+			if (!(result instanceof WanLagReport)){
+				System.out.println(result);
+				continue;  // CONTINUE
+			}
+			
+			WanLagReport report = (WanLagReport) result;
+			if (report.getAhead() > 0){
+				System.out.println(report.getMemberName() + ": " + report.getAhead() + " events on " + report.getRegionName() 
+						+ " seemed to arrive before they were done, the clock of their site is ahead");
+			}
+			Map<Integer, LatencyHistogram> sites = merged.get(report.getRegionName());
+			if (sites == null){
+				sites = new TreeMap<Integer, LatencyHistogram>();
+				merged.put(report.getRegionName(), sites);
+			}
+			for(Map.Entry<Integer, LatencyHistogram> site : report.getLagBySite().entrySet()){
+				LatencyHistogram histogram = sites.get(site.getKey());
+				if (histogram == null){
+					histogram = new LatencyHistogram();
+					sites.put(site.getKey(), histogram);
+				}
+				histogram.merge(site.getValue());
+			}
+		}
+		return merged;
+	}
+	
+	private static Map<String, Map<Integer, LatencyHistogram>> since(Map<String, Map<Integer, LatencyHistogram>> current, Map<String, Map<Integer, LatencyHistogram>> previous){
+		Map<String, Map<Integer, LatencyHistogram>> result = new TreeMap<String, Map<Integer, LatencyHistogram>>();
+		for(Map.Entry<String, Map<Integer, LatencyHistogram>> region : current.entrySet()){
+			Map<Integer, LatencyHistogram> sites = new TreeMap<Integer, LatencyHistogram>();
+			Map<Integer, LatencyHistogram> previousSites = previous.get(region.getKey());
+			for(Map.Entry<Integer, LatencyHistogram> site : region.getValue().entrySet()){
+				LatencyHistogram earlier = previousSites == null ? null : previousSites.get(site.getKey());
+				// a member that left takes its counts with it, start again from this poll
+				sites.put(site.getKey(), earlier == null || earlier.getCount() > site.getValue().getCount() ? site.getValue() : site.getValue().since(earlier));
+			}
+			result.put(region.getKey(), sites);
+		}
+		return result;
+	}
+	
+	private static void print(Map<String, Map<Integer, LatencyHistogram>> lag, String period){
+		System.out.println(new Date() + " WAN lag " + period + ", in ms");
+		System.out.println("region\tsite\tevents\tp50\tp90\tp99\tp99.9\tmax");
+		for(Map.Entry<String, Map<Integer, LatencyHistogram>> region : lag.entrySet()){
+			for(Map.Entry<Integer, LatencyHistogram> site : region.getValue().entrySet()){
+				LatencyHistogram histogram = site.getValue();
+				System.out.println(region.getKey() + "\t" + site.getKey() + "\t" + histogram.getCount() + "\t" + formatMs(histogram.getPercentileMicros(50)) 
+						+ "\t" + formatMs(histogram.getPercentileMicros(90)) + "\t" + formatMs(histogram.getPercentileMicros(99)) 
+						+ "\t" + formatMs(histogram.getPercentileMicros(99.9)) + "\t" + formatMs(histogram.getMaxMicros()));
+			}
+		}
+	}
+	
+	private static String formatMs(long micros){
+		return String.valueOf(micros / 1000l);
+	}
+	
+	private static void initCache(String locatorString){
+		ClientCacheFactory factory = new ClientCacheFactory();
+		setupPools(factory, locatorString);
+		factory.create();
+		System.out.println("connected to distributed system  with locator " + locatorString);
+	}
+	
+	
+	// this will need to be enhanced to support server groups
+	private static void setupPools(ClientCacheFactory ccf, String locator){
+		Pattern pattern = Pattern.compile("(.*)\\[(.*)\\]");
+		Matcher matcher = pattern.matcher(locator);
+		
+		if (!matcher.matches())
+			throw new RuntimeException("could not parse locator string: " + locator);
+		
+		String host = matcher.group(1);
+		int port = Integer.parseInt(matcher.group(2));
+		
+		ccf.addPoolLocator(host, port);
+	}
+	
+	private static void parseArgs(String []args){
+		if (args.length < 1) {
+			printUsage();
+			System.exit(1);
+		}
+	
+		locatorString = args[0];
+		for(int i=1; i < args.length; ++i){
+			String arg = args[i];
+			if (arg.startsWith(INTERVAL_PREFIX)){
+				String s = arg.substring(INTERVAL_PREFIX.length());
+				try {
+					intervalSeconds = Integer.parseInt(s);
+				} catch(NumberFormatException x){
+					System.err.println("--interval must be an integer: " + s);
+					System.exit(1);
+				}
+				if (intervalSeconds < 1){
+					System.err.println("--interval must be at least 1");
+					System.exit(1);
+				}
+			} else if (!arg.startsWith("--") && regionName == null){
+				regionName = arg;
+			} else {
+				System.err.println("unrecognized argument: " + arg);
+				printUsage();
+				System.exit(1);
+			}
+		}
+	}
+	
+	private static void printUsage(){
+		System.err.println("usage: wanlag locator-host[port] [region-name] [--interval=seconds]");
+		System.err.println("\tprints the lag of the events that arrived from other sites, measured by listeners installed with trace --wan-lag");
+		System.err.println("\tregion-name limits the report to one region, by default all regions with a listener are reported");
+		System.err.println("\t--interval polls until killed and prints the lag of the events that arrived since the last poll");
+	}
+ }
@@ -0,0 +1,47 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * The lag of the events of one region on one member, with a LatencyHistogram for each site they
+ * came from, see server.WanLagListener.
+ */
+public class WanLagReport implements Serializable {
+	private static final long serialVersionUID = 3807144215523374920L;
+
+	private String memberName;
+	private String regionName;
+	private Map<Integer, LatencyHistogram> lagBySite;
+	private long ahead;
+
+	public WanLagReport(String memberName, String regionName, Map<Integer, LatencyHistogram> lagBySite, long ahead){
+		this.memberName = memberName;
+		this.regionName = regionName;
+		this.lagBySite = lagBySite;
+		this.ahead = ahead;
+	}
+
+	public String getMemberName() {
+		return memberName;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	/**
+	 * @return the lag histogram of each site, by distributed system id
+	 */
+	public Map<Integer, LatencyHistogram> getLagBySite() {
+		return lagBySite;
+	}
+
+	/**
+	 * @return the number of events that seemed to arrive before they were done on their site,
+	 * because its clock is ahead of this one
+	 */
+	public long getAhead() {
+		return ahead;
+	}
+}
@@ -0,0 +1,178 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.asyncqueue.AsyncEventQueue;
+import org.apache.geode.cache.wan.GatewaySender;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.control.MemoryThresholds.MemoryState;
+import org.apache.geode.internal.cache.wan.AbstractGatewaySender;
+
+/**
+ * Slows touches down while the gateway senders and async event queues fed by the region are
+ * backing up or the member's heap is under pressure, and stops them while it is severe.
+ *
+ * While any local queue holds more than the resume size, the member's share of the rate budget
+ * is cut in proportion to how far past it the queue is, down to a tenth of the share at the
+ * maximum queue size.  While the heap is in the eviction state the share is cut to at most a
+ * half.  The share goes back up as the queues drain and the heap recovers, see
+ * RateBudget.slowDown.
+ *
+ * Touching stops when any local queue reaches the maximum queue size or the heap reaches the
+ * critical state, and does not start again until every queue has drained to the resume size and
+ * the heap is out of the critical state.  Progress keeps being reported while touching is
+ * stopped, and the job can still be cancelled with gemtouchctl.  The state is sampled at most
+ * every 250ms so the check is cheap enough to run before every batch.
+ *
+ * One instance is shared by all workers touching a region on a member.  The first worker
+ * to find the queues backed up does the waiting while holding the lock so the others queue
+ * up behind it and the stall is only counted once.
+ */
+public class Backpressure {
+	private static long CHECK_INTERVAL_MS = 250l;
+	private static long STALL_POLL_MS = 500l;
+	private static double MIN_SHARE = 0.1d;
+	private static double EVICTION_SHARE = 0.5d;
+
+	private String jobName;
+	private List<String> senderIds;
+	private List<String> queueIds;
+	private int maxQueueSize;
+	private int resumeQueueSize;
+	private RateBudget budget;
+	private Runnable whileStalled;
+	private long lastCheck;
+	private double share;
+	
+	// not guarded by the lock, which is held for as long as the stall lasts
+	private volatile long stallStart;
+	private volatile long stallMs;
+
+	/**
+	 * @param budget slowed down while the queues or the heap are under pressure
+	 * @param whileStalled run every 500ms or so while touching is stopped, may be null
+	 */
+	public Backpressure(Region<?,?> region, String jobName, int maxQueueSize, int resumeQueueSize, RateBudget budget, Runnable whileStalled){
+		this.jobName = jobName;
+		this.senderIds = new ArrayList<String>(region.getAttributes().getGatewaySenderIds());
+		this.queueIds = new ArrayList<String>(region.getAttributes().getAsyncEventQueueIds());
+		this.maxQueueSize = maxQueueSize;
+		this.resumeQueueSize = resumeQueueSize;
+		this.budget = budget;
+		this.whileStalled = whileStalled;
+		this.lastCheck = 0l;
+		this.share = 1d;
+		this.stallStart = 0l;
+		this.stallMs = 0l;
+	}
+
+	/**
+	 * adjusts the rate to the queues and the heap, and blocks for as long as they say touching 
+	 * should stop
+	 *
+	 * @return the number of ms spent waiting
+	 */
+	public synchronized long await(){
+		long now = System.currentTimeMillis();
+		if (now - lastCheck < CHECK_INTERVAL_MS) return 0;  // RETURN
+		lastCheck = now;
+
+		int queueSize = largestQueueSize();
+		MemoryState heap = heapState();
+		if (!heap.isCritical() && queueSize < maxQueueSize){
+			setShare(share(queueSize, heap), queueSize, heap);
+			return 0;  // RETURN
+		}
+
+		CacheFactory.getAnyInstance().getLogger().info("touch paused for backpressure, gateway queue size " + queueSize + ", heap " + heap);
+		long start = now;
+		stallStart = start;
+		try {
+			while(heapState().isCritical() || largestQueueSize() > resumeQueueSize){
+				if (JobControl.getState(jobName) == JobControl.State.CANCELLED) break;  // BREAK - the next batch will stop
+				
+				if (whileStalled != null) whileStalled.run();
+				try {
+					Thread.sleep(STALL_POLL_MS);
+				} catch(InterruptedException x){
+					Thread.currentThread().interrupt();
+					break; // BREAK
+				}
+			}
+		} finally {
+			stallMs += System.currentTimeMillis() - start;
+			stallStart = 0l;
+		}
+
+		long stalled = System.currentTimeMillis() - start;
+		lastCheck = System.currentTimeMillis();
+		CacheFactory.getAnyInstance().getLogger().info("touch resumed after " + stalled + "ms");
+		queueSize = largestQueueSize();
+		heap = heapState();
+		setShare(share(queueSize, heap), queueSize, heap);
+		return stalled;
+	}
+
+	/**
+	 * gives back the full share of the rate budget, to be called when the touch is done
+	 */
+	public synchronized void release(){
+		share = 1d;
+		budget.slowDown(this, 1d);
+	}
+
+	/**
+	 * @return the time spent stopped so far, including the current stall
+	 */
+	public long getStallMs(){
+		long start = stallStart;
+		return stallMs + (start > 0 ? System.currentTimeMillis() - start : 0l);
+	}
+
+	// the fraction of the member's share of the rate budget to touch at
+	private double share(int queueSize, MemoryState heap){
+		double result = 1d;
+		if (queueSize > resumeQueueSize){
+			result = 1d - (1d - MIN_SHARE) * (queueSize - resumeQueueSize) / Math.max(1, maxQueueSize - resumeQueueSize);
+		}
+		if (heap.isEviction()) result = Math.min(result, EVICTION_SHARE);
+		return Math.max(MIN_SHARE, result);
+	}
+
+	private void setShare(double newShare, int queueSize, MemoryState heap){
+		if (newShare == share) return;  // RETURN
+
+		if (newShare < 1d && share >= 1d){
+			CacheFactory.getAnyInstance().getLogger().info("touch slowed for backpressure, gateway queue size " + queueSize + ", heap " + heap);
+		} else if (newShare >= 1d){
+			CacheFactory.getAnyInstance().getLogger().info("touch back to its full rate, gateway queue size " + queueSize + ", heap " + heap);
+		}
+		share = newShare;
+		budget.slowDown(this, newShare);
+	}
+
+	private int largestQueueSize(){
+		Cache cache = CacheFactory.getAnyInstance();
+		int result = 0;
+		for(String id : senderIds){
+			GatewaySender sender = cache.getGatewaySender(id);
+			if (sender instanceof AbstractGatewaySender) result = Math.max(result, ((AbstractGatewaySender) sender).getEventQueueSize());
+		}
+
+		for(String id : queueIds){
+			AsyncEventQueue queue = cache.getAsyncEventQueue(id);
+			if (queue != null) result = Math.max(result, queue.size());
+		}
+
+		return result;
+	}
+
+	private MemoryState heapState(){
+		InternalCache cache = (InternalCache) CacheFactory.getAnyInstance();
+		return cache.getInternalResourceManager().getHeapMonitor().getState();
+	}
+}
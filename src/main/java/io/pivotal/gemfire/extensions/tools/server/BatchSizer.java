@@ -0,0 +1,63 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the number of entries to touch in each transaction.
+ *
+ * After every batch the size is adjusted based on what happened to the commit: a conflict
+ * halves it (on hot data every conflict costs a retry of each key in its own transaction),
+ * a commit slower than the target shrinks it a little and a fast, conflict free commit
+ * grows it by 10%.  The size always stays between the configured bounds.
+ *
+ * One instance is shared by all workers touching a region on a member.
+ */
+public class BatchSizer {
+	private static long TARGET_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private int minSize;
+	private int maxSize;
+	private double size;
+	private long batches;
+	private long conflicts;
+
+	public BatchSizer(int minSize, int maxSize, int initialSize){
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.size = clamp(initialSize);
+		this.batches = 0;
+		this.conflicts = 0;
+	}
+
+	public synchronized int getSize(){
+		return (int) size;
+	}
+
+	public int getMaxSize(){
+		return maxSize;
+	}
+
+	public synchronized void record(long commitNanos, boolean conflict){
+		++batches;
+		if (conflict){
+			++conflicts;
+			size = clamp(size / 2d);
+		} else if (commitNanos > TARGET_COMMIT_NANOS){
+			size = clamp(size * 0.8d);
+		} else {
+			size = clamp(size + Math.max(1d, size * 0.1d));
+		}
+	}
+
+	public synchronized long getBatches(){
+		return batches;
+	}
+
+	public synchronized long getConflicts(){
+		return conflicts;
+	}
+
+	private double clamp(double s){
+		return Math.max(minSize, Math.min(maxSize, s));
+	}
+}
@@ -0,0 +1,82 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.geode.cache.Region;
+
+/**
+ * Records which units of work (buckets, or slices of a replicated region) a touch job has
+ * completed so that an interrupted job can be resumed.
+ *
+ * Checkpoints live in the touch state region.  There is one small entry per completed
+ * unit, written once when the unit finishes, so the cost to the touch loop is one
+ * replicated put per bucket.  Since the state region is replicated, checkpoints survive
+ * the loss of the gemtouch client and of individual members, but not a restart of the
+ * whole cluster.
+ *
+ * The slices of a replicated region are large, so the parts of a slice are checkpointed too
+ * and a slice that is taken over or resumed is only touched again from the part in progress.
+ */
+public class Checkpoints {
+	private static String STATE_TYPE = "done";
+	private static String PART_STATE_TYPE = "part";
+
+	public static void markCompleted(String jobName, String regionName, int unit){
+		TouchState.getRegion().put(TouchState.key(STATE_TYPE, jobName, regionName, unit), Boolean.TRUE);
+	}
+
+	public static boolean isCompleted(String jobName, String regionName, int unit){
+		return TouchState.getRegion().containsKey(TouchState.key(STATE_TYPE, jobName, regionName, unit));
+	}
+
+	public static Set<Integer> completedUnits(String jobName, String regionName){
+		return completed(TouchState.keyPrefix(STATE_TYPE, jobName) + regionName + "|");
+	}
+
+	/**
+	 * @param parts the number of parts the unit is divided into, the checkpoints of a unit divided 
+	 * differently by another run or member do not count
+	 */
+	public static void markPartCompleted(String jobName, String regionName, int unit, int parts, int part){
+		TouchState.getRegion().put(TouchState.key(PART_STATE_TYPE, jobName, regionName, unit, parts, part), Boolean.TRUE);
+	}
+
+	/**
+	 * @return the parts of the unit completed so far, even if the unit itself has not been
+	 */
+	public static Set<Integer> completedParts(String jobName, String regionName, int unit, int parts){
+		return completed(TouchState.keyPrefix(PART_STATE_TYPE, jobName) + regionName + "|" + unit + "|" + parts + "|");
+	}
+
+	private static Set<Integer> completed(String prefix){
+		Set<Integer> result = new TreeSet<Integer>();
+		for(String key : TouchState.getRegion().keySet()){
+			if (key.startsWith(prefix)) result.add(Integer.valueOf(key.substring(prefix.length())));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of checkpoints removed, not counting those of parts
+	 */
+	public static int clear(String jobName){
+		String prefix = TouchState.keyPrefix(STATE_TYPE, jobName);
+		String partPrefix = TouchState.keyPrefix(PART_STATE_TYPE, jobName);
+		Region<String,Object> state = TouchState.getRegion();
+		List<String> keys = new ArrayList<String>();
+		int parts = 0;
+		for(String key : state.keySet()){
+			if (key.startsWith(prefix)){
+				keys.add(key);
+			} else if (key.startsWith(partPrefix)){
+				keys.add(key);
+				++parts;
+			}
+		}
+		state.removeAll(keys);
+		return keys.size() - parts;
+	}
+}
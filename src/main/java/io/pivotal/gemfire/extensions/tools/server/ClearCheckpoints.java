@@ -0,0 +1,45 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+
+/**
+ * takes a job name, removes all touch checkpoints and slice claims recorded for that job
+ */
+
+public class ClearCheckpoints implements Function {
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		String jobName = (String) ctx.getArguments();
+		
+		int count = Checkpoints.clear(jobName);
+		int claims = SliceClaims.clear(jobName);
+		String result = "removed " + count + " checkpoints and " + claims + " slice claims for job " + jobName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();
+		
+		ctx.getResultSender().lastResult(result);
+	}
+
+	
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.GemTouch.CLEAR_CHECKPOINTS_NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return true;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return true;
+	}
+
+}
@@ -0,0 +1,166 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.BucketDigest;
+import io.pivotal.gemfire.extensions.tools.DigestArgs;
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.CachedDeserializable;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.util.BlobHelper;
+
+/**
+ * Takes a DigestArgs, returns a list of BucketDigest, one for each local primary bucket of
+ * the region or, for a replicated region, one for each slice (see TouchAllArgs.REPLICATE_SLICES).
+ *
+ * Meant to be executed on all servers for a partitioned region and on any one server for a
+ * replicated region.  Buckets are digested in parallel.
+ *
+ * Each entry is hashed from the serialized form of its key and value so two sites holding the
+ * same data produce the same digests whatever order it arrived in.  Values are read the way
+ * Touch reads them with --serialized-values, without deserializing them or faulting them in
+ * from disk.
+ */
+public class Digest implements Function {
+
+	private static final long serialVersionUID = -5519087611893040418L;
+
+	private static int BATCH_SIZE = 1000;
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		DigestArgs args = (DigestArgs) ctx.getArguments();
+		ArrayList<BucketDigest> result = new ArrayList<BucketDigest>();
+
+		Region<Object,Object> region = CacheFactory.getAnyInstance().getRegion(args.getRegionName());
+		if (region == null){
+			ctx.getResultSender().lastResult(result);
+			return;  // RETURN - not hosted on this member
+		}
+
+		List<Integer> units = new ArrayList<Integer>();
+		PartitionedRegion pr = null;
+		if (region instanceof PartitionedRegion){
+			pr = (PartitionedRegion) region;
+			if (pr.getDataStore() != null) units.addAll(pr.getDataStore().getAllLocalPrimaryBucketIds());
+		} else {
+			for(int i=0; i < TouchAllArgs.REPLICATE_SLICES; ++i) units.add(i);
+		}
+
+		int workers = args.getParallelism() > 0 ? args.getParallelism() : Runtime.getRuntime().availableProcessors();
+		workers = Math.max(1, Math.min(workers, units.size()));
+		ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory("Digest", region.getFullPath()));
+		try {
+			List<Future<BucketDigest>> futures = new ArrayList<Future<BucketDigest>>(units.size());
+			for(final Integer unit : units){
+				final Region<Object,Object> r = region;
+				final PartitionedRegion p = pr;
+				futures.add(pool.submit(new Callable<BucketDigest>(){
+					@Override
+					public BucketDigest call() throws Exception {
+						return digest(r, p, unit, args.getKeyRangeCount());
+					}
+				}));
+			}
+
+			for(Future<BucketDigest> future : futures){
+				BucketDigest digest = future.get();
+				if (digest != null) result.add(digest);
+			}
+		} catch(ExecutionException x){
+			throw new FunctionException("digest failed on " + region.getFullPath(), x.getCause());
+		} catch(InterruptedException x){
+			Thread.currentThread().interrupt();
+			throw new FunctionException("interrupted while digesting " + region.getFullPath(), x);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		ctx.getResultSender().lastResult(result);
+	}
+
+	/**
+	 * @return null if the bucket has moved away
+	 */
+	private BucketDigest digest(Region<Object,Object> region, PartitionedRegion pr, int unit, int keyRangeCount) throws IOException {
+		KeyCursor cursor;
+		LocalRegion source;
+		if (pr != null){
+			BucketRegion bucket = pr.getDataStore().getLocalBucketById(unit);
+			if (bucket == null) return null;  // RETURN
+
+			cursor = new KeyCursor(bucket);
+			source = bucket;
+		} else {
+			cursor = new KeyCursor(region, unit, TouchAllArgs.REPLICATE_SLICES);
+			source = (LocalRegion) region;
+		}
+
+		long []rangeHashes = new long[keyRangeCount];
+		long entryCount = 0;
+		Object []batch = new Object[BATCH_SIZE];
+		for(int count = cursor.next(batch); count > 0; count = cursor.next(batch)){
+			for(int i=0; i < count; ++i){
+				Object val = Touch.storedValue(source, batch[i]);
+				if (val == null) continue;
+
+				// addition so the order in which entries are visited does not matter
+				long h = BucketDigest.mix(BucketDigest.hash(BlobHelper.serializeToBlob(batch[i])) * 31 + BucketDigest.hash(serializedValue(val)));
+				rangeHashes[KeyCursor.rangeOf(batch[i], keyRangeCount)] += h;
+				++entryCount;
+			}
+		}
+
+		return new BucketDigest(unit, entryCount, rangeHashes);
+	}
+
+	static byte []serializedValue(Object val) throws IOException {
+		if (val instanceof CachedDeserializable){
+			CachedDeserializable cd = (CachedDeserializable) val;
+			if (cd.isSerialized()) return cd.getSerializedValue();  // RETURN
+
+			val = cd.getValue();
+		}
+
+		if (val instanceof byte[]) return (byte []) val;  // RETURN
+
+		// stored deserialized, as replicated regions do with values put locally
+		return BlobHelper.serializeToBlob(val);
+	}
+
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.GemTouch.DIGEST_NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return false;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return false;
+	}
+
+}
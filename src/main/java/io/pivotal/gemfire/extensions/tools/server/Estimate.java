@@ -0,0 +1,139 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.TouchEstimate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.cache.execute.RegionFunctionContext;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.util.BlobHelper;
+
+/**
+ * A dry run of Touch.  Takes the same TouchAllArgs and is executed the same way, on a region,
+ * but writes nothing.  Returns a TouchEstimate.
+ *
+ * Rather than visiting every entry, the first TouchAllArgs.getSampleSize() keys of each bucket
+ * (or slice) that a touch would visit are read, as Touch would read them with
+ * --serialized-values.  The size of the bucket, the fraction of the keys looked at that were
+ * selected (all of them unless --modified-since or --compare-with-locator are given) and the
+ * serialized size of the sample give the estimate.
+ */
+public class Estimate implements Function {
+
+	private static final long serialVersionUID = 3904925585627470188L;
+
+	// no more than this many keys are looked at per key sampled, so that a selective
+	// --modified-since does not turn the sample into a scan of the whole bucket
+	private static int SCAN_LIMIT_FACTOR = 100;
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		RegionFunctionContext rctx = (RegionFunctionContext) ctx;
+		TouchAllArgs args = (TouchAllArgs) rctx.getArguments();
+		Region<Object,Object> region = rctx.getDataSet();
+		long start = System.currentTimeMillis();
+
+		TouchEstimate result = new TouchEstimate(region.getFullPath(), CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName());
+		List<String> senderIds = new ArrayList<String>(region.getAttributes().getGatewaySenderIds());
+		senderIds.addAll(region.getAttributes().getAsyncEventQueueIds());
+		Collections.sort(senderIds);
+		result.setGatewaySenderIds(senderIds);
+
+		if (!Touch.feedsGatewaySenders(region, args.getGatewaySenderIds())){
+			rctx.getResultSender().lastResult(result);
+			return;  // RETURN - would not be touched
+		}
+
+		Set<Integer> units = Touch.localUnits(rctx, args);
+		if (args.isResume()) units.removeAll(Checkpoints.completedUnits(args.getJobName(), region.getFullPath()));
+
+		PartitionedRegion pr = region instanceof PartitionedRegion ? (PartitionedRegion) region : null;
+		Object []sample = new Object[args.getSampleSize()];
+		try {
+			for(Integer unit : units) estimateUnit(result, args, region, pr, unit, sample);
+		} catch(IOException x){
+			throw new FunctionException("could not serialize an entry of " + region.getFullPath(), x);
+		}
+
+		result.setElapsedMs(System.currentTimeMillis() - start);
+		CacheFactory.getAnyInstance().getLogger().info(result.toString());
+		rctx.getResultSender().lastResult(result);
+	}
+
+	private void estimateUnit(TouchEstimate result, TouchAllArgs args, Region<Object,Object> region, PartitionedRegion pr, int unit, Object []sample) throws IOException {
+		KeyCursor cursor;
+		LocalRegion source;
+		double unitSize;
+		if (pr != null){
+			BucketRegion bucket = pr.getDataStore().getLocalBucketById(unit);
+			if (bucket == null) return;  // RETURN - the bucket has moved since the function started
+
+			cursor = new KeyCursor(bucket);
+			source = bucket;
+			unitSize = bucket.size();
+		} else {
+			cursor = new KeyCursor(region, unit, TouchAllArgs.REPLICATE_SLICES);
+			source = (LocalRegion) region;
+			unitSize = (double) region.size() / TouchAllArgs.REPLICATE_SLICES;
+		}
+		cursor.setModifiedSince(args.getModifiedSince());
+		if (args.getKeyRanges() != null) cursor.setKeyRanges(args.getKeyRangeCount(), args.getKeyRanges().get(unit));
+		cursor.setScanLimit((long) sample.length * SCAN_LIMIT_FACTOR);
+
+		int count = cursor.next(sample);
+		long bytes = 0;
+		int sampled = 0;
+		for(int i=0; i < count; ++i){
+			long readStart = System.nanoTime();
+			Object val = Touch.storedValue(source, sample[i]);
+			result.setReadNanos(result.getReadNanos() + System.nanoTime() - readStart);
+			if (val == null) continue;
+
+			bytes += BlobHelper.serializeToBlob(sample[i]).length + Digest.serializedValue(val).length;
+			++sampled;
+		}
+
+		// exact if the cursor looked at every key in the bucket
+		long examined = cursor.getExamined();
+		long entries = examined == 0 ? 0 : Math.round(Math.max(unitSize, examined) * count / examined);
+		result.setUnits(result.getUnits() + 1);
+		result.setExamined(result.getExamined() + examined);
+		result.setSampled(result.getSampled() + sampled);
+		result.setEntries(result.getEntries() + entries);
+		if (sampled > 0) result.setBytes(result.getBytes() + entries * bytes / sampled);
+	}
+
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.GemTouch.ESTIMATE_NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return false;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		// run where Touch would run, on the primaries
+		return true;
+	}
+
+}
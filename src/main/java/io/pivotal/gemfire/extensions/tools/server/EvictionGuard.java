@@ -0,0 +1,128 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.geode.internal.cache.DiskId;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.cache.entries.DiskEntry;
+import org.apache.geode.internal.cache.eviction.EvictableEntry;
+
+/**
+ * Keeps a touch of an overflow region from evicting the region's working set.
+ *
+ * A touch reads and re-puts every entry, and both mark the entry as recently used, so the LRU
+ * clock sees the touched entries as the hottest in the region and evicts what the applications
+ * are actually using to make room for them.  Values that have overflowed have to come back
+ * into memory to be re-put, there is no way to re-put a value and leave it on disk, but they
+ * need not stay there at the expense of anything else.
+ *
+ * capture() records, before a batch is touched, which of its entries had been used recently
+ * and holds back eviction for the calling thread.  restore() is called once the batch has been
+ * touched.  It clears the mark the touch gave to the other entries and then lets eviction
+ * catch up, so the clock passes over the entries the applications keep using and evicts the
+ * touched entries instead.  Touching has to happen in between, on the same thread and without
+ * a transaction, as a commit runs the eviction itself.  An application read that falls
+ * between the two calls loses its mark, the entry is simply treated as it was before the read.
+ *
+ * sort() orders a set of keys by where their values are on disk so they are read in oplog
+ * order rather than at random.  With the oplogs in the file system cache this gains nothing, see
+ * OverflowTouchBenchmark, where the touch reads fewer values from disk but not faster.
+ */
+public class EvictionGuard {
+
+	private LocalRegion source;
+	private Object []keys;
+	private boolean []recentlyUsed;
+	private int count;
+	private boolean evictionDisabled;
+
+	private EvictionGuard(LocalRegion source, Object []keys, int count){
+		this.source = source;
+		this.keys = keys;
+		this.count = count;
+		this.recentlyUsed = new boolean[count];
+	}
+
+	/**
+	 * @return true if values of source can overflow to disk, for all other regions a touch does
+	 * not change what is in memory
+	 */
+	public static boolean isOverflow(LocalRegion source){
+		return source.getDiskRegion() != null && source.getDiskRegion().isOverflowEnabled();
+	}
+
+	public static EvictionGuard capture(LocalRegion source, Object []keys, int count){
+		EvictionGuard result = new EvictionGuard(source, keys, count);
+		for(int i=0; i < count; ++i){
+			RegionEntry entry = source.getRegionEntry(keys[i]);
+
+			// an entry that has overflowed is not in the LRU list, it cannot have been used recently
+			if (entry instanceof EvictableEntry && !entry.isValueNull()) result.recentlyUsed[i] = ((EvictableEntry) entry).isRecentlyUsed();
+		}
+
+		// false if it was already disabled, in which case it is not ours to enable again
+		result.evictionDisabled = source.getRegionMap().disableLruUpdateCallback();
+		return result;
+	}
+
+	/**
+	 * Must be called, from the thread that called capture, with the same keys array unchanged.
+	 */
+	public void restore(){
+		try {
+			for(int i=0; i < count; ++i){
+				if (recentlyUsed[i]) continue;
+
+				RegionEntry entry = source.getRegionEntry(keys[i]);
+				if (entry instanceof EvictableEntry) ((EvictableEntry) entry).unsetRecentlyUsed();
+			}
+		} finally {
+			if (evictionDisabled){
+				source.getRegionMap().enableLruUpdateCallback();
+				source.getRegionMap().lruUpdateCallback();
+			}
+		}
+	}
+
+	/**
+	 * Sorts the first count keys by the position of their values on disk: values that are in
+	 * memory first, then by oplog and by offset within the oplog.
+	 */
+	public static void sort(LocalRegion source, Object []keys, int count){
+		DiskPosition []positions = new DiskPosition[count];
+		for(int i=0; i < count; ++i) positions[i] = new DiskPosition(keys[i], source.getRegionEntry(keys[i]));
+
+		Arrays.sort(positions, DiskPosition.ORDER);
+		for(int i=0; i < count; ++i) keys[i] = positions[i].key;
+	}
+
+	private static class DiskPosition {
+		private static Comparator<DiskPosition> ORDER = new Comparator<DiskPosition>(){
+			@Override
+			public int compare(DiskPosition a, DiskPosition b) {
+				int result = Long.compare(a.oplogId, b.oplogId);
+				return result != 0 ? result : Long.compare(a.offset, b.offset);
+			}
+		};
+
+		private Object key;
+		private long oplogId;
+		private long offset;
+
+		// the position is read once, it may change while the keys are being sorted
+		public DiskPosition(Object key, RegionEntry entry){
+			this.key = key;
+			this.oplogId = -1;
+			this.offset = -1;
+			if (entry instanceof DiskEntry && entry.isValueNull()){
+				DiskId id = ((DiskEntry) entry).getDiskId();
+				if (id != null){
+					this.oplogId = id.getOplogId();
+					this.offset = id.getOffsetInOplog();
+				}
+			}
+		}
+	}
+}
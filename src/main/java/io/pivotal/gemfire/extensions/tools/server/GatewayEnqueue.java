@@ -0,0 +1,128 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.geode.cache.Operation;
+import org.apache.geode.cache.asyncqueue.AsyncEventQueue;
+import org.apache.geode.cache.asyncqueue.internal.AsyncEventQueueImpl;
+import org.apache.geode.cache.wan.GatewaySender;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.EntryEventImpl;
+import org.apache.geode.internal.cache.EnumListenerEvent;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.cache.versions.VersionStamp;
+import org.apache.geode.internal.cache.wan.AbstractGatewaySender;
+
+/**
+ * Puts an update event for the current state of an entry straight into the gateway senders and
+ * async event queues of its region, which is what a put would do, without the put.  Nothing is
+ * written to the region: no new version, no oplog record, no cache listeners, no message to the
+ * other copies of the entry.
+ *
+ * The event carries the entry's existing version, not a new one, so a site that has since updated
+ * the entry keeps its own, later version.  The value is read under the entry's lock together with
+ * its version and is sent in the form in which it is stored.
+ *
+ * Events have to be enqueued where the queue is primary.  For a partitioned region that is the
+ * member hosting the primary copy of the bucket, which is where Touch runs, but only for parallel
+ * senders.  A serial sender is primary on one member, so only that member can touch a replicated
+ * region and partitioned regions can not be touched this way at all.  A serial queue is copied
+ * to its secondaries as usual but a parallel queue is not: the secondary copies of the bucket
+ * would have put the event into their own queues as they applied the update, and there is no
+ * update.  A parallel queue event that has not been sent when its member fails is lost and the
+ * region has to be touched again.
+ */
+public class GatewayEnqueue {
+	private LocalRegion region;
+	private List<AbstractGatewaySender> senders;
+	private List<Integer> remoteDSIds;
+
+	/**
+	 * @param region the partitioned or replicated region, not a bucket
+	 * @param senderIds the gateway senders and async event queues to enqueue into, all of the
+	 * region's if empty
+	 */
+	public GatewayEnqueue(LocalRegion region, Collection<String> senderIds){
+		this.region = region;
+		this.senders = senders(region, senderIds);
+
+		// the sites every event of the region goes to, whichever senders we enqueue into, so
+		// the receiving sites do not forward it to each other
+		remoteDSIds = new ArrayList<Integer>();
+		for(GatewaySender sender : region.getCache().getAllGatewaySenders()){
+			if (region.getAllGatewaySenderIds().contains(sender.getId())) remoteDSIds.add(sender.getRemoteDSId());
+		}
+	}
+
+	/**
+	 * @return why this member can not enqueue the events of the region, or null if it can
+	 */
+	public String unreachable(){
+		if (senders.isEmpty()) return "has no gateway senders or async event queues to enqueue into";  // RETURN
+
+		for(AbstractGatewaySender sender : senders){
+			if (sender.isParallel()) continue;
+
+			if (region.getDataPolicy().withPartitioning()) return "feeds serial gateway sender " + sender.getId() + ", only parallel senders can be enqueued into directly";  // RETURN
+			if (!sender.isPrimary()) return "is not the primary for serial gateway sender " + sender.getId();  // RETURN
+		}
+		return null;
+	}
+
+	/**
+	 * @param source where the entry is stored, the bucket for a partitioned region
+	 * @return the size of the value enqueued (see Touch.sizeOf), -1 if there is no such entry
+	 */
+	public long enqueue(LocalRegion source, Object key){
+		RegionEntry entry = source.getRegionEntry(key);
+		if (entry == null) return -1;  // RETURN
+
+		Object val;
+		EntryEventImpl event;
+		synchronized(entry){
+			if (entry.isDestroyedOrRemoved()) return -1;  // RETURN
+
+			val = Touch.storedValue(source, key);
+			if (val == null) return -1;  // RETURN
+
+			InternalCache cache = region.getCache();
+			event = EntryEventImpl.create(region, Operation.UPDATE, key, val, null, false, cache.getMyId());
+			VersionStamp<?> stamp = entry.getVersionStamp();
+			if (stamp != null) event.setVersionTag(stamp.asVersionTag());
+		}
+
+		try {
+			event.setNewEventId(region.getCache().getDistributedSystem());
+
+			// parallel queues are keyed by a sequence number the primary bucket hands out
+			if (source instanceof BucketRegion) ((BucketRegion) source).handleWANEvent(event);
+			for(AbstractGatewaySender sender : senders){
+				sender.distribute(EnumListenerEvent.AFTER_UPDATE, event, remoteDSIds);
+			}
+		} finally {
+			event.release();
+		}
+		return Touch.sizeOf(val);
+	}
+
+	// the local senders of the region that are in senderIds, which may name async event queues
+	private static List<AbstractGatewaySender> senders(LocalRegion region, Collection<String> senderIds){
+		List<AbstractGatewaySender> result = new ArrayList<AbstractGatewaySender>();
+		for(GatewaySender sender : region.getCache().getAllGatewaySenders()){
+			if (!region.getAllGatewaySenderIds().contains(sender.getId())) continue;
+
+			if (senderIds == null || senderIds.isEmpty() || senderIds.contains(sender.getId())){
+				result.add((AbstractGatewaySender) sender);
+			} else {
+				for(AsyncEventQueue queue : region.getCache().getAsyncEventQueues()){
+					if (senderIds.contains(queue.getId()) && ((AsyncEventQueueImpl) queue).getSender() == sender) result.add((AbstractGatewaySender) sender);
+				}
+			}
+		}
+		return result;
+	}
+}
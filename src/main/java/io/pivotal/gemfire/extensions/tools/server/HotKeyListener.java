@@ -0,0 +1,66 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.HotKeyReport;
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+
+/**
+ * Counts the creates, updates, destroys and invalidates of each key of a region in a HotKeySketch,
+ * on the thread delivering the event, so that the keys written most often can be reported by the
+ * HotKeys function.  Events are first checked against the filters given, if any, see TraceFilter.
+ */
+public class HotKeyListener extends CacheListenerAdapter<Object, Object> {
+	private String regionName;
+	private HotKeySketch sketch;
+	private TraceFilter filter;
+
+	public HotKeyListener(TraceArgs args){
+		this.regionName = args.getRegionName();
+		this.sketch = new HotKeySketch(args.getHotKeyCapacity());
+		this.filter = TraceFilter.create(args);
+	}
+
+	@Override
+	public void afterCreate(EntryEvent<Object, Object> entryEvent) {
+		count(entryEvent);
+	}
+
+	@Override
+	public void afterUpdate(EntryEvent<Object, Object> entryEvent) {
+		count(entryEvent);
+	}
+
+	@Override
+	public void afterDestroy(EntryEvent<Object, Object> entryEvent) {
+		count(entryEvent);
+	}
+
+	@Override
+	public void afterInvalidate(EntryEvent<Object, Object> entryEvent) {
+		count(entryEvent);
+	}
+
+	private void count(EntryEvent<Object, Object> entryEvent){
+		if (filter != null && !filter.accepts(entryEvent)) return;  // RETURN
+
+		sketch.add(entryEvent.getKey());
+	}
+
+	public HotKeyReport report(String memberName){
+		return sketch.report(memberName, regionName);
+	}
+
+	/**
+	 * @return the number of events counted
+	 */
+	public long getCounted(){
+		return sketch.getEvents();
+	}
+
+	public String describe(){
+		return "counting hot keys, keeping " + sketch.getCapacity() + " keys and " + HotKeySketch.counterBytes() / 1024 + "KB of counters"
+				+ (filter == null ? "" : ", " + filter.describe());
+	}
+}
@@ -0,0 +1,159 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.HotKeyReport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each key is written in a fixed amount of memory, however many keys there are,
+ * and keeps the keys written most often.
+ *
+ * Counts are kept in a count-min sketch: DEPTH rows of WIDTH counters, each key adding 1 to one
+ * counter in each row.  A key's count is the smallest of its counters, which is never less than
+ * the true count and, with 98% probability (1 - e^-DEPTH), is more by at most e/WIDTH of all the
+ * events counted.
+ *
+ * The keys themselves are kept in a set of candidates of fixed capacity, as in space saving.  When
+ * the set is full, a key with a higher count than the lowest in the set replaces the lowest eighth
+ * of it.  Adding an event is lock free: it increments DEPTH counters and, only for a key whose
+ * count is higher than any key removed so far, looks the key up in the set.  The lock is taken
+ * only when a key joins the set.
+ */
+public class HotKeySketch {
+	private static int DEPTH = 4;
+	private static int WIDTH = 1 << 13;
+
+	private final AtomicLongArray counters = new AtomicLongArray(DEPTH * WIDTH);
+	private final LongAdder events = new LongAdder();
+	private final Map<Object, Boolean> candidates;
+	private final int capacity;
+
+	// the highest count of a candidate removed to make room, a key with no higher count does not join
+	private volatile long threshold = 0l;
+
+	/**
+	 * @param capacity the number of keys kept
+	 */
+	public HotKeySketch(int capacity){
+		this.capacity = Math.max(capacity, 1);
+		this.candidates = new ConcurrentHashMap<Object, Boolean>(this.capacity * 2);
+	}
+
+	public void add(Object key){
+		events.increment();
+
+		int h = key.hashCode();
+		long count = Long.MAX_VALUE;
+		for(int row=0; row < DEPTH; ++row){
+			count = Math.min(count, counters.incrementAndGet(row * WIDTH + column(h, row)));
+		}
+
+		if (count <= threshold || candidates.containsKey(key)) return;  // RETURN
+
+		synchronized(this){
+			if (count <= threshold || candidates.containsKey(key)) return;  // RETURN
+
+			if (candidates.size() == capacity && !evict(count)) return;  // RETURN
+
+			candidates.put(key, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * @return the count of a key, at least its true count
+	 */
+	public long estimate(Object key){
+		int h = key.hashCode();
+		long count = Long.MAX_VALUE;
+		for(int row=0; row < DEPTH; ++row){
+			count = Math.min(count, counters.get(row * WIDTH + column(h, row)));
+		}
+		return count;
+	}
+
+	/**
+	 * @return the keys kept, highest count first, as text
+	 */
+	public HotKeyReport report(String memberName, String regionName){
+		List<HotKeyReport.HotKey> keys = new ArrayList<HotKeyReport.HotKey>(capacity);
+		for(Object key : candidates.keySet()) keys.add(new HotKeyReport.HotKey(TraceCacheListener.format(key), estimate(key)));
+		Collections.sort(keys, new Comparator<HotKeyReport.HotKey>(){
+			@Override
+			public int compare(HotKeyReport.HotKey a, HotKeyReport.HotKey b) {
+				return Long.compare(b.getCount(), a.getCount());
+			}
+		});
+
+		long total = events.sum();
+		long smallest = candidates.size() < capacity ? threshold : smallest();
+		return new HotKeyReport(memberName, regionName, total, (long) Math.ceil(Math.E * total / WIDTH), smallest, keys);
+	}
+
+	public int getCapacity(){
+		return capacity;
+	}
+
+	public long getEvents(){
+		return events.sum();
+	}
+
+	/**
+	 * @return the number of bytes used by the counters, the candidates take a few dozen more each
+	 */
+	public static int counterBytes(){
+		return DEPTH * WIDTH * 8;
+	}
+
+	// the smallest count among the candidates
+	private long smallest(){
+		long min = Long.MAX_VALUE;
+		for(Object key : candidates.keySet()) min = Math.min(min, estimate(key));
+		return min;
+	}
+
+	// makes room for a key with the given count by removing the candidates with the lowest counts,
+	// an eighth of them at a time so that the counts are not read for every key that joins
+	private boolean evict(long count){
+		List<Object> keys = new ArrayList<Object>(candidates.keySet());
+		final long []counts = new long[keys.size()];
+		Integer []order = new Integer[keys.size()];
+		for(int i=0; i < counts.length; ++i){
+			counts[i] = estimate(keys.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(counts[a], counts[b]);
+			}
+		});
+
+		if (count <= counts[order[0]]){
+			threshold = counts[order[0]];
+			return false;  // RETURN
+		}
+
+		// never remove a key with a count as high as the new one
+		int evicted = 0;
+		while(evicted < Math.max(counts.length / 8, 1) && counts[order[evicted]] < count){
+			candidates.remove(keys.get(order[evicted]));
+			threshold = counts[order[evicted]];
+			++evicted;
+		}
+		return true;
+	}
+
+	// each row hashes all the bits of the hash code on its own, so keys that share a column in one
+	// row are no more likely to share one in the next
+	private static int column(int h, int row){
+		return TraceFilter.mix(h + row * 0x9e3779b9) & (WIDTH - 1);
+	}
+}
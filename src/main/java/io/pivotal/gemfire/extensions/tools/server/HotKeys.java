@@ -0,0 +1,57 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.CacheListener;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+
+/**
+ * takes a region name and returns the HotKeyReport of the HotKeyListener on it, or a message if
+ * there is none
+ */
+
+public class HotKeys implements Function {
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		String regionName = (String) ctx.getArguments();
+		
+		Region region = CacheFactory.getAnyInstance().getRegion(regionName);
+		if (region == null){
+			throw new RuntimeException("region not found: " + regionName);
+		}
+		
+		String memberName = CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();
+		for (CacheListener listener : region.getAttributes().getCacheListeners()){
+			if (listener instanceof HotKeyListener){
+				ctx.getResultSender().lastResult(((HotKeyListener) listener).report(memberName));
+				return;  // RETURN
+			}
+		}
+		
+		ctx.getResultSender().lastResult("hot key listener not found on " + regionName + " in " + memberName);
+	}
+
+	
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.HotKeys.NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return true;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return false;
+	}
+
+}
@@ -0,0 +1,123 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+
+/**
+ * Lets a running touch job be paused, resumed, cancelled or given a new rate from outside,
+ * see gemtouchctl.
+ *
+ * The commands are entries in the touch state region, keyed by job name, so they reach every
+ * member and outlive the client that gave them.  gemtouch clears them when it starts a job.
+ *
+ * Touch calls await() before every batch, which is a local read of a replicated region unless
+ * the job has been paused or cancelled.  A paused job keeps its place - open buckets, slice
+ * claims and rate budget - and carries on where it was when it is resumed.  A cancelled job
+ * stops before its next batch.  Buckets it had not finished are not checkpointed so a later
+ * gemtouch --resume picks them up again.
+ *
+ * One instance is shared by all workers touching a region on a member.  The first worker to
+ * find the job paused does the waiting while holding the lock so the others queue up behind it
+ * and the pause is only counted once.
+ */
+public class JobControl {
+	public enum State { RUNNING, PAUSED, CANCELLED }
+
+	private static String STATE_TYPE = "control";
+	private static String RATE_TYPE = "ratectl";
+	private static long PAUSE_POLL_MS = 1000l;
+
+	private String jobName;
+	private Runnable whilePaused;
+	
+	// not guarded by the lock, which is held for as long as the job is paused
+	private volatile long pauseStart;
+	private volatile long pausedMs;
+
+	/**
+	 * @param whilePaused run every second or so while the job is paused, may be null
+	 */
+	public JobControl(String jobName, Runnable whilePaused){
+		this.jobName = jobName;
+		this.whilePaused = whilePaused;
+		this.pauseStart = 0l;
+		this.pausedMs = 0l;
+	}
+
+	/**
+	 * blocks for as long as the job is paused
+	 *
+	 * @return the number of ms spent waiting
+	 * @throws TouchCancelledException if the job has been cancelled
+	 */
+	public synchronized long await(){
+		State state = getState(jobName);
+		if (state == State.RUNNING) return 0;  // RETURN
+		if (state == State.CANCELLED) throw new TouchCancelledException(jobName);
+
+		CacheFactory.getAnyInstance().getLogger().info("touch job " + jobName + " paused");
+		long start = System.currentTimeMillis();
+		pauseStart = start;
+		try {
+			while(state == State.PAUSED){
+				if (whilePaused != null) whilePaused.run();
+				try {
+					Thread.sleep(PAUSE_POLL_MS);
+				} catch(InterruptedException x){
+					Thread.currentThread().interrupt();
+					throw new TouchCancelledException(jobName);
+				}
+				state = getState(jobName);
+			}
+		} finally {
+			pausedMs += System.currentTimeMillis() - start;
+			pauseStart = 0l;
+		}
+
+		if (state == State.CANCELLED) throw new TouchCancelledException(jobName);
+		CacheFactory.getAnyInstance().getLogger().info("touch job " + jobName + " resumed after " + (System.currentTimeMillis() - start) + "ms");
+		return System.currentTimeMillis() - start;
+	}
+
+	public boolean isPaused(){
+		return pauseStart > 0;
+	}
+
+	/**
+	 * @return the time spent paused so far, including the current pause
+	 */
+	public long getPausedMs(){
+		long start = pauseStart;
+		return pausedMs + (start > 0 ? System.currentTimeMillis() - start : 0l);
+	}
+
+	public static State getState(String jobName){
+		Object state = TouchState.getRegion().get(TouchState.key(STATE_TYPE, jobName));
+		return state == null ? State.RUNNING : State.valueOf((String) state);
+	}
+
+	public static void setState(String jobName, State state){
+		TouchState.getRegion().put(TouchState.key(STATE_TYPE, jobName), state.name());
+	}
+
+	/**
+	 * @return the cluster wide rate set with gemtouchctl, which replaces the one the job was started
+	 * with, or null if none has been set
+	 */
+	public static Long getRate(String jobName){
+		return (Long) TouchState.getRegion().get(TouchState.key(RATE_TYPE, jobName));
+	}
+
+	public static void setRate(String jobName, long ratePerSecond){
+		TouchState.getRegion().put(TouchState.key(RATE_TYPE, jobName), Long.valueOf(ratePerSecond));
+	}
+
+	/**
+	 * forgets the commands given to a job, as if it had never been paused, cancelled or re-rated
+	 */
+	public static void clear(String jobName){
+		Region<String,Object> state = TouchState.getRegion();
+		state.remove(TouchState.key(STATE_TYPE, jobName));
+		state.remove(TouchState.key(RATE_TYPE, jobName));
+	}
+}
@@ -0,0 +1,157 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.cache.versions.VersionStamp;
+
+/**
+ * Hands out the keys of a region (or of a single bucket) a batch at a time.
+ *
+ * The key set is walked lazily so the only memory held on behalf of the caller is the
+ * batch array itself, no matter how many entries the region contains.
+ */
+public class KeyCursor {
+
+	private Region<?,?> region;
+	private Iterator<?> keys;
+	private int slice;
+	private int sliceCount;
+	private long modifiedSince;
+	private long skipped;
+	private long examined;
+	private long scanLimit;
+	private int keyRangeCount;
+	private Set<Integer> keyRanges;
+
+	public KeyCursor(Region<?,?> region){
+		this(region, 0, 1);
+	}
+
+	/**
+	 * a cursor over only those keys of region that fall into the given slice
+	 */
+	public KeyCursor(Region<?,?> region, int slice, int sliceCount){
+		this.region = region;
+		this.keys = region.keySet().iterator();
+		this.slice = slice;
+		this.sliceCount = sliceCount;
+		this.modifiedSince = 0l;
+		this.skipped = 0l;
+		this.examined = 0l;
+		this.scanLimit = 0l;
+		this.keyRangeCount = 0;
+		this.keyRanges = null;
+	}
+
+	/**
+	 * Restricts the cursor to entries last modified at or after the given time (ms since
+	 * the epoch), 0 means no restriction.
+	 *
+	 * The time comes from the entry's version stamp, or from its last modified time if the region
+	 * does not have concurrency checks enabled, so values are never deserialized or read from
+	 * disk to decide whether an entry is skipped.
+	 */
+	public void setModifiedSince(long modifiedSince){
+		this.modifiedSince = modifiedSince;
+	}
+
+	/**
+	 * Restricts the cursor to keys in the given key ranges, the key space being divided into
+	 * keyRangeCount ranges by rangeOf.  A null set of ranges means no restriction.
+	 */
+	public void setKeyRanges(int keyRangeCount, Set<Integer> keyRanges){
+		this.keyRangeCount = keyRangeCount;
+		this.keyRanges = keyRanges;
+	}
+
+	/**
+	 * @return the number of keys in this cursor's slice that were passed over because they were
+	 * not modified recently enough
+	 */
+	public long getSkipped(){
+		return skipped;
+	}
+
+	/**
+	 * @return the number of keys in this cursor's slice looked at so far, whether or not they were
+	 * returned
+	 */
+	public long getExamined(){
+		return examined;
+	}
+
+	/**
+	 * Makes the cursor stop once it has looked at scanLimit keys in its slice, so that sampling
+	 * with a selective restriction does not walk the whole region.  0 means no limit.
+	 */
+	public void setScanLimit(long scanLimit){
+		this.scanLimit = scanLimit;
+	}
+
+	/**
+	 * Divides the key space into sliceCount slices using the key's hash code.  Keys are
+	 * required to have a stable hashCode (partitioned regions rely on it too) so every member
+	 * puts a given key in the same slice.
+	 */
+	public static int sliceOf(Object key, int sliceCount){
+		return (key.hashCode() & Integer.MAX_VALUE) % sliceCount;
+	}
+
+	/**
+	 * Divides the keys of a bucket or slice into rangeCount ranges.  The hash code is scrambled 
+	 * first so that the ranges are independent of both bucket and slice assignment, which are 
+	 * also based on the hash code.
+	 */
+	public static int rangeOf(Object key, int rangeCount){
+		int h = key.hashCode() * 0x9E3779B9;
+		return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % rangeCount;
+	}
+
+	/**
+	 * fills batch with up to batch.length keys
+	 *
+	 * @return the number of keys placed in batch, 0 when the cursor is exhausted
+	 */
+	public int next(Object []batch){
+		return next(batch, batch.length);
+	}
+
+	/**
+	 * fills batch with up to limit keys
+	 *
+	 * @return the number of keys placed in batch, 0 when the cursor is exhausted
+	 */
+	public int next(Object []batch, int limit){
+		int count = 0;
+		while(count < limit && keys.hasNext() && (scanLimit == 0 || examined < scanLimit)){
+			Object key = keys.next();
+			if (sliceCount > 1 && sliceOf(key, sliceCount) != slice) continue;
+			
+			++examined;
+			if (keyRanges != null && !keyRanges.contains(rangeOf(key, keyRangeCount))) continue;
+			
+			if (modifiedSince > 0 && lastModified(key) < modifiedSince){
+				++skipped;
+			} else {
+				batch[count++] = key;
+			}
+		}
+
+		// don't hang on to keys from the previous batch
+		Arrays.fill(batch, count, batch.length, null);
+		return count;
+	}
+
+	private long lastModified(Object key){
+		RegionEntry entry = ((LocalRegion) region).getRegionEntry(key);
+		if (entry == null || entry.isDestroyedOrRemoved()) return 0l;  // RETURN
+
+		VersionStamp<?> stamp = entry.getVersionStamp();
+		return stamp != null ? stamp.getVersionTimeStamp() : entry.getLastModified();
+	}
+}
@@ -0,0 +1,171 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+
+/**
+ * The rate given to gemtouch is a budget for the whole cluster, not for each member or region.
+ *
+ * Every member doing touches for a job registers itself in the touch state region and
+ * paces all of its touches for that job, whatever the region, with one token bucket set
+ * to an equal share of the budget.  Registrations are refreshed every few seconds and the
+ * share is recomputed from the registrations that are still fresh, so as members finish
+ * (or die) the remaining members speed up.
+ *
+ * The budget itself is re-read at the same time, a rate set with gemtouchctl (see JobControl)
+ * replaces the one the job was started with.  That includes jobs started without a rate, so
+ * they have a budget too, it just does not limit them until they are given a rate.
+ *
+ * The share can be cut for a while, see slowDown, when the member is under pressure.  For a job
+ * without a rate the cut is taken from the rate the member was touching at before it was slowed.
+ */
+public class RateBudget {
+	private static String STATE_TYPE = "rate";
+	private static long REBALANCE_INTERVAL_MS = 2000l;
+	private static long REGISTRATION_TIMEOUT_MS = 30000l;
+
+	private static final Map<String, RateBudget> budgets = new HashMap<String, RateBudget>();
+
+	private String jobName;
+	private long globalRate;
+	private String memberKey;
+	private TokenBucket bucket;
+	private int users;
+	private volatile long lastRebalance;
+	private double share;
+	private AtomicLong acquired;
+	private double unslowedRate;
+	private Map<Object, Double> slowdowns;
+
+	/**
+	 * Returns the budget for the named job on this member, creating and registering it if
+	 * necessary.  Each call must be matched by a call to leave.
+	 *
+	 * @param expectedMembers used to size the initial share, before other members have had
+	 *        a chance to register
+	 */
+	public static RateBudget join(String jobName, long globalRate, int expectedMembers){
+		Long override = JobControl.getRate(jobName);
+		if (override != null) globalRate = override.longValue();
+
+		RateBudget result;
+		synchronized(budgets){
+			result = budgets.get(jobName);
+			if (result == null){
+				result = new RateBudget(jobName, globalRate, expectedMembers);
+				budgets.put(jobName, result);
+				result.register();
+			}
+			result.users += 1;
+		}
+		return result;
+	}
+
+	private RateBudget(String jobName, long globalRate, int expectedMembers){
+		this.jobName = jobName;
+		this.globalRate = globalRate;
+		this.share = (double) globalRate / Math.max(1, expectedMembers);
+		this.bucket = new TokenBucket(share);
+		this.users = 0;
+		this.acquired = new AtomicLong(0l);
+		this.unslowedRate = 0d;
+		this.slowdowns = new HashMap<Object, Double>();
+		this.lastRebalance = System.currentTimeMillis();
+		this.memberKey = TouchState.key(STATE_TYPE, jobName, CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getId());
+	}
+
+	public void leave(){
+		synchronized(budgets){
+			users -= 1;
+			if (users == 0){
+				budgets.remove(jobName);
+				TouchState.getRegion().remove(memberKey);
+			}
+		}
+	}
+
+	/**
+	 * blocks until this member's share of the budget allows permits more touches
+	 *
+	 * @return the number of ms spent waiting
+	 */
+	public long acquire(int permits){
+		if (System.currentTimeMillis() - lastRebalance > REBALANCE_INTERVAL_MS) rebalance();
+		acquired.addAndGet(permits);
+		return bucket.acquire(permits);
+	}
+
+	/**
+	 * Cuts this member's share to a fraction of what it would otherwise be, until called again with 
+	 * a fraction of 1.  Several callers can slow the same budget down, the smallest fraction wins.
+	 * 
+	 * @param source identifies the caller, whose previous fraction this replaces
+	 */
+	public synchronized void slowDown(Object source, double fraction){
+		if (fraction >= 1d){
+			if (slowdowns.remove(source) == null) return;  // RETURN - nothing changes
+		} else {
+			if (slowdowns.isEmpty()) measureUnslowedRate(System.currentTimeMillis());
+			slowdowns.put(source, fraction);
+		}
+		applyRate();
+	}
+
+	public double getShare(){
+		return bucket.getRate();
+	}
+
+	private void register(){
+		TouchState.getRegion().put(memberKey, Long.valueOf(System.currentTimeMillis()));
+	}
+
+	private synchronized void rebalance(){
+		long now = System.currentTimeMillis();
+		if (now - lastRebalance <= REBALANCE_INTERVAL_MS) return;  // RETURN - another thread got here first
+		
+		// a job without a rate that was slowed down before there was anything to measure is not 
+		// limited yet, so what it does now is still unslowed
+		if (slowdowns.isEmpty() || bucket.getRate() <= 0d) measureUnslowedRate(now);
+		acquired.set(0l);
+		lastRebalance = now;
+
+		register();
+
+		Long override = JobControl.getRate(jobName);
+		if (override != null && override.longValue() != globalRate){
+			CacheFactory.getAnyInstance().getLogger().info("touch job " + jobName + " rate changed from " + globalRate + " to " + override + " per second");
+			globalRate = override.longValue();
+		}
+
+		int activeMembers = 0;
+		String prefix = TouchState.keyPrefix(STATE_TYPE, jobName);
+		Region<String,Object> state = TouchState.getRegion();
+		for(Map.Entry<String,Object> entry : state.entrySet()){
+			if (entry.getKey().startsWith(prefix) && now - (Long) entry.getValue() < REGISTRATION_TIMEOUT_MS) ++activeMembers;
+		}
+
+		share = (double) globalRate / Math.max(1, activeMembers);
+		applyRate();
+	}
+
+	// what we could do before being slowed down, the basis for slowing down a job without a rate
+	private void measureUnslowedRate(long now){
+		if (now - lastRebalance > 0) unslowedRate = acquired.get() * 1000d / (now - lastRebalance);
+	}
+
+	private synchronized void applyRate(){
+		double fraction = 1d;
+		for(Double d : slowdowns.values()) fraction = Math.min(fraction, d.doubleValue());
+
+		double rate = share > 0d ? share : unslowedRate;
+		if (fraction >= 1d || rate <= 0d){
+			bucket.setRate(share);
+		} else {
+			bucket.setRate(Math.max(1d, rate * fraction));
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.FunctionException;
+import org.apache.geode.distributed.DistributedLockService;
+import org.apache.geode.distributed.DistributedMember;
+import org.apache.geode.internal.cache.DistributedRegion;
+
+/**
+ * Shares the slices of a replicated region among all of the members that host it, so that a
+ * large replicated region is not touched by one member alone.
+ *
+ * Touch runs on every replica and each of them repeatedly claims a slice that nobody else has
+ * by putting a claim into the touch state region.  putIfAbsent and replace are only atomic within
+ * a member for a replicated region, so claims are read and written under a distributed lock on
+ * the key of the claim.  A claim is not removed when
+ * the slice completes, it stays until the checkpoints of the job are cleared, so a slice is
+ * normally only claimed once.  Claims name the run and the member that made them.  A claim made
+ * by a member that is no longer a replica of the region (it has left or crashed) or made by an
+ * earlier run (--resume) is taken over by replacing it, which again only one member can do.
+ * Members keep looking for such slices until every slice is completed, so nothing a departed
+ * member was working on is left undone as long as one replica remains.
+ *
+ * While a member touches a slice it refreshes its claim every HEARTBEAT_INTERVAL_MS, also while
+ * it is paused or stalled.  A claim that has not changed for CLAIM_TIMEOUT_MS is taken over even
+ * though its member is still a replica, as the touch there has hung.  Should that touch carry on
+ * after all, it finds that its claim has gone and leaves the slice to the member that took it.
+ *
+ * Entries are sent at least once.  A slice that is taken over is touched again from the start of
+ * the part that was in progress (see Checkpoints), so the entries of that part already touched
+ * are sent again.
+ */
+public class SliceClaims {
+	private static String STATE_TYPE = "claim";
+	private static String LOCK_SERVICE_NAME = "__gemtouchClaims";
+	private static long POLL_INTERVAL_MS = 1000l;
+	private static long HEARTBEAT_INTERVAL_MS = 10l * 1000l;
+	private static long CLAIM_TIMEOUT_MS = 5l * 60l * 1000l;
+	private static String SEPARATOR = "|";
+
+	private String jobName;
+	private String regionName;
+	private String runId;
+	private String memberId;
+	private DistributedRegion region;
+	private Set<Integer> units;
+
+	// the claims this member holds and when each was last refreshed
+	private Map<Integer, String> held = new HashMap<Integer, String>();
+	private Map<Integer, Long> refreshed = new HashMap<Integer, Long>();
+
+	// the claims of other members seen unchanged, and since when, to tell when one has hung
+	private Map<Integer, String> seen = new ConcurrentHashMap<Integer, String>();
+	private Map<Integer, Long> seenSince = new ConcurrentHashMap<Integer, Long>();
+
+	/**
+	 * @param runId identifies this run of the job, claims made under any other run id are stale
+	 * @param units the slices to touch
+	 */
+	public SliceClaims(String jobName, String runId, DistributedRegion region, Set<Integer> units){
+		this.jobName = jobName;
+		this.regionName = region.getFullPath();
+		this.runId = runId;
+		this.memberId = CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getId();
+		this.region = region;
+		this.units = units;
+	}
+
+	/**
+	 * @return the number of members, including this one, that host a replica of the region
+	 */
+	public int getReplicaCount(){
+		return region.getCacheDistributionAdvisor().adviseInitializedReplicates().size() + 1;
+	}
+
+	/**
+	 * @return true if this member has the lowest id of all the replicas, which is used to pick
+	 * one member to report what is reported once for the whole region
+	 */
+	public boolean isFirstReplica(){
+		for(DistributedMember member : region.getCacheDistributionAdvisor().adviseInitializedReplicates()){
+			if (member.getId().compareTo(memberId) < 0) return false;  // RETURN
+		}
+		return true;
+	}
+
+	/**
+	 * Claims a slice for this member.  Blocks while the only slices left are being touched by
+	 * other members, as one of them may yet leave or hang before finishing.
+	 *
+	 * @return the slice claimed or null once every slice has been completed
+	 */
+	public Integer next(){
+		Region<String,Object> state = TouchState.getRegion();
+		while(true){
+			Set<Integer> completed = Checkpoints.completedUnits(jobName, regionName);
+			if (completed.containsAll(units)) return null;  // RETURN
+
+			Set<String> replicas = replicaIds();
+			for(Integer unit : units){
+				if (completed.contains(unit) || isHeld(unit)) continue;
+
+				// only lock a slice that looks free or stale
+				String key = TouchState.key(STATE_TYPE, jobName, regionName, unit);
+				Object current = state.get(key);
+				if (current != null && staleness(unit, (String) current, replicas) == null) continue;
+				
+				String claim = newClaim();
+				String takenFrom = null;
+				lockService().lock(key, -1, -1);
+				try {
+					current = state.get(key);
+					if (current != null){
+						String reason = staleness(unit, (String) current, replicas);
+						if (reason == null) continue;
+						takenFrom = current + ", " + reason;
+					}
+					state.put(key, claim);
+				} finally {
+					lockService().unlock(key);
+				}
+				
+				if (takenFrom == null){
+					hold(unit, claim);
+					return unit;  // RETURN
+				}
+
+				// the member we took over from may have finished the slice just before it left
+				if (!Checkpoints.isCompleted(jobName, regionName, unit)){
+					CacheFactory.getAnyInstance().getLogger().info("took over slice " + unit + " of " + regionName + " from " + takenFrom);
+					hold(unit, claim);
+					return unit;  // RETURN
+				}
+			}
+
+			// the other members may be paused, in which case so are we, but not if we are cancelled
+			if (JobControl.getState(jobName) == JobControl.State.CANCELLED) throw new TouchCancelledException(jobName);
+			try {
+				Thread.sleep(POLL_INTERVAL_MS);
+			} catch(InterruptedException x){
+				Thread.currentThread().interrupt();
+				throw new FunctionException("interrupted while waiting for the slices of " + regionName, x);
+			}
+		}
+	}
+
+	/**
+	 * Refreshes this member's claim on a slice it is touching, at most every
+	 * HEARTBEAT_INTERVAL_MS.
+	 *
+	 * @return false if the claim has been taken over by another member, which will touch the slice
+	 */
+	public synchronized boolean heartbeat(Integer unit){
+		String claim = held.get(unit);
+		if (claim == null) return false;  // RETURN
+		
+		long now = System.currentTimeMillis();
+		if (now - refreshed.get(unit) < HEARTBEAT_INTERVAL_MS) return true;  // RETURN
+		
+		String key = TouchState.key(STATE_TYPE, jobName, regionName, unit);
+		String newClaim = newClaim();
+		boolean kept;
+		lockService().lock(key, -1, -1);
+		try {
+			kept = claim.equals(TouchState.getRegion().get(key));
+			if (kept) TouchState.getRegion().put(key, newClaim);
+		} finally {
+			lockService().unlock(key);
+		}
+		if (!kept){
+			CacheFactory.getAnyInstance().getLogger().info("slice " + unit + " of " + regionName + " has been taken over by another member");
+			done(unit);
+			return false;  // RETURN
+		}
+		held.put(unit, newClaim);
+		refreshed.put(unit, now);
+		return true;
+	}
+
+	/**
+	 * Refreshes all of the claims this member holds, for when it is paused or stalled.
+	 */
+	public synchronized void heartbeat(){
+		for(Integer unit : new ArrayList<Integer>(held.keySet())) heartbeat(unit);
+	}
+
+	/**
+	 * Stops refreshing the claim on a slice that has been completed.  The claim itself stays.
+	 */
+	public synchronized void done(Integer unit){
+		held.remove(unit);
+		refreshed.remove(unit);
+	}
+
+	/**
+	 * Gives up a slice that could not be completed so another member can claim it.
+	 */
+	public synchronized void release(Integer unit){
+		String claim = held.get(unit);
+		done(unit);
+		if (claim == null) return;  // RETURN
+		
+		String key = TouchState.key(STATE_TYPE, jobName, regionName, unit);
+		lockService().lock(key, -1, -1);
+		try {
+			if (claim.equals(TouchState.getRegion().get(key))) TouchState.getRegion().remove(key);
+		} finally {
+			lockService().unlock(key);
+		}
+	}
+
+	private static synchronized DistributedLockService lockService(){
+		DistributedLockService result = DistributedLockService.getServiceNamed(LOCK_SERVICE_NAME);
+		if (result == null) result = DistributedLockService.create(LOCK_SERVICE_NAME, CacheFactory.getAnyInstance().getDistributedSystem());
+		return result;
+	}
+
+	private String newClaim(){
+		return runId + SEPARATOR + memberId + SEPARATOR + System.currentTimeMillis();
+	}
+
+	private synchronized void hold(Integer unit, String claim){
+		held.put(unit, claim);
+		refreshed.put(unit, System.currentTimeMillis());
+	}
+
+	private synchronized boolean isHeld(Integer unit){
+		return held.containsKey(unit);
+	}
+
+	/**
+	 * A claim is stale if it was made by another run, by a member that no longer hosts the region
+	 * or has not been refreshed for CLAIM_TIMEOUT_MS.  The time is measured here, from when the
+	 * claim was first seen, so the clocks of the members do not matter.
+	 *
+	 * @return why the claim is stale, null if it is not
+	 */
+	private String staleness(Integer unit, String current, Set<String> replicas){
+		String []parts = current.split("\\" + SEPARATOR);
+		if (parts.length != 3 || !parts[0].equals(runId)) return "which was made by an earlier run";  // RETURN
+		if (!replicas.contains(parts[1])) return "which is no longer a replica";  // RETURN
+
+		long now = System.currentTimeMillis();
+		if (!current.equals(seen.get(unit))){
+			seenSince.put(unit, now);
+			seen.put(unit, current);
+			return null;  // RETURN
+		}
+		long unchangedMs = now - seenSince.get(unit);
+		if (unchangedMs < CLAIM_TIMEOUT_MS) return null;  // RETURN
+		
+		return "which has not been refreshed for " + unchangedMs / 1000l + "s";
+	}
+
+	private Set<String> replicaIds(){
+		Set<String> result = new HashSet<String>();
+		result.add(memberId);
+		for(DistributedMember member : region.getCacheDistributionAdvisor().adviseInitializedReplicates()) result.add(member.getId());
+		return result;
+	}
+
+	/**
+	 * @return the number of claims removed
+	 */
+	public static int clear(String jobName){
+		String prefix = TouchState.keyPrefix(STATE_TYPE, jobName);
+		Region<String,Object> state = TouchState.getRegion();
+		List<String> keys = new ArrayList<String>();
+		for(String key : state.keySet()){
+			if (key.startsWith(prefix)) keys.add(key);
+		}
+		state.removeAll(keys);
+		return keys.size();
+	}
+}
@@ -0,0 +1,71 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smooth rate limiter.
+ *
+ * Tokens accrue continuously at the configured rate but the bucket only holds 100ms
+ * worth of them, so a pause never turns into a burst afterward.  A caller asking for
+ * more tokens than are available takes them anyway, leaving the bucket in debt, and
+ * then sleeps until the debt would have been paid off.  Later callers see the debt
+ * and wait behind it, which keeps concurrent callers in order.
+ *
+ * A rate of 0 means unlimited.
+ */
+public class TokenBucket {
+	private static double MAX_BURST_SECONDS = 0.1d;
+
+	private double tokensPerNano;
+	private double capacity;
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(double ratePerSecond){
+		tokens = 0d;
+		lastRefill = System.nanoTime();
+		setRate(ratePerSecond);
+	}
+
+	public synchronized void setRate(double ratePerSecond){
+		refill();
+		tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+		capacity = Math.max(1d, ratePerSecond * MAX_BURST_SECONDS);
+		if (tokens > capacity) tokens = capacity;
+	}
+
+	public synchronized double getRate(){
+		return tokensPerNano * TimeUnit.SECONDS.toNanos(1);
+	}
+
+	/**
+	 * blocks until permits tokens are available
+	 *
+	 * @return the number of ms spent waiting
+	 */
+	public long acquire(int permits){
+		long waitNanos = 0;
+		synchronized(this){
+			if (tokensPerNano <= 0d) return 0;  // RETURN
+
+			refill();
+			tokens -= permits;
+			if (tokens < 0d) waitNanos = (long) (-tokens / tokensPerNano);
+		}
+
+		if (waitNanos == 0) return 0; // RETURN
+
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		} catch(InterruptedException x){
+			Thread.currentThread().interrupt();
+		}
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+	}
+
+	private void refill(){
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
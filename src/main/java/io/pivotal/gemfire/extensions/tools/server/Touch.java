@@ -1,22 +1,48 @@
 package io.pivotal.gemfire.extensions.tools.server;
 
+import io.pivotal.gemfire.extensions.tools.LatencyHistogram;
 import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.TouchProgress;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.geode.CopyHelper;
 import org.apache.geode.cache.CacheFactory;
 import org.apache.geode.cache.CacheTransactionManager;
 import org.apache.geode.cache.CommitConflictException;
+import org.apache.geode.cache.EntryNotFoundException;
 import org.apache.geode.cache.Region;
 import org.apache.geode.cache.execute.Function;
 import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.FunctionException;
 import org.apache.geode.cache.execute.RegionFunctionContext;
 import org.apache.geode.cache.execute.ResultSender;
 import org.apache.geode.cache.partition.PartitionRegionHelper;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.CachedDeserializable;
+import org.apache.geode.internal.cache.DistributedRegion;
+import org.apache.geode.internal.cache.LocalDataSet;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.Token;
 
 /**
  * optionally takes a list of region names
@@ -30,91 +56,566 @@ public class Touch implements Function {
 
 	private static final long serialVersionUID = 8827164389473146995L;
 
-	private static int BATCHSIZE=100;
+	private static int INITIAL_BATCHSIZE=100;
 	private static long REPORT_INTERVAL_MS = 10l * 1000l;
+	private static long STOP_WAIT_MS = 10l * 1000l;
+	private static int OVERFLOW_WINDOW = 100000;
+	private static int MAX_SLICE_PARTS = 8;
+	private static long MIN_PART_ENTRIES = 50000l;
+	
+	// the invocations running on this member, for gemtouchctl status
+	private static final Set<Invocation> active = ConcurrentHashMap.newKeySet();
 	
 	@Override
 	public void execute(FunctionContext ctx) {
+		TouchAllArgs args = (TouchAllArgs) ctx.getArguments();
+		ResultSender<TouchProgress> resultSender = ctx.<TouchProgress>getResultSender();
+		
+		if (!(ctx instanceof RegionFunctionContext)){
+			// a replicated region, executed on every server so all of the replicas share the work
+			Region<Object,Object> region = CacheFactory.getAnyInstance().getRegion(args.getRegionName());
+			if (region == null || !region.getAttributes().getDataPolicy().withReplication()){
+				skip(resultSender, args.getRegionName(), "does not host a replica");
+			} else if (!feedsGatewaySenders(region, args.getGatewaySenderIds())){
+				skip(resultSender, args.getRegionName(), "does not feed any of the gateway senders " + args.getGatewaySenderIds());
+			} else {
+				executeOnReplica(args, (DistributedRegion) region, resultSender);
+			}
+			return;  // RETURN
+		}
+		
 		RegionFunctionContext rctx = (RegionFunctionContext) ctx;
-		TouchAllArgs args = (TouchAllArgs) rctx.getArguments();
 		Region<Object,Object> region = rctx.getDataSet();
+		if (!feedsGatewaySenders(region, args.getGatewaySenderIds())){
+			skip(resultSender, region.getFullPath(), "does not feed any of the gateway senders " + args.getGatewaySenderIds());
+			return;  // RETURN
+		}
+		String unreachable = cannotEnqueue(args, region);
+		if (unreachable != null){
+			skip(resultSender, region.getFullPath(), unreachable);
+			return;  // RETURN
+		}
+		
+		Invocation invocation;
 		if (region.getAttributes().getDataPolicy().withPartitioning() ){
-			region = PartitionRegionHelper.getLocalDataForContext(rctx);
+			PartitionedRegion pr = (PartitionedRegion) region;
+			LocalDataSet localData = (LocalDataSet) PartitionRegionHelper.<Object,Object>getLocalDataForContext(rctx);
+			int dataStores = pr.getRegionAdvisor().adviseDataStore().size() + 1;
+			invocation = new Invocation(args, localData, pr, localData.size(), RateBudget.join(args.getJobName(), args.getRatePerSecond(), dataStores), resultSender);
+		} else {
+			invocation = new Invocation(args, region, null, region.size(), RateBudget.join(args.getJobName(), args.getRatePerSecond(), 1), resultSender);
+		}
+		Set<Integer> units = localUnits(rctx, args);
+		
+		// gemtouch also resumes when it retries after losing a member, see isHA
+		if (args.isResume()){
+			Set<Integer> completed = Checkpoints.completedUnits(args.getJobName(), region.getFullPath());
+			int before = units.size();
+			units.removeAll(completed);
+			invocation.setSkippedUnits(before - units.size());
+		}
+		invocation.setTotalUnits(units.size());
+		
+		active.add(invocation);
+		try {
+			int workers = Math.min(args.getParallelism(), units.size());
+			if (workers > 1){
+				touchUnitsInParallel(invocation, units, workers);
+			} else {
+				Object []batch = new Object[invocation.getBatchSizer().getMaxSize()];
+				for(Integer unit : units){
+					touchUnit(invocation, unit, batch);
+				}
+			}
+		} catch(TouchCancelledException x){
+			invocation.setCancelled();
+		} finally {
+			active.remove(invocation);
+			if (invocation.getBackpressure() != null) invocation.getBackpressure().release();
+			invocation.getBudget().leave();
 		}
+		invocation.lastReport();
+	}
+	
+	// Every replica touches the slices it manages to claim, see SliceClaims.  Slices completed by
+	// an earlier run are skipped by all of them but reported by only one.
+	private void executeOnReplica(TouchAllArgs args, DistributedRegion region, ResultSender<TouchProgress> resultSender){
+		String unreachable = cannotEnqueue(args, region);
+		if (unreachable != null){
+			skip(resultSender, region.getFullPath(), unreachable);
+			return;  // RETURN
+		}
+		
+		Set<Integer> units = replicatedUnits(args);
+		SliceClaims claims = new SliceClaims(args.getJobName(), args.getRunId(), region, units);
+		
+		// when enqueueing into a serial sender only the replica where it is primary takes part
+		boolean alone = args.getMode() == TouchAllArgs.Mode.ENQUEUE;
+		int replicas = alone ? 1 : claims.getReplicaCount();
+		Set<Integer> completed = Checkpoints.completedUnits(args.getJobName(), region.getFullPath());
+		completed.retainAll(units);
+		
+		// each replica's share of the entries in the slices that remain, for the ETA
+		long remaining = (long) region.size() * (units.size() - completed.size()) / TouchAllArgs.REPLICATE_SLICES / replicas;
+		Invocation invocation = new Invocation(args, region, null, remaining, RateBudget.join(args.getJobName(), args.getRatePerSecond(), replicas), resultSender);
+		invocation.setClaims(claims);
+		if (args.isResume() && (alone || claims.isFirstReplica())) invocation.setSkippedUnits(completed.size());
 		
-		Object []keys = region.keySet().toArray();
-		int i=0;
-		Invocation invocation = new Invocation(region.getFullPath(), keys.length);
-		for(;i+BATCHSIZE < keys.length; i+=BATCHSIZE){
-			processBatch(invocation, args, region, Arrays.copyOfRange(keys,i,i+BATCHSIZE), rctx.<String>getResultSender());
+		active.add(invocation);
+		try {
+			int workers = Math.min(args.getParallelism(), units.size());
+			if (workers > 1){
+				touchClaimedUnitsInParallel(invocation, claims, workers);
+			} else {
+				Object []batch = new Object[invocation.getBatchSizer().getMaxSize()];
+				for(Integer unit = claims.next(); unit != null; unit = claims.next()){
+					touchClaimedUnit(invocation, claims, unit, batch);
+				}
+			}
+		} catch(TouchCancelledException x){
+			invocation.setCancelled();
+		} finally {
+			active.remove(invocation);
+			if (invocation.getBackpressure() != null) invocation.getBackpressure().release();
+			invocation.getBudget().leave();
 		}
-		// left over batch
-		if (i <keys.length){
-			processBatch(invocation, args, region,Arrays.copyOfRange(keys,i,keys.length), rctx.<String>getResultSender());
+		invocation.lastReport();
+	}
+	
+	private void skip(ResultSender<TouchProgress> resultSender, String regionName, String note){
+		TouchProgress skipped = new TouchProgress(regionName);
+		skipped.setSkipped(true);
+		skipped.setFinished(true);
+		skipped.setNote(note);
+		CacheFactory.getAnyInstance().getLogger().info(skipped.toString());
+		resultSender.lastResult(skipped);
+	}
+
+	/**
+	 * The work is divided into units that can be checkpointed: the local primary buckets of a
+	 * partitioned region or slices of the key space of a replicated region.
+	 * 
+	 * @return the units of this member, less any that --compare-with-locator found to be the same 
+	 * on both sites 
+	 */
+	static Set<Integer> localUnits(RegionFunctionContext rctx, TouchAllArgs args){
+		if (!rctx.getDataSet().getAttributes().getDataPolicy().withPartitioning()) return replicatedUnits(args);  // RETURN
+		
+		Set<Integer> result = new TreeSet<Integer>();
+		result.addAll(((LocalDataSet) PartitionRegionHelper.getLocalDataForContext(rctx)).getBucketSet());
+		
+		// only what differs from another site, see Digest
+		if (args.getKeyRanges() != null) result.retainAll(args.getKeyRanges().keySet());
+		return result;
+	}
+	
+	private static Set<Integer> replicatedUnits(TouchAllArgs args){
+		Set<Integer> result = new TreeSet<Integer>();
+		for(int i=0; i < TouchAllArgs.REPLICATE_SLICES; ++i) result.add(i);
+		if (args.getKeyRanges() != null) result.retainAll(args.getKeyRanges().keySet());
+		return result;
+	}
+
+	/**
+	 * @return the progress so far of each touch running on this member for the given job, or for 
+	 * all jobs if jobName is null
+	 */
+	static List<TouchProgress> activeProgress(String jobName){
+		List<TouchProgress> result = new ArrayList<TouchProgress>();
+		for(Invocation invocation : active){
+			if (jobName == null || jobName.equals(invocation.getArgs().getJobName())) result.add(invocation.progress(false));
 		}
+		return result;
+	}
+
+	/**
+	 * @return why this member can not touch the region in ENQUEUE mode, null if it can or if that
+	 * is not the mode
+	 */
+	static String cannotEnqueue(TouchAllArgs args, Region<?,?> region){
+		if (args.getMode() != TouchAllArgs.Mode.ENQUEUE) return null;  // RETURN
+		
+		return new GatewayEnqueue((LocalRegion) region, args.getGatewaySenderIds()).unreachable();
+	}
+
+	/**
+	 * @return true if senderIds is empty or the region has at least one of them as a gateway sender 
+	 * or async event queue
+	 */
+	static boolean feedsGatewaySenders(Region<?,?> region, Collection<String> senderIds){
+		if (senderIds == null || senderIds.isEmpty()) return true;  // RETURN
 		
-		invocation.lastReport( rctx.<String>getResultSender());
+		for(String id : senderIds){
+			if (region.getAttributes().getGatewaySenderIds().contains(id)) return true;  // RETURN
+			if (region.getAttributes().getAsyncEventQueueIds().contains(id)) return true;  // RETURN
+		}
+		return false;
 	}
 
-	private void processBatch(Invocation invocation, TouchAllArgs args,  Region<Object,Object> region, Object[]keys, ResultSender<String> resultSender){
-		// introduce sleep as necessary to throttle to the desired rate
-		long targetRate = args.getRatePerSecond();
-		if ( targetRate > 0){
-			long currentRate = invocation.getTouchesPerSecond();
-			if (currentRate > args.getRatePerSecond()){
-				long targetElapsedMs = (invocation.getTouched() * 1000) / targetRate;
-				long sleep = targetElapsedMs - invocation.getElapsedMs();
-				if (sleep > 0){
-					try {
-						Thread.sleep(sleep);
-					} catch(InterruptedException x){
-						// not a problem
+	private void touchUnitsInParallel(final Invocation invocation, Set<Integer> units, int workers){
+		final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<Integer>(units);
+		ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory("Touch", invocation.getRegionName()));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+			for(int i=0; i < workers; ++i){
+				futures.add(pool.submit(new Runnable(){
+					@Override
+					public void run() {
+						Object []batch = new Object[invocation.getBatchSizer().getMaxSize()];
+						for(Integer unit = pending.poll(); unit != null; unit = pending.poll()){
+							touchUnit(invocation, unit, batch);
+						}
+					}
+				}));
+			}
+			
+			for(Future<?> future : futures){
+				try {
+					future.get();
+				} catch(ExecutionException x){
+					// stop the other workers - the whole invocation has failed or been cancelled
+					pending.clear();
+					stopWorkers(pool, invocation.getRegionName());
+					if (x.getCause() instanceof TouchCancelledException) throw (TouchCancelledException) x.getCause();
+					throw new FunctionException("touch failed on " + invocation.getRegionName(), x.getCause());
+				} catch(InterruptedException x){
+					pending.clear();
+					stopWorkers(pool, invocation.getRegionName());
+					Thread.currentThread().interrupt();
+					throw new FunctionException("interrupted while touching " + invocation.getRegionName(), x);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// Interrupts the workers, which stop at their next batch, and waits for them.  Nothing may still 
+	// be writing once the invocation has given up its share of the rate and gemtouch may be touching
+	// the same buckets again.
+	private static void stopWorkers(ExecutorService pool, String regionName){
+		pool.shutdownNow();
+		boolean interrupted = Thread.interrupted();
+		try {
+			while(!pool.awaitTermination(STOP_WAIT_MS, TimeUnit.MILLISECONDS)){
+				CacheFactory.getAnyInstance().getLogger().info("waiting for the workers touching " + regionName + " to stop");
+			}
+		} catch(InterruptedException x){
+			interrupted = true;
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void touchClaimedUnitsInParallel(final Invocation invocation, final SliceClaims claims, int workers){
+		ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory("Touch", invocation.getRegionName()));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+			for(int i=0; i < workers; ++i){
+				futures.add(pool.submit(new Runnable(){
+					@Override
+					public void run() {
+						Object []batch = new Object[invocation.getBatchSizer().getMaxSize()];
+						for(Integer unit = claims.next(); unit != null; unit = claims.next()){
+							touchClaimedUnit(invocation, claims, unit, batch);
+						}
 					}
+				}));
+			}
+			
+			for(Future<?> future : futures){
+				try {
+					future.get();
+				} catch(ExecutionException x){
+					// stop the other workers, the failed slice has been released for another member to claim
+					stopWorkers(pool, invocation.getRegionName());
+					if (x.getCause() instanceof TouchCancelledException) throw (TouchCancelledException) x.getCause();
+					throw new FunctionException("touch failed on " + invocation.getRegionName(), x.getCause());
+				} catch(InterruptedException x){
+					stopWorkers(pool, invocation.getRegionName());
+					Thread.currentThread().interrupt();
+					throw new FunctionException("interrupted while touching " + invocation.getRegionName(), x);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// a slice that fails is given up so that another member can claim it, one that was taken over 
+	// is counted by the member that took it
+	private void touchClaimedUnit(Invocation invocation, SliceClaims claims, Integer unit, Object []batch){
+		invocation.incrementTotalUnits();
+		boolean completed = false;
+		try {
+			if (touchUnit(invocation, claims, unit, batch))
+				claims.done(unit);
+			else
+				invocation.decrementTotalUnits();
+			completed = true;
+		} finally {
+			if (!completed) claims.release(unit);
+		}
+	}
+	
+	private void touchUnit(Invocation invocation, Integer unit, Object []batch){
+		touchUnit(invocation, null, unit, batch);
+	}
+	
+	/**
+	 * The slice of a replicated region is touched in parts, each a share of its key ranges (see 
+	 * KeyCursor.rangeOf), and each part is checkpointed as it completes.  A slice that is resumed or
+	 * taken over is touched again only from the part that was in progress.  Each part is a walk of
+	 * the keys of the whole region, so there are only as many parts as slicePartCount allows.
+	 * 
+	 * @param claims the claims of a replicated region, null if the unit is not claimed
+	 * @return false if the claim on the slice was taken over by another member part way through
+	 */
+	private boolean touchUnit(Invocation invocation, SliceClaims claims, Integer unit, Object []batch){
+		TouchAllArgs args = invocation.getArgs();
+		PartitionedRegion pr = invocation.getPartitionedRegion();
+		if (pr != null){
+			BucketRegion bucket = pr.getDataStore().getLocalBucketById(unit);
+			if (bucket == null) return true;  // RETURN - the bucket has moved since the function started
+			
+			KeyCursor cursor = new KeyCursor(bucket);
+			cursor.setModifiedSince(args.getModifiedSince());
+			if (args.getKeyRanges() != null) cursor.setKeyRanges(args.getKeyRangeCount(), args.getKeyRanges().get(unit));
+			touchKeys(invocation, null, unit, bucket, cursor, batch);
+		} else {
+			// the ranges that differ from the other site, null for the whole slice
+			Set<Integer> sliceRanges = args.getKeyRanges() != null ? args.getKeyRanges().get(unit) : null;
+			int parts = slicePartCount(invocation.getRegion().size());
+			int rangeCount = sliceRanges != null ? args.getKeyRangeCount() : parts;
+			Set<Integer> completedParts = Checkpoints.completedParts(args.getJobName(), invocation.getRegionName(), unit, parts);
+			for(int part=0; part < parts; ++part){
+				if (completedParts.contains(part)) continue;
+				
+				Set<Integer> ranges = null;
+				if (parts > 1 || sliceRanges != null){
+					ranges = new TreeSet<Integer>();
+					for(int range = part; range < rangeCount; range += parts) ranges.add(range);
+					if (sliceRanges != null) ranges.retainAll(sliceRanges);
+				}
+				
+				if (ranges == null || !ranges.isEmpty()){
+					KeyCursor cursor = new KeyCursor(invocation.getRegion(), unit, TouchAllArgs.REPLICATE_SLICES);
+					cursor.setModifiedSince(args.getModifiedSince());
+					if (ranges != null) cursor.setKeyRanges(rangeCount, ranges);
+					if (!touchKeys(invocation, claims, unit, (LocalRegion) invocation.getRegion(), cursor, batch)) return false;  // RETURN
+				}
+				if (parts > 1) Checkpoints.markPartCompleted(args.getJobName(), invocation.getRegionName(), unit, parts, part);
+			}
+		}
+		
+		Checkpoints.markCompleted(args.getJobName(), invocation.getRegionName(), unit);
+		invocation.unitCompleted(unit);
+		return true;
+	}
+	
+	/**
+	 * @return how many parts to touch each slice of a replicated region of the given size in, a 
+	 * power of two up to MAX_SLICE_PARTS with at least MIN_PART_ENTRIES entries in a part, so a 
+	 * region that is not large is walked just once for each slice
+	 */
+	static int slicePartCount(long regionSize){
+		long sliceSize = regionSize / TouchAllArgs.REPLICATE_SLICES;
+		int parts = 1;
+		while(parts < MAX_SLICE_PARTS && sliceSize / (parts * 2) >= MIN_PART_ENTRIES) parts *= 2;
+		return parts;
+	}
+	
+	/**
+	 * @param source where the entries are actually stored
+	 * @return false if the claim on the slice was taken over by another member
+	 */
+	private boolean touchKeys(Invocation invocation, SliceClaims claims, Integer unit, LocalRegion source, KeyCursor cursor, Object []batch){
+		BatchSizer batchSizer = invocation.getBatchSizer();
+		if (invocation.getArgs().isOverflowAware() && EvictionGuard.isOverflow(source)){
+			invocation.noteOverflow();
+			
+			// read a window of keys and touch them in the order their values were written to disk, 
+			// see EvictionGuard.sort
+			Object []window = new Object[OVERFLOW_WINDOW];
+			for(int n = cursor.next(window); n > 0; n = cursor.next(window)){
+				EvictionGuard.sort(source, window, n);
+				for(int start = 0; start < n; ){
+					int count = Math.min(batchSizer.getSize(), n - start);
+					System.arraycopy(window, start, batch, 0, count);
+					processBatch(invocation, source, batch, count);
+					start += count;
+					if (claims != null && !claims.heartbeat(unit)) return false;  // RETURN
 				}
 			}
+		} else {
+			for(int count = cursor.next(batch, batchSizer.getSize()); count > 0; count = cursor.next(batch, batchSizer.getSize())){
+				processBatch(invocation, source, batch, count);
+				if (claims != null && !claims.heartbeat(unit)) return false;  // RETURN
+			}
+		}
+		invocation.incrementUnchanged(cursor.getSkipped());
+		return true;
+	}
+
+	private void processBatch(Invocation invocation, LocalRegion source, Object[]keys, int count){
+		Region<Object,Object> region = invocation.getRegion();
+		
+		// another worker has failed, see stopWorkers
+		if (Thread.currentThread().isInterrupted()) throw new FunctionException("stopped touching " + invocation.getRegionName() + " after another worker failed");
+		
+		// stop here if the job has been cancelled, wait here while it is paused
+		invocation.getControl().await();
+		
+		// hold back while the gateway queues or the heap are under pressure, then wait as 
+		// necessary to stay within this member's share of the cluster wide rate
+		if (invocation.getBackpressure() != null) invocation.getBackpressure().await();
+		invocation.addThrottleMs(invocation.getBudget().acquire(count));
+		
+		if (invocation.getEnqueue() != null){
+			long start = System.nanoTime();
+			processBatchEnqueue(invocation, source, keys, count);
+			invocation.getCommitLatency().recordNanos(System.nanoTime() - start);
+			invocation.incrementTouched(count);
+			invocation.reportIfDue();
+			return;  // RETURN
+		}
+		
+		// Overflow regions are touched with compare and swap so that the eviction the touch causes 
+		// can be held back until the touched entries are no longer marked as recently used, a 
+		// transaction commit evicts before we get the chance, see EvictionGuard.
+		boolean overflow = invocation.getArgs().isOverflowAware() && EvictionGuard.isOverflow(source);
+		if (overflow || invocation.getArgs().getMode() == TouchAllArgs.Mode.COMPARE_AND_SWAP){
+			long start = System.nanoTime();
+			EvictionGuard guard = overflow ? EvictionGuard.capture(source, keys, count) : null;
+			try {
+				processBatchCompareAndSwap(invocation, source, keys, count, overflow || invocation.getArgs().isSerializedValues());
+			} finally {
+				if (guard != null) guard.restore();
+			}
+			invocation.getCommitLatency().recordNanos(System.nanoTime() - start);
+			invocation.incrementTouched(count);
+			invocation.reportIfDue();
+			return;  // RETURN
 		}
 		
 		boolean copyOnRead = CacheFactory.getAnyInstance().getCopyOnRead();
+		boolean serialized = invocation.getArgs().isSerializedValues();
 		// do the touch using transaction semantics so we will not accidentally
 		// undo an update that is happening concurrently
 		CacheTransactionManager tm = CacheFactory.getAnyInstance().getCacheTransactionManager();
+		long commitStart = 0;
+		long commitNanos = 0;
+		long bytes = 0;
+		boolean conflict = false;
 		tm.begin();
 		try {
-			for(Object key: keys) putGet(region,key, !copyOnRead);
+			for(int i=0; i < count; ++i){
+				if (serialized) 
+					bytes += putGetSerialized(region, source, keys[i]);
+				else
+					putGet(region,keys[i], !copyOnRead);
+			}
+			commitStart = System.nanoTime();
 			tm.commit();
+			commitNanos = System.nanoTime() - commitStart;
 			tm = null;
+			invocation.addBytes(bytes);
 		} catch(CommitConflictException x){
-			processBatchOneAtATime(region, keys);
+			conflict = true;
+			commitNanos = System.nanoTime() - commitStart;
+			processBatchOneAtATime(invocation, source, keys, count);
 		} finally {
-			if (tm != null) tm.rollback();
+			if (tm != null && tm.exists()) tm.rollback();  // a failed commit has already ended the transaction
 			tm = null;
 		}
-		invocation.incrementTouched(keys.length);
+		invocation.getBatchSizer().record(commitNanos, conflict);
+		invocation.getCommitLatency().recordNanos(commitNanos);
+		invocation.incrementTouched(count);
 		
 		// now assess whether we need to send back a status report / log a message
-		if (invocation.getTimeSinceLastReport() > REPORT_INTERVAL_MS) invocation.report(resultSender);
+		invocation.reportIfDue();
 	}
 
-	private void processBatchOneAtATime(Region<Object,Object> region, Object[]keys){
+	private void processBatchOneAtATime(Invocation invocation, LocalRegion source, Object[]keys, int count){
 		// do the touch using transaction semantics so we will not accidentally
 		// undo an update that is happening concurrently
+		Region<Object,Object> region = invocation.getRegion();
+		boolean serialized = invocation.getArgs().isSerializedValues();
 		boolean copyOnRead = CacheFactory.getAnyInstance().getCopyOnRead();
-		for(Object key : keys){
+		for(int i=0; i < count; ++i){
+			Object key = keys[i];
 			CacheTransactionManager tm = CacheFactory.getAnyInstance().getCacheTransactionManager();
+			long bytes = 0;
 			tm.begin();
 			try {
-				putGet(region, key, !copyOnRead);
+				if (serialized)
+					bytes = putGetSerialized(region, source, key);
+				else
+					putGet(region, key, !copyOnRead);
 				tm.commit();
 				tm = null;
+				invocation.addBytes(bytes);
 			} catch(CommitConflictException x){
 				// this is OK - it just means someone else updated the key and we don't want to overwrite it
 			} finally {
-				if (tm != null) tm.rollback();
+				if (tm != null && tm.exists()) tm.rollback();  // a failed commit has already ended the transaction
 				tm = null;
 			}
 		}
 	}	
 
+	// No transaction here.  Each entry is replaced only if it still holds the value that was read so,
+	// as with the transactional path, a concurrent update is never undone.  A miss just means 
+	// someone else has updated the entry, which will have sent it on its way anyway.
+	private void processBatchCompareAndSwap(Invocation invocation, LocalRegion source, Object[]keys, int count, boolean serialized){
+		Region<Object,Object> region = invocation.getRegion();
+		boolean copy = !CacheFactory.getAnyInstance().getCopyOnRead();
+		long misses = 0;
+		long bytes = 0;
+		for(int i=0; i < count; ++i){
+			long result = compareAndSwap(region, source, keys[i], copy, serialized);
+			if (result < 0) 
+				++misses;
+			else
+				bytes += result;
+		}
+		invocation.incrementMisses(misses);
+		invocation.addBytes(bytes);
+	}
+	
+	// Nothing is written so there is nothing to conflict with, see GatewayEnqueue.  Entries 
+	// destroyed since their keys were read are simply not enqueued.
+	private void processBatchEnqueue(Invocation invocation, LocalRegion source, Object[]keys, int count){
+		long bytes = 0;
+		for(int i=0; i < count; ++i){
+			long result = invocation.getEnqueue().enqueue(source, keys[i]);
+			if (result > 0) bytes += result;
+		}
+		invocation.addBytes(bytes);
+	}
+	
+	/**
+	 * @return -1 if the entry was changed between the read and the replace, otherwise the number of 
+	 * bytes re-put if known (see sizeOf)
+	 */
+	private long compareAndSwap(Region<Object,Object> region, LocalRegion source, Object key, boolean copy, boolean serialized){
+		Object val = region.get(key);
+		if (val == null) return 0;  // RETURN - destroyed since the key was read, nothing to touch
+		
+		// the comparison is made against the deserialized value, replace does not accept the stored 
+		// form as the expected value, but the stored form can still be re-put as is
+		Object newVal;
+		if (serialized){
+			newVal = storedValue(source, key);
+			if (newVal == null) return -1;  // RETURN
+		} else {
+			newVal = copy ? CopyHelper.copy(val) : val;
+		}
+		
+		if (copy) key = CopyHelper.copy(key);
+		return region.replace(key, val, newVal) ? sizeOf(newVal) : -1;
+	}
+	
 	private void putGet(Region<Object,Object> region, Object key, boolean copy){
 		Object val = region.get(key);
 		
@@ -128,6 +629,47 @@ public class Touch implements Function {
 		}
 	}
 	
+	// Re-puts the value in the form in which it is stored, usually serialized, so it is never 
+	// deserialized or copied.  Must be called within a transaction.  Returns the number of bytes 
+	// re-put.
+	private long putGetSerialized(Region<Object,Object> region, LocalRegion source, Object key){
+		// reading the entry through the transaction records the version that is about to be re-put, 
+		// so a concurrent update causes a conflict at commit just as it would with region.get.  It 
+		// has to happen before the value is read or we could re-put an older value than the version
+		// recorded.
+		if (region.getEntry(key) == null) return 0;  // RETURN
+		
+		Object val = storedValue(source, key);
+		if (val == null) return 0;  // RETURN
+		
+		region.put(key, val);
+		return sizeOf(val);
+	}
+	
+	// the size of a stored value if it is known without serializing it, otherwise 0
+	static long sizeOf(Object val){
+		if (val instanceof CachedDeserializable) return ((CachedDeserializable) val).getValueSizeInBytes();  // RETURN
+		if (val instanceof byte[]) return ((byte []) val).length;  // RETURN
+		return 0;
+	}
+	
+	/**
+	 * @return the value of key in the form in which it is stored, usually serialized, or null if 
+	 * there is no value.  A value that has overflowed is read from disk without faulting it in.
+	 */
+	static Object storedValue(LocalRegion source, Object key){
+		Object val;
+		try {
+			val = source.getValueInVM(key);
+			if (val == null && source.getDiskRegion() != null) val = source.getValueOnDiskOrBuffer(key);
+		} catch(EntryNotFoundException x){
+			return null;  // RETURN - destroyed or expired since the key was read
+		}
+		
+		if (val == null || Token.isInvalidOrRemoved(val)) return null;  // RETURN
+		return val;
+	}
+	
 	private Map<Object,Object> copyMap(Map<Object,Object> map){
 		Map<Object,Object> result = new HashMap<Object,Object>(map.size());
 		
@@ -150,9 +692,11 @@ public class Touch implements Function {
 		return true;
 	}
 
+	// Not HA, re-executing would touch the whole region again.  Instead gemtouch keeps track of the 
+	// buckets each member reports as completed and, if one fails, touches just the others again.
 	@Override
 	public boolean isHA() {
-		return true;
+		return false;
 	}
 
 	@Override
@@ -162,57 +706,244 @@ public class Touch implements Function {
 
 	// I'm not certain whether / how Function instances are re-uses within the server so
 	// all invocation related state will be stored in a newly allocated instance of Invocation.
-	// Since there will be one instance per invocation it does not need to be thread safe.
+	// There is one instance per invocation but, in parallel mode, it is shared by all of the 
+	// worker threads so it does need to be thread safe.
 	private static class Invocation {
+		private TouchAllArgs args;
+		private Region<Object,Object> region;
+		private PartitionedRegion pr;
 		private String regionName;
 		private long totalEntries;
-		private long touched;
+		private int skippedUnits;
+		private AtomicInteger totalUnits;
+		private AtomicInteger completedUnits;
+		private Set<Integer> completedUnitIds;
+		private AtomicLong touched;
+		private AtomicLong unchanged;
+		private AtomicLong misses;
+		private AtomicLong bytes;
+		private AtomicLong throttleMs;
+		private LatencyHistogram commitLatency;
+		private RateBudget budget;
+		private BatchSizer batchSizer;
+		private Backpressure backpressure;
+		private GatewayEnqueue enqueue;
+		private JobControl control;
+		private volatile SliceClaims claims;
+		private volatile boolean cancelled;
+		private AtomicBoolean overflowNoted;
+		private ResultSender<TouchProgress> resultSender;
 		private long startTime;
 		private long lastReport;
 		
-		public Invocation(String regionName, long totalEntries){
-			this.regionName = regionName;
+		/**
+		 * @param region the region to touch, for partitioned regions this is the local data set 
+		 * @param pr the partitioned region, null if the region is not partitioned
+		 */
+		public Invocation(TouchAllArgs args, Region<Object,Object> region, PartitionedRegion pr, long totalEntries, RateBudget budget, ResultSender<TouchProgress> resultSender){
+			this.args = args;
+			this.region = region;
+			this.pr = pr;
+			this.regionName = region.getFullPath();
 			this.totalEntries = totalEntries;
-			touched = 0l;
+			this.budget = budget;
+			this.resultSender = resultSender;
+			batchSizer = new BatchSizer(args.getMinBatchSize(), args.getMaxBatchSize(), INITIAL_BATCHSIZE);
+			if (args.getMode() == TouchAllArgs.Mode.ENQUEUE){
+				enqueue = new GatewayEnqueue(pr != null ? pr : (LocalRegion) region, args.getGatewaySenderIds());
+			}
+			
+			// keep reporting while paused or stalled so the client can see that we are, and keep 
+			// our slices so that no other member takes them over
+			Runnable whilePaused = new Runnable(){
+				@Override
+				public void run() {
+					reportIfDue();
+					if (claims != null) claims.heartbeat();
+				}
+			};
+			control = new JobControl(args.getJobName(), whilePaused);
+			if (args.isBackpressure()){
+				backpressure = new Backpressure(pr != null ? pr : region, args.getJobName(), args.getMaxQueueSize(), args.getResumeQueueSize(), budget, whilePaused);
+			}
+			cancelled = false;
+			overflowNoted = new AtomicBoolean(false);
+			skippedUnits = 0;
+			totalUnits = new AtomicInteger(0);
+			completedUnits = new AtomicInteger(0);
+			completedUnitIds = new ConcurrentSkipListSet<Integer>();
+			touched = new AtomicLong(0l);
+			unchanged = new AtomicLong(0l);
+			misses = new AtomicLong(0l);
+			bytes = new AtomicLong(0l);
+			throttleMs = new AtomicLong(0l);
+			commitLatency = new LatencyHistogram();
 			lastReport = 0l;
 			startTime = System.currentTimeMillis();
 		}
 		
+		public TouchAllArgs getArgs(){
+			return args;
+		}
+		
+		public void setClaims(SliceClaims claims){
+			this.claims = claims;
+		}
+		
+		public Region<Object,Object> getRegion(){
+			return region;
+		}
+		
+		public PartitionedRegion getPartitionedRegion(){
+			return pr;
+		}
+		
+		public String getRegionName(){
+			return regionName;
+		}
+		
+		public void setSkippedUnits(int skippedUnits){
+			this.skippedUnits = skippedUnits;
+		}
+		
+		public void setTotalUnits(int totalUnits){
+			this.totalUnits.set(totalUnits);
+		}
+		
+		// replicated regions do not know their units in advance, they are counted as claimed
+		public void incrementTotalUnits(){
+			totalUnits.incrementAndGet();
+		}
+		
+		public void decrementTotalUnits(){
+			totalUnits.decrementAndGet();
+		}
+		
+		// reported straight away so that gemtouch knows not to touch the unit again if we fail
+		public synchronized void unitCompleted(Integer unit){
+			completedUnits.incrementAndGet();
+			completedUnitIds.add(unit);
+			resultSender.sendResult(progress(false));
+		}
+		
 		public void incrementTouched(long i){
-			touched += i;
+			touched.addAndGet(i);
 		}
 		
 		public long getTouched(){
-			return touched;
+			return touched.get();
+		}
+		
+		public void incrementUnchanged(long i){
+			unchanged.addAndGet(i);
+		}
+		
+		/**
+		 * counts compare and swap touches that did not happen because the entry had been updated 
+		 */
+		public void incrementMisses(long i){
+			misses.addAndGet(i);
+		}
+		
+		public void addBytes(long i){
+			bytes.addAndGet(i);
+		}
+		
+		public void addThrottleMs(long i){
+			throttleMs.addAndGet(i);
+		}
+		
+		public LatencyHistogram getCommitLatency(){
+			return commitLatency;
 		}
 		
 		public long getElapsedMs(){
 			return System.currentTimeMillis() - startTime;
 		}
 		
-		public long getTouchesPerSecond(){
-			long elapsed = this.getElapsedMs();
-			if (elapsed == 0) return 0; // avoids divide by zero
+		public RateBudget getBudget(){
+			return budget;
+		}
+		
+		public BatchSizer getBatchSizer(){
+			return batchSizer;
+		}
+		
+		public Backpressure getBackpressure(){
+			return backpressure;
+		}
+		
+		/**
+		 * @return null unless touching in ENQUEUE mode
+		 */
+		public GatewayEnqueue getEnqueue(){
+			return enqueue;
+		}
+		
+		public JobControl getControl(){
+			return control;
+		}
+		
+		/**
+		 * logs, once for the region, that it overflows and so is touched with compare and swap and 
+		 * serialized values whatever the mode, see processBatch
+		 */
+		public void noteOverflow(){
+			if (overflowNoted.getAndSet(true)) return;  // RETURN
+			if (args.getMode() == TouchAllArgs.Mode.COMPARE_AND_SWAP && args.isSerializedValues()) return;  // RETURN - nothing changes
 			
-			return (this.getTouched() * 1000) / elapsed;
+			CacheFactory.getAnyInstance().getLogger().info(regionName + " overflows to disk, with --overflow-aware it is touched with compare and swap and serialized values instead of "
+					+ (args.getMode() == TouchAllArgs.Mode.COMPARE_AND_SWAP ? "deserialized values" : "transactions" + (args.isSerializedValues() ? "" : " and deserialized values")));
+		}
+		
+		public void setCancelled(){
+			cancelled = true;
+			CacheFactory.getAnyInstance().getLogger().info("touch job " + args.getJobName() + " cancelled while touching " + regionName);
+		}
+		
+		private TouchProgress progress(boolean finished){
+			TouchProgress result = new TouchProgress(regionName);
+			result.setJobName(args.getJobName());
+			result.setFinished(finished);
+			result.setCancelled(cancelled);
+			result.setPaused(control.isPaused());
+			result.setPausedMs(control.getPausedMs());
+			result.setRatePerSecond((long) budget.getShare());
+			result.setElapsedMs(getElapsedMs());
+			result.setTouched(touched.get());
+			result.setTotalEntries(totalEntries);
+			result.setUnchanged(unchanged.get());
+			result.setBatches(batchSizer.getBatches());
+			result.setConflicts(batchSizer.getConflicts());
+			result.setBatchSize(batchSizer.getSize());
+			result.setMisses(misses.get());
+			result.setBytes(bytes.get());
+			result.setThrottleMs(throttleMs.get());
+			result.setStallMs(backpressure == null ? 0 : backpressure.getStallMs());
+			result.setCompletedUnits(completedUnits.get());
+			result.setTotalUnits(totalUnits.get());
+			result.setSkippedUnits(skippedUnits);
+			result.setCompletedUnitIds(new TreeSet<Integer>(completedUnitIds));
+			result.setCommitLatency(commitLatency.copy());
+			return result;
 		}
 		
-		public long getTimeSinceLastReport(){
-			return System.currentTimeMillis() - lastReport;
+		public synchronized void reportIfDue(){
+			if (System.currentTimeMillis() - lastReport > REPORT_INTERVAL_MS) report();
 		}
 		
-		public void report(ResultSender<String> resultSender){
-			String msg = "touched " + touched + "/" + totalEntries + " entries in " + regionName;
-			CacheFactory.getAnyInstance().getLogger().info(msg);
+		public synchronized void report(){
+			TouchProgress progress = progress(false);
+			CacheFactory.getAnyInstance().getLogger().info(progress.toString());
 			lastReport = System.currentTimeMillis();
-			resultSender.sendResult(msg);
+			resultSender.sendResult(progress);
 		}
 		
-		public void lastReport(ResultSender<String> resultSender){
-			String msg = "FINISHED: touched " + touched + "/" + totalEntries + " entries in " + regionName;
-			CacheFactory.getAnyInstance().getLogger().info(msg);
+		public synchronized void lastReport(){
+			TouchProgress progress = progress(true);
+			CacheFactory.getAnyInstance().getLogger().info(progress.toString());
 			lastReport = System.currentTimeMillis();
-			resultSender.lastResult(msg);
+			resultSender.lastResult(progress);
 		}
 	}
 }
@@ -0,0 +1,13 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+/**
+ * Thrown from the touch loop when the job has been cancelled, see JobControl.  Touch catches it
+ * and reports what was done up to that point.
+ */
+public class TouchCancelledException extends RuntimeException {
+	private static final long serialVersionUID = -6409216311475098427L;
+
+	public TouchCancelledException(String jobName){
+		super("touch job " + jobName + " was cancelled");
+	}
+}
@@ -0,0 +1,79 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.GemTouch;
+import io.pivotal.gemfire.extensions.tools.GemTouchControl;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.FunctionException;
+
+/**
+ * Takes a String array: a command, a job name and, for the rate command, the new rate.
+ *
+ * pause, resume, cancel and rate record the command for the job in the touch state region (see
+ * JobControl), so they need only be executed on one server.  reset forgets all of them and is
+ * used by gemtouch when it starts a job.  status returns, from each server it is executed on, the
+ * progress of the touches running there for the job, or for every job if none is given.
+ */
+public class TouchControl implements Function {
+
+	private static final long serialVersionUID = -1726503094571826734L;
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		String []args = (String []) ctx.getArguments();
+		String command = args[0];
+		String jobName = args.length > 1 ? args[1] : null;
+		if (command.equals(GemTouchControl.STATUS)){
+			ctx.getResultSender().lastResult(Touch.activeProgress(jobName));
+			return;  // RETURN
+		}
+
+		if (jobName == null) throw new FunctionException(command + " requires a job name");
+		String result;
+		if (command.equals(GemTouchControl.PAUSE)){
+			JobControl.setState(jobName, JobControl.State.PAUSED);
+			result = "paused touch job " + jobName;
+		} else if (command.equals(GemTouchControl.RESUME)){
+			JobControl.setState(jobName, JobControl.State.RUNNING);
+			result = "resumed touch job " + jobName;
+		} else if (command.equals(GemTouchControl.CANCEL)){
+			JobControl.setState(jobName, JobControl.State.CANCELLED);
+			result = "cancelled touch job " + jobName + ", use gemtouch --resume --job-name=" + jobName + " to finish it";
+		} else if (command.equals(GemTouchControl.RATE)){
+			long rate = Long.parseLong(args[2]);
+			JobControl.setRate(jobName, rate);
+			result = "set the rate of touch job " + jobName + " to " + (rate == 0 ? "unlimited" : rate + " per second") + ", members pick it up within a few seconds";
+		} else if (command.equals(GemTouchControl.RESET)){
+			JobControl.clear(jobName);
+			result = "cleared the commands given to touch job " + jobName;
+		} else {
+			throw new FunctionException("unknown touch control command: " + command);
+		}
+
+		CacheFactory.getAnyInstance().getLogger().info(result);
+		ctx.getResultSender().lastResult(result);
+	}
+
+	@Override
+	public String getId() {
+		return GemTouch.CONTROL_NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return true;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return false;
+	}
+
+}
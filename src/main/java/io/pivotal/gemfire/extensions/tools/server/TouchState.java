@@ -0,0 +1,58 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.DataPolicy;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionExistsException;
+import org.apache.geode.cache.Scope;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.InternalRegionArguments;
+
+/**
+ * Small replicated region used by the touch functions to share state between members.
+ *
+ * It is created on demand by whichever member needs it first and is an internal region
+ * so it does not show up in listAllRegionPaths (and so never gets touched itself),
+ * is not attached to any gateway sender and is not visible to clients.
+ */
+public class TouchState {
+	public static final String REGION_NAME = "__gemtouchState";
+
+	private static final String KEY_SEPARATOR = "|";
+
+	public static synchronized Region<String,Object> getRegion(){
+		InternalCache cache = (InternalCache) CacheFactory.getAnyInstance();
+		Region<String,Object> result = cache.getRegion(REGION_NAME);
+		if (result != null) return result;   // RETURN
+
+		AttributesFactory<String,Object> factory = new AttributesFactory<String,Object>();
+		factory.setScope(Scope.DISTRIBUTED_ACK);
+		factory.setDataPolicy(DataPolicy.REPLICATE);
+		InternalRegionArguments internalArgs = new InternalRegionArguments().setIsUsedForMetaRegion(true).setInternalRegion(true);
+		try {
+			result = cache.createVMRegion(REGION_NAME, factory.create(), internalArgs);
+		} catch(RegionExistsException x){
+			result = cache.getRegion(REGION_NAME);
+		} catch(Exception x){
+			throw new RuntimeException("could not create the " + REGION_NAME + " region", x);
+		}
+
+		return result;
+	}
+
+	/**
+	 * keys in the state region are built from a type, the job name and one or more qualifiers, the 
+	 * job name may not contain the separator (gemtouch rejects it) or the keys of one job would 
+	 * match the prefix of another
+	 */
+	public static String key(String type, String jobName, Object ...qualifiers){
+		StringBuilder result = new StringBuilder(type).append(KEY_SEPARATOR).append(jobName);
+		for(Object q : qualifiers) result.append(KEY_SEPARATOR).append(q);
+		return result.toString();
+	}
+
+	public static String keyPrefix(String type, String jobName){
+		return type + KEY_SEPARATOR + jobName + KEY_SEPARATOR;
+	}
+}
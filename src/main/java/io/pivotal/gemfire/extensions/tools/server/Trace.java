@@ -1,5 +1,8 @@
 package io.pivotal.gemfire.extensions.tools.server;
 
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import java.io.IOException;
 
 import org.apache.geode.cache.CacheFactory;
 import org.apache.geode.cache.CacheListener;
@@ -9,7 +12,9 @@ import org.apache.geode.cache.execute.Function;
 import org.apache.geode.cache.execute.FunctionContext;
 
 /**
- * optionally takes a list of region names
+ * takes a TraceArgs or, from older clients, a region name.  Installs a TraceCacheListener or, in
+ * HOT_KEYS mode, a HotKeyListener or, in WAN_LAG mode, a WanLagListener.  A region can have one of
+ * each.
  * 
  * 
  * @author wmay
@@ -22,7 +27,15 @@ public class Trace implements Function {
 	
 	@Override
 	public void execute(FunctionContext ctx) {
-		String regionName = (String) ctx.getArguments();
+		// older clients send just the region name
+		TraceArgs args;
+		if (ctx.getArguments() instanceof TraceArgs){
+			args = (TraceArgs) ctx.getArguments();
+		} else {
+			args = new TraceArgs();
+			args.setRegionName((String) ctx.getArguments());
+		}
+		String regionName = args.getRegionName();
 		
 		Region region = CacheFactory.getAnyInstance().getRegion(regionName);
 		if (region == null){
@@ -30,19 +43,60 @@ public class Trace implements Function {
 		}
 		
 		String result = null;
+		String memberName = CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();
+		TraceArgs.Mode mode = args.getMode() == null ? TraceArgs.Mode.EVENTS : args.getMode();
+		
+		Class<?> listenerClass;
+		String kind;
+		switch(mode){
+		case HOT_KEYS:
+			listenerClass = HotKeyListener.class;
+			kind = "hot key listener";
+			break;
+		case WAN_LAG:
+			listenerClass = WanLagListener.class;
+			kind = "WAN lag listener";
+			break;
+		default:
+			listenerClass = TraceCacheListener.class;
+			kind = "trace listener";
+		}
 		
 		RegionAttributes attrs = region.getAttributes();
 		for (CacheListener listener : attrs.getCacheListeners()){
-			if (listener instanceof TraceCacheListener){
-				result = "trace listener already present on " + regionName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();				
+			// streams have listeners of their own, see TraceStream
+			if (listenerClass.isInstance(listener) && !(listener instanceof TraceCacheListener && ((TraceCacheListener) listener).isStreaming())){
+				result = kind + " already present on " + regionName + " in " + memberName;				
 				break;
 			}
 		}
 		
 		if (result == null){
-			CacheListener l = new TraceCacheListener(regionName);
+			CacheListener l;
+			String description;
+			switch(mode){
+			case HOT_KEYS:
+				HotKeyListener hotKeyListener = new HotKeyListener(args);
+				description = hotKeyListener.describe();
+				l = hotKeyListener;
+				break;
+			case WAN_LAG:
+				WanLagListener wanLagListener = new WanLagListener(args);
+				description = wanLagListener.describe();
+				l = wanLagListener;
+				break;
+			default:
+				TraceCacheListener traceListener;
+				try {
+					traceListener = new TraceCacheListener(args);
+				} catch(IOException x){
+					throw new RuntimeException("could not open the trace journal for " + regionName + " in " + args.getJournalDir(), x);
+				}
+				description = traceListener.describe();
+				l = traceListener;
+			}
 			region.getAttributesMutator().addCacheListener(l);
-			result = "trace listener installed  on " + regionName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();				
+			result = kind + " installed  on " + regionName + " in " + memberName + " (" + description + ")";
 		}
 
 		ctx.getResultSender().lastResult(result);
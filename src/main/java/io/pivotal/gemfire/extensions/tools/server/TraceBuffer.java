@@ -0,0 +1,219 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import org.apache.geode.distributed.DistributedMember;
+
+/**
+ * A bounded ring of trace events, filled by the threads delivering cache events and emptied by a
+ * single daemon thread that hands them to a Sink.
+ *
+ * The slots are allocated up front and an event is a few array writes, so adding one costs the
+ * delivering thread no allocation, formatting or I/O.  Producers claim a slot by advancing the
+ * tail and publish it by writing its sequence number, which the writer thread waits for before
+ * reading the slot, so events are written in the order their slots were claimed.
+ *
+ * When the ring is full an event is dropped and counted or, with WhenFull.BLOCK, the producer
+ * waits for the writer thread to make room.  An exception from the sink loses what it was given
+ * but does not stop the writer thread.  Should the thread stop anyway every event is dropped from
+ * then on, so a producer never waits for room that will not be made.
+ */
+class TraceBuffer {
+	/**
+	 * receives the events, always on the writer thread
+	 */
+	interface Sink {
+		/**
+		 * @param member where the event originated, may be null
+		 * @param valueSize the serialized size of the new value, -1 if there is none or it is not known
+		 */
+		void write(TraceCacheListener.Op op, Object key, DistributedMember member, int valueSize, long timestamp);
+
+		/**
+		 * called when the ring is empty and when events have been dropped since the last call
+		 *
+		 * @param dropped the number of events dropped since the last call
+		 */
+		void flush(long dropped);
+
+		/**
+		 * called once the last event has been written
+		 */
+		void close();
+	}
+
+	private static long IDLE_PARK_NS = 1000000l;
+	private static long FULL_PARK_NS = 50000l;
+	private static long DROP_REPORT_MS = 1000l;
+
+	private final int mask;
+	private final TraceCacheListener.Op []ops;
+	private final Object []keys;
+	private final DistributedMember []members;
+	private final int []valueSizes;
+	private final long []timestamps;
+
+	// the sequence number + 1 of the event in each slot, once it can be read
+	private final AtomicLongArray published;
+
+	private final AtomicLong tail = new AtomicLong(0l);
+	private volatile long head = 0l;
+
+	private final AtomicLong dropped = new AtomicLong(0l);
+	private volatile long written = 0l;
+
+	private final TraceArgs.WhenFull whenFull;
+	private final Sink sink;
+	private final Thread writer;
+	private volatile boolean closed = false;
+	private volatile boolean writing = true;
+
+	TraceBuffer(String regionName, int size, TraceArgs.WhenFull whenFull, Sink sink){
+		int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+		this.mask = capacity - 1;
+		this.ops = new TraceCacheListener.Op[capacity];
+		this.keys = new Object[capacity];
+		this.members = new DistributedMember[capacity];
+		this.valueSizes = new int[capacity];
+		this.timestamps = new long[capacity];
+		this.published = new AtomicLongArray(capacity);
+		this.whenFull = whenFull;
+		this.sink = sink;
+
+		writer = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				try {
+					drain();
+				} finally {
+					writing = false;
+				}
+			}
+		}, "trace writer for " + regionName);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return false if the event was dropped
+	 */
+	boolean add(TraceCacheListener.Op op, Object key, DistributedMember member, int valueSize, long timestamp){
+		long seq;
+		for(;;){
+			if (closed) return false;  // RETURN
+			if (!writing){
+				dropped.incrementAndGet();
+				return false;  // RETURN - the writer thread has died, nothing will make room
+			}
+
+			seq = tail.get();
+			if (seq - head > mask){
+				if (whenFull == TraceArgs.WhenFull.DROP){
+					dropped.incrementAndGet();
+					return false;  // RETURN
+				}
+				LockSupport.parkNanos(FULL_PARK_NS);
+			} else if (tail.compareAndSet(seq, seq + 1)){
+				break;  // BREAK
+			}
+		}
+
+		int slot = (int) (seq & mask);
+		ops[slot] = op;
+		keys[slot] = key;
+		members[slot] = member;
+		valueSizes[slot] = valueSize;
+		timestamps[slot] = timestamp;
+		published.lazySet(slot, seq + 1);
+		return true;
+	}
+
+	/**
+	 * writes the events already in the ring and stops the writer thread
+	 */
+	void close(){
+		closed = true;
+		try {
+			writer.join();
+		} catch(InterruptedException x){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	int getCapacity(){
+		return mask + 1;
+	}
+
+	long getTraced(){
+		return tail.get();
+	}
+
+	long getDropped(){
+		return dropped.get();
+	}
+
+	long getWritten(){
+		return written;
+	}
+
+	private void drain(){
+		long reportedDrops = 0l;
+		long lastReport = System.currentTimeMillis();
+		for(;;){
+			long seq = head;
+			int slot = (int) (seq & mask);
+			if (published.get(slot) == seq + 1){
+				TraceCacheListener.Op op = ops[slot];
+				Object key = keys[slot];
+				DistributedMember member = members[slot];
+				int valueSize = valueSizes[slot];
+				long timestamp = timestamps[slot];
+				keys[slot] = null;
+				members[slot] = null;
+				head = seq + 1;
+
+				try {
+					sink.write(op, key, member, valueSize, timestamp);
+				} catch(RuntimeException x){
+					// the event is lost but the writer thread must carry on
+				}
+				written = seq + 1;
+
+				long drops = dropped.get();
+				if (drops > reportedDrops && System.currentTimeMillis() - lastReport >= DROP_REPORT_MS){
+					flush(drops - reportedDrops);
+					reportedDrops = drops;
+					lastReport = System.currentTimeMillis();
+				}
+				continue;
+			}
+
+			// empty, or the next slot has been claimed but not yet filled
+			long drops = dropped.get();
+			flush(drops - reportedDrops);
+			reportedDrops = drops;
+			if (closed && seq == tail.get()){
+				try {
+					sink.close();
+				} catch(RuntimeException x){
+					// nothing more to write
+				}
+				return;  // RETURN
+			}
+
+			LockSupport.parkNanos(IDLE_PARK_NS);
+		}
+	}
+
+	private void flush(long drops){
+		try {
+			sink.flush(drops);
+		} catch(RuntimeException x){
+			// what the sink had buffered is lost but the writer thread must carry on
+		}
+	}
+}
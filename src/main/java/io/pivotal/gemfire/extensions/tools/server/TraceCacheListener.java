@@ -1,49 +1,104 @@
 package io.pivotal.gemfire.extensions.tools.server;
 
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.geode.LogWriter;
-import org.apache.geode.cache.CacheEvent;
 import org.apache.geode.cache.CacheFactory;
 import org.apache.geode.cache.CacheListener;
 import org.apache.geode.cache.EntryEvent;
 import org.apache.geode.cache.RegionEvent;
 import org.apache.geode.distributed.DistributedMember;
+import org.apache.geode.internal.cache.CachedDeserializable;
+import org.apache.geode.internal.cache.EntryEventImpl;
 import org.apache.geode.pdx.JSONFormatter;
 import org.apache.geode.pdx.PdxInstance;
 
-
+/**
+ * Records the events of a region in a TraceBuffer, to be formatted and logged, appended to a
+ * binary journal (see TraceJournalWriter) or streamed to a client (see TraceStreamSink) by its
+ * writer thread, so that the thread delivering the event only pays for putting a reference to the
+ * key into a preallocated slot.  Events are first checked against the filters given, if any, see
+ * TraceFilter.
+ */
 public class TraceCacheListener implements CacheListener<Object, Object> {
 
+	// the order is part of the trace journal format, add new operations at the end
+	public enum Op {
+		CREATE("created key"), UPDATE("updated key"), DESTROY("destroyed key"), INVALIDATE("invalidated key"),
+		CLEAR("cleared region"), REGION_DESTROY("destroyed region"), REGION_INVALIDATE("invalidated region");
+
+		private String verb;
+
+		private Op(String verb){
+			this.verb = verb;
+		}
+	}
+
 	private LogWriter log;
 	private String regionName;
-	
-	
-	public TraceCacheListener(String regionName){
+	private TraceArgs.WhenFull whenFull;
+	private TraceBuffer buffer;
+	private File journalDir = null;
+	private TraceFilter filter;
+	private boolean streaming = false;
+
+	public TraceCacheListener(TraceArgs args) throws IOException {
 		log = CacheFactory.getAnyInstance().getLogger();
-		this.regionName = regionName;
+		this.regionName = args.getRegionName();
+		this.whenFull = args.getWhenFull();
+		this.filter = TraceFilter.create(args);
+
+		TraceBuffer.Sink sink;
+		if (args.getJournalDir() == null){
+			sink = new LogSink();
+		} else {
+			DistributedMember self = CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember();
+			journalDir = new File(args.getJournalDir()).getAbsoluteFile();
+			sink = new TraceJournalWriter(journalDir, self.getName() == null || self.getName().length() == 0 ? self.getId() : self.getName(), regionName,
+					args.getJournalSegmentSize() * 1024l * 1024l, args.getJournalSegments());
+		}
+		this.buffer = new TraceBuffer(regionName, args.getBufferSize(), whenFull, sink);
 	}
-	
+
+	/**
+	 * streams the events to a client, dropping them when the buffer is full whatever args says so
+	 * that a slow client cannot hold up the region
+	 */
+	TraceCacheListener(TraceArgs args, TraceStreamSink sink){
+		log = CacheFactory.getAnyInstance().getLogger();
+		this.regionName = args.getRegionName();
+		this.whenFull = TraceArgs.WhenFull.DROP;
+		this.filter = TraceFilter.create(args);
+		this.streaming = true;
+		this.buffer = new TraceBuffer(regionName, args.getBufferSize(), whenFull, sink);
+	}
+
 	@Override
 	public void close() {
+		buffer.close();
 	}
 
 	@Override
 	public void afterCreate(EntryEvent<Object, Object> entryEvent) {
-		message("created key " +  format(entryEvent.getKey()) + " in " + regionName , entryEvent );
+		record(Op.CREATE, entryEvent);
 	}
 
 	@Override
 	public void afterDestroy(EntryEvent<Object, Object> entryEvent) {
-		message("destroyed key " +  format(entryEvent.getKey()) + " in " + regionName  , entryEvent );
+		record(Op.DESTROY, entryEvent);
 	}
 
 	@Override
 	public void afterInvalidate(EntryEvent<Object, Object> entryEvent) {
-		message("invalidated key " +  format(entryEvent.getKey()) + " in " + regionName  , entryEvent );
+		record(Op.INVALIDATE, entryEvent);
 	}
 
 	@Override
 	public void afterRegionClear(RegionEvent<Object, Object> regionEvent) {
-		message("cleared region " + regionName, regionEvent);
+		buffer.add(Op.CLEAR, null, regionEvent.getDistributedMember(), -1, System.currentTimeMillis());
 	}
 
 	@Override
@@ -52,13 +107,13 @@ public class TraceCacheListener implements CacheListener<Object, Object> {
 	}
 
 	@Override
-	public void afterRegionDestroy(RegionEvent<Object, Object> regionEvent) {		
-		message("destroyed region " + regionName, regionEvent);
+	public void afterRegionDestroy(RegionEvent<Object, Object> regionEvent) {
+		buffer.add(Op.REGION_DESTROY, null, regionEvent.getDistributedMember(), -1, System.currentTimeMillis());
 	}
 
 	@Override
 	public void afterRegionInvalidate(RegionEvent<Object, Object> regionEvent) {
-		message("invalidated region " + regionName, regionEvent);
+		buffer.add(Op.REGION_INVALIDATE, null, regionEvent.getDistributedMember(), -1, System.currentTimeMillis());
 	}
 
 	@Override
@@ -68,19 +123,61 @@ public class TraceCacheListener implements CacheListener<Object, Object> {
 
 	@Override
 	public void afterUpdate(EntryEvent<Object, Object> entryEvent) {
-		message("updated key " +  format(entryEvent.getKey()) + " in " + regionName  , entryEvent );
+		record(Op.UPDATE, entryEvent);
+	}
+
+	private void record(Op op, EntryEvent<Object, Object> entryEvent){
+		if (filter != null && !filter.accepts(entryEvent)) return;  // RETURN
+
+		buffer.add(op, entryEvent.getKey(), entryEvent.getDistributedMember(), valueSize(entryEvent), System.currentTimeMillis());
+	}
+
+	/**
+	 * @return the number of events recorded, not counting those dropped or filtered out
+	 */
+	public long getTraced(){
+		return buffer.getTraced();
+	}
+
+	/**
+	 * @return the number of events dropped because the buffer was full
+	 */
+	public long getDropped(){
+		return buffer.getDropped();
+	}
+
+	/**
+	 * @return the number of events recorded that are still waiting to be written
+	 */
+	public long getBacklog(){
+		return buffer.getTraced() - buffer.getWritten();
 	}
 
-	private void message(String msg, CacheEvent event){
-		DistributedMember member = event.getDistributedMember();
-		log.info("TRACE: " +  msg);
+	/**
+	 * @return true if the events are streamed to a client by TraceStream
+	 */
+	public boolean isStreaming(){
+		return streaming;
+	}
+
+	public String describe(){
+		return "buffer of " + buffer.getCapacity() + " events, " + (whenFull == TraceArgs.WhenFull.DROP ? "dropping" : "blocking") + " when full, "
+				+ (streaming ? "streaming to the client" : journalDir == null ? "writing to the log" : "journal in " + journalDir) + (filter == null ? "" : ", " + filter.describe());
+	}
+
+	// the size of the new value as stored, if it is stored serialized
+	private int valueSize(EntryEvent<Object, Object> entryEvent){
+		if (!(entryEvent instanceof EntryEventImpl)) return -1;  // RETURN
+
+		Object val = ((EntryEventImpl) entryEvent).getRawNewValue();
+		if (val instanceof CachedDeserializable || val instanceof byte[]) return (int) Touch.sizeOf(val);  // RETURN
+		return -1;
 	}
-	
-	
-	private String format(Object obj){
+
+	static String format(Object obj){
 		if (obj instanceof PdxInstance){
 			return JSONFormatter.toJSON((PdxInstance) obj);
-		} else{ 
+		} else{
 			try {
 				return obj.toString();
 			} catch(Exception x){
@@ -88,4 +185,25 @@ public class TraceCacheListener implements CacheListener<Object, Object> {
 			}
 		}
 	}
+
+	// the events as they have always been logged, one line each
+	private class LogSink implements TraceBuffer.Sink {
+		@Override
+		public void write(Op op, Object key, DistributedMember member, int valueSize, long timestamp) {
+			if (key == null){
+				log.info("TRACE: " + op.verb + " " + regionName);
+			} else {
+				log.info("TRACE: " + op.verb + " " + format(key) + " in " + regionName);
+			}
+		}
+
+		@Override
+		public void flush(long dropped) {
+			if (dropped > 0) log.warning("TRACE: dropped " + dropped + " events on " + regionName + " because the trace buffer was full");
+		}
+
+		@Override
+		public void close() {
+		}
+	}
 }
@@ -0,0 +1,163 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.internal.cache.CachedDeserializable;
+import org.apache.geode.internal.cache.EntryEventImpl;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.serialization.DSCODE;
+import org.apache.geode.internal.util.BlobHelper;
+import org.apache.geode.pdx.PdxInstance;
+
+/**
+ * Decides which entry events of a region are traced, on the thread delivering the event, before
+ * anything is recorded.  An event is traced if it passes every filter that has been given:
+ *
+ * keys - the key is one of the given keys.  Each key is also looked up as an Integer and a Long
+ * if it parses as one, so for String, Integer and Long keys this is a hash lookup.  Keys of other
+ * types are compared by their toString().
+ *
+ * key prefix, key regex - the key, or the toString() of a key that is not a String, starts with
+ * or matches the given text.
+ *
+ * sample rate - the key is one of the given fraction of all keys, chosen by hash code, so every
+ * event of a sampled key is traced.
+ *
+ * value field - the new value is a PDX instance with a field of the given name whose toString()
+ * is the given text.  The value is deserialized as a PdxInstance, without touching the stored
+ * copy, which makes this the most expensive filter and so the last one tried.  Events without a
+ * new value, like destroys, do not pass.
+ *
+ * Region events, clear and destroy, are always traced.
+ */
+class TraceFilter {
+	private Set<Object> keys = null;
+	private String keyPrefix;
+	private Pattern keyRegex = null;
+	private double sampleRate;
+	private int sampleThreshold;
+	private boolean sampled;
+	private String fieldName = null;
+	private String fieldValue = null;
+	private InternalCache cache = null;
+
+	TraceFilter(TraceArgs args){
+		if (args.getKeys() != null && !args.getKeys().isEmpty()){
+			keys = new HashSet<Object>();
+			for(String key : args.getKeys()){
+				keys.add(key);
+				try {
+					keys.add(Integer.valueOf(key));
+				} catch(NumberFormatException x){
+					// not an int key
+				}
+				try {
+					keys.add(Long.valueOf(key));
+				} catch(NumberFormatException x){
+					// not a long key
+				}
+			}
+		}
+
+		keyPrefix = args.getKeyPrefix();
+		if (args.getKeyRegex() != null) keyRegex = Pattern.compile(args.getKeyRegex());
+
+		sampleRate = args.getSampleRate();
+		sampled = sampleRate < 1.0d;
+		sampleThreshold = (int) (sampleRate * Integer.MAX_VALUE);
+
+		if (args.getValueField() != null){
+			int eq = args.getValueField().indexOf('=');
+			fieldName = args.getValueField().substring(0, eq);
+			fieldValue = args.getValueField().substring(eq + 1);
+			cache = (InternalCache) CacheFactory.getAnyInstance();
+		}
+	}
+
+	/**
+	 * @return null if args has no filters, so events need not be checked at all
+	 */
+	static TraceFilter create(TraceArgs args){
+		boolean filtered = (args.getKeys() != null && !args.getKeys().isEmpty()) || args.getKeyPrefix() != null || args.getKeyRegex() != null
+				|| args.getSampleRate() < 1.0d || args.getValueField() != null;
+		return filtered ? new TraceFilter(args) : null;
+	}
+
+	boolean accepts(EntryEvent<Object, Object> event){
+		Object key = event.getKey();
+		if (keys != null && !keys.contains(key) && (isSimpleKey(key) || !keys.contains(key.toString()))) return false;  // RETURN
+		if (keyPrefix != null && !text(key).startsWith(keyPrefix)) return false;  // RETURN
+		if (keyRegex != null && !keyRegex.matcher(text(key)).matches()) return false;  // RETURN
+		if (sampled && (mix(key.hashCode()) & Integer.MAX_VALUE) >= sampleThreshold) return false;  // RETURN
+		if (fieldName != null && !fieldMatches(event)) return false;  // RETURN
+		return true;
+	}
+
+	String describe(){
+		List<String> filters = new ArrayList<String>();
+		if (keys != null) filters.add("keys");
+		if (keyPrefix != null) filters.add("key prefix " + keyPrefix);
+		if (keyRegex != null) filters.add("key regex " + keyRegex.pattern());
+		if (sampled) filters.add("sampling " + sampleRate + " of keys");
+		if (fieldName != null) filters.add("value field " + fieldName + "=" + fieldValue);
+		return String.join(", ", filters);
+	}
+
+	private boolean fieldMatches(EntryEvent<Object, Object> event){
+		if (!(event instanceof EntryEventImpl)) return false;  // RETURN
+
+		Object val = ((EntryEventImpl) event).getRawNewValue();
+		PdxInstance pdx = null;
+		if (val instanceof PdxInstance){
+			pdx = (PdxInstance) val;
+		} else if (val instanceof CachedDeserializable){
+			byte []bytes = ((CachedDeserializable) val).getSerializedValue();
+			if (bytes.length == 0 || bytes[0] != DSCODE.PDX.toByte()) return false;  // RETURN
+			pdx = readSerialized(bytes);
+		}
+		if (pdx == null || !pdx.hasField(fieldName)) return false;  // RETURN
+
+		Object field = pdx.getField(fieldName);
+		return field != null && field.toString().equals(fieldValue);
+	}
+
+	// deserializes a PDX value as a PdxInstance, whatever the cache's read-serialized setting
+	private PdxInstance readSerialized(byte []bytes){
+		Boolean previous = cache.getPdxReadSerializedOverride();
+		cache.setPdxReadSerializedOverride(true);
+		try {
+			Object result = BlobHelper.deserializeBlob(bytes);
+			return result instanceof PdxInstance ? (PdxInstance) result : null;
+		} catch(Exception x){
+			return null;
+		} finally {
+			cache.setPdxReadSerializedOverride(previous != null && previous.booleanValue());
+		}
+	}
+
+	private static boolean isSimpleKey(Object key){
+		return key instanceof String || key instanceof Integer || key instanceof Long;
+	}
+
+	private static String text(Object key){
+		return key instanceof String ? (String) key : String.valueOf(key);
+	}
+
+	// spreads the bits of weak hash codes, like small Integers, before sampling on them, and for the 
+	// columns of HotKeySketch
+	static int mix(int h){
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+}
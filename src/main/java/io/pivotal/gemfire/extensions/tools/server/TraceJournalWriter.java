@@ -0,0 +1,205 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.TraceJournal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.distributed.DistributedMember;
+
+/**
+ * Appends trace events to a journal of memory mapped segment files, see TraceJournal for the
+ * format.  Segments are named member-region.sequence.trj and once there are more than the
+ * configured number the oldest is deleted.  A member that is restarted carries on after its
+ * last segment.
+ *
+ * Records reach the file when the operating system writes back the mapped pages, so they
+ * survive the member crashing but not the machine.  A segment is forced to disk when it is
+ * full and when the journal is closed.
+ *
+ * Only the trace writer thread of the region uses an instance.
+ */
+public class TraceJournalWriter implements TraceBuffer.Sink {
+	private static String SEQUENCE_FORMAT = "%06d";
+	private static int MEMBER_RECORD_SIZE = 1 + 2 + 2 + TraceJournal.MAX_NAME_BYTES;
+
+	private File dir;
+	private String memberName;
+	private String regionName;
+	private String prefix;
+	private long segmentSize;
+	private int maxSegments;
+
+	private int sequence;
+	private MappedByteBuffer segment;
+	private boolean empty;
+	private Map<DistributedMember, Short> memberIds = new HashMap<DistributedMember, Short>();
+	private boolean failed = false;
+
+	/**
+	 * @param segmentSize the size of each segment file in bytes
+	 * @param maxSegments the number of segments kept
+	 */
+	public TraceJournalWriter(File dir, String memberName, String regionName, long segmentSize, int maxSegments) throws IOException {
+		this.dir = dir;
+		this.memberName = memberName;
+		this.regionName = regionName;
+		this.prefix = (memberName + "-" + regionName.substring(1)).replaceAll("[^A-Za-z0-9._-]", "_") + ".";
+		// room for at least the largest event and the member it came from
+		this.segmentSize = Math.max(segmentSize, TraceJournal.HEADER_SIZE + MEMBER_RECORD_SIZE + TraceJournal.EVENT_OVERHEAD + TraceJournal.MAX_KEY_BYTES + 1);
+		this.maxSegments = Math.max(maxSegments, 1);
+
+		dir.mkdirs();
+		if (!dir.isDirectory()) throw new IOException("could not create trace journal directory " + dir.getAbsolutePath());
+
+		this.sequence = 0;
+		for(File f : segments()) sequence = Math.max(sequence, sequenceOf(f));
+		nextSegment();
+	}
+
+	@Override
+	public void write(TraceCacheListener.Op op, Object key, DistributedMember member, int valueSize, long timestamp) {
+		if (failed) return;  // RETURN
+
+		byte keyType = TraceJournal.keyType(key);
+		byte []keyBytes = key == null ? new byte[0] : TraceJournal.keyBytes(key);
+		int size = TraceJournal.EVENT_OVERHEAD + keyBytes.length;
+		if (member != null && !memberIds.containsKey(member)) size += MEMBER_RECORD_SIZE;
+		reserve(size);
+		if (failed) return;  // RETURN
+
+		short memberId = memberId(member);
+
+		int start = segment.position();
+		segment.position(start + 1);
+		segment.putLong(timestamp);
+		segment.putShort(memberId);
+		segment.putInt(valueSize);
+		segment.put(keyType);
+		segment.putInt(keyBytes.length);
+		segment.put(keyBytes);
+		commit(start, TraceJournal.type(op), timestamp);
+	}
+
+	@Override
+	public void flush(long dropped) {
+		if (dropped == 0 || failed) return;  // RETURN
+
+		reserve(1 + 8 + 8);
+		if (failed) return;  // RETURN
+
+		long now = System.currentTimeMillis();
+		int start = segment.position();
+		segment.position(start + 1);
+		segment.putLong(now);
+		segment.putLong(dropped);
+		commit(start, TraceJournal.DROPPED, now);
+	}
+
+	@Override
+	public void close() {
+		if (segment != null) segment.force();
+		segment = null;
+	}
+
+	// the type byte goes in last, once the rest of the record can be read
+	private void commit(int start, byte type, long timestamp){
+		VarHandle.storeStoreFence();
+		segment.put(start, type);
+		if (empty) segment.putLong(TraceJournal.FIRST_TIMESTAMP_OFFSET, timestamp);
+		segment.putLong(TraceJournal.LAST_TIMESTAMP_OFFSET, timestamp);
+		empty = false;
+	}
+
+	private short memberId(DistributedMember member){
+		if (member == null) return 0;  // RETURN
+
+		Short id = memberIds.get(member);
+		if (id != null) return id.shortValue();  // RETURN
+
+		// ids are per segment, the room for the record has been reserved
+		if (memberIds.size() == Short.MAX_VALUE) return 0;  // RETURN
+
+		String name = member.getName() == null || member.getName().length() == 0 ? member.getId() : member.getName();
+		id = Short.valueOf((short) (memberIds.size() + 1));
+		int start = segment.position();
+		segment.position(start + 1);
+		segment.putShort(id.shortValue());
+		TraceJournal.putName(segment, name);
+		VarHandle.storeStoreFence();
+		segment.put(start, TraceJournal.MEMBER);
+		memberIds.put(member, id);
+		return id.shortValue();
+	}
+
+	// makes room for a record of the given size, in a new segment if need be
+	private void reserve(int size){
+		// and a zero type byte to end the records
+		if (segment.remaining() < size + 1) nextSegment();
+	}
+
+	private void nextSegment(){
+		if (segment != null) segment.force();
+		segment = null;
+		memberIds.clear();
+		++sequence;
+
+		File file = new File(dir, prefix + String.format(SEQUENCE_FORMAT, sequence) + TraceJournal.SUFFIX);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.setLength(0);
+			raf.setLength(segmentSize);
+			segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		} catch(IOException x){
+			// trace is a diagnostic, it must not take the member down with it
+			CacheFactory.getAnyInstance().getLogger().error("could not create trace journal segment " + file.getAbsolutePath() + ", tracing of " + regionName + " stops", x);
+			failed = true;
+			return;  // RETURN
+		}
+
+		segment.putInt(TraceJournal.MAGIC);
+		segment.putInt(TraceJournal.VERSION);
+		segment.putLong(0l);
+		segment.putLong(0l);
+		TraceJournal.putName(segment, memberName);
+		TraceJournal.putName(segment, regionName);
+		segment.position(TraceJournal.HEADER_SIZE);
+		empty = true;
+
+		File []segments = segments();
+		for(int i=0; i < segments.length - maxSegments; ++i) segments[i].delete();
+	}
+
+	// the segments of this region on this member, oldest first
+	private File []segments(){
+		File []result = dir.listFiles(new FilenameFilter(){
+			@Override
+			public boolean accept(File d, String name) {
+				return name.startsWith(prefix) && name.endsWith(TraceJournal.SUFFIX) && name.substring(prefix.length(), name.length() - TraceJournal.SUFFIX.length()).matches("[0-9]+");
+			}
+		});
+		if (result == null) return new File[0];  // RETURN
+
+		Arrays.sort(result, new Comparator<File>(){
+			@Override
+			public int compare(File a, File b) {
+				return Integer.compare(sequenceOf(a), sequenceOf(b));
+			}
+		});
+		return result;
+	}
+
+	private int sequenceOf(File segment){
+		String name = segment.getName();
+		return Integer.parseInt(name.substring(prefix.length(), name.length() - TraceJournal.SUFFIX.length()));
+	}
+}
@@ -0,0 +1,78 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.ResultSender;
+
+/**
+ * takes a TraceArgs, installs a TraceCacheListener that streams the events of the region back as
+ * results of this function, see TraceStreamSink, and removes it when the stream ends: when the
+ * client goes away, when the listener is removed by Untrace or when the stream duration in the
+ * TraceArgs is up.  The last result is a message saying how many events were streamed.
+ */
+
+public class TraceStream implements Function {
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		TraceArgs args = (TraceArgs) ctx.getArguments();
+		String regionName = args.getRegionName();
+		
+		Region region = CacheFactory.getAnyInstance().getRegion(regionName);
+		if (region == null){
+			throw new RuntimeException("region not found: " + regionName);
+		}
+		
+		String memberName = CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();
+		ResultSender<Object> sender = ctx.getResultSender();
+		TraceStreamSink sink = new TraceStreamSink(memberName, regionName, sender);
+		TraceCacheListener l = new TraceCacheListener(args, sink);
+		region.getAttributesMutator().addCacheListener(l);
+		
+		String how;
+		try {
+			how = sink.awaitEnd(args.getStreamSeconds() * 1000l) ? "was stopped" : "finished after " + args.getStreamSeconds() + "s";
+		} catch(InterruptedException x){
+			Thread.currentThread().interrupt();
+			how = "interrupted";
+		} finally {
+			// closing the listener sends what it still holds, unless the client has gone
+			if (!region.isDestroyed()) region.getAttributesMutator().removeCacheListener(l);
+		}
+		
+		if (sink.isFailed()) return;  // RETURN - there is no one to tell
+		
+		try {
+			sender.lastResult("trace stream of " + regionName + " in " + memberName + " " + how + " after streaming " + sink.getSentEvents() + " events in " 
+					+ sink.getSentBytes() / 1024 + "KB, " + l.getDropped() + " dropped");
+		} catch(Exception x){
+			// the client went away at the last moment
+		}
+	}
+
+	
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.Trace.STREAM_NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return false;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return false;
+	}
+
+}
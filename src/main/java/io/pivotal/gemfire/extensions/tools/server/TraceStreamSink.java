@@ -0,0 +1,175 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.TraceChunk;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.geode.cache.execute.ResultSender;
+import org.apache.geode.distributed.DistributedMember;
+
+/**
+ * Streams trace events to a client as the results of a function, see TraceStream, in compressed
+ * TraceChunks.
+ *
+ * The sink runs on the writer thread of its TraceBuffer, so sending a chunk to a slow client only
+ * holds up that thread.  The buffer fills up and, since a streaming listener always drops events
+ * when its buffer is full, the threads delivering cache events are never held up, the events
+ * that did not fit are counted and the count is sent with the next chunk.
+ *
+ * Events are batched for up to BATCH_MS, or until a chunk has MAX_CHUNK_EVENTS events or
+ * MAX_CHUNK_BYTES bytes of text.  When there is nothing to send a heartbeat is sent every
+ * HEARTBEAT_MS.  The stream ends when a chunk cannot be sent, because the client has gone, or when
+ * the sink is closed, because the listener was removed.
+ */
+public class TraceStreamSink implements TraceBuffer.Sink {
+	private static long BATCH_MS = 200l;
+	private static long HEARTBEAT_MS = 2000l;
+	private static int MAX_CHUNK_EVENTS = 8192;
+	private static int MAX_CHUNK_BYTES = 512 * 1024;
+
+	private String memberName;
+	private String regionName;
+	private ResultSender<Object> sender;
+
+	private StringBuilder lines = new StringBuilder(64 * 1024);
+	private int events = 0;
+	private long dropped = 0l;
+	private long batchStart = 0l;
+	private long lastSent;
+	private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private byte []deflated = new byte[64 * 1024];
+
+	private volatile boolean failed = false;
+	private volatile long sentEvents = 0l;
+	private volatile long sentBytes = 0l;
+	private CountDownLatch ended = new CountDownLatch(1);
+
+	public TraceStreamSink(String memberName, String regionName, ResultSender<Object> sender){
+		this.memberName = memberName;
+		this.regionName = regionName;
+		this.sender = sender;
+		this.lastSent = System.currentTimeMillis();
+	}
+
+	@Override
+	public void write(TraceCacheListener.Op op, Object key, DistributedMember member, int valueSize, long timestamp) {
+		if (failed) return;  // RETURN
+
+		if (events == 0) batchStart = System.currentTimeMillis();
+		lines.append(timestamp).append('\t').append(op.name()).append('\t');
+		if (key == null){
+			lines.append('-');
+		} else {
+			appendOneLine(TraceCacheListener.format(key));
+		}
+		lines.append('\t');
+		if (member == null){
+			lines.append('-');
+		} else {
+			lines.append(member.getName() == null || member.getName().length() == 0 ? member.getId() : member.getName());
+		}
+		lines.append('\t');
+		if (valueSize < 0){
+			lines.append('-');
+		} else {
+			lines.append(valueSize);
+		}
+		lines.append('\n');
+		++events;
+
+		if (events >= MAX_CHUNK_EVENTS || lines.length() >= MAX_CHUNK_BYTES || System.currentTimeMillis() - batchStart >= BATCH_MS) send();
+	}
+
+	@Override
+	public void flush(long dropped) {
+		if (failed) return;  // RETURN
+
+		this.dropped += dropped;
+		long now = System.currentTimeMillis();
+		if (events > 0 ? now - batchStart >= BATCH_MS : this.dropped > 0 || now - lastSent >= HEARTBEAT_MS) send();
+	}
+
+	@Override
+	public void close() {
+		if (!failed && (events > 0 || dropped > 0)) send();
+		deflater.end();
+		ended.countDown();
+	}
+
+	/**
+	 * waits for the stream to end, because the client has gone or the sink was closed
+	 *
+	 * @param ms how long to wait, 0 to wait for as long as it takes
+	 * @return true if the stream ended, false if the time ran out first
+	 */
+	public boolean awaitEnd(long ms) throws InterruptedException {
+		if (ms <= 0){
+			ended.await();
+			return true;  // RETURN
+		}
+		return ended.await(ms, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return true if the stream ended because a chunk could not be sent
+	 */
+	public boolean isFailed(){
+		return failed;
+	}
+
+	public long getSentEvents(){
+		return sentEvents;
+	}
+
+	/**
+	 * @return the number of compressed bytes sent
+	 */
+	public long getSentBytes(){
+		return sentBytes;
+	}
+
+	private void send(){
+		byte []data = compress(lines);
+		TraceChunk chunk = new TraceChunk(memberName, regionName, data, events, dropped);
+		try {
+			sender.sendResult(chunk);
+			sentEvents += events;
+			sentBytes += data.length;
+		} catch(Exception x){
+			// the client has gone
+			failed = true;
+			ended.countDown();
+		}
+		lines.setLength(0);
+		events = 0;
+		dropped = 0;
+		lastSent = System.currentTimeMillis();
+	}
+
+	private byte[] compress(StringBuilder text){
+		if (text.length() == 0) return new byte[0];  // RETURN
+
+		byte []input = text.toString().getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+		deflater.reset();
+		deflater.setInput(input);
+		deflater.finish();
+		while(!deflater.finished()){
+			int n = deflater.deflate(deflated);
+			out.write(deflated, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	// keys are one field of one line, PDX keys are formatted as JSON over several lines
+	private void appendOneLine(String text){
+		for(int i=0; i < text.length(); ++i){
+			char c = text.charAt(i);
+			lines.append(c == '\n' || c == '\r' || c == '\t' ? ' ' : c);
+		}
+	}
+}
@@ -38,7 +38,7 @@ public class Untrace implements Function {
 		
 		RegionAttributes attrs = region.getAttributes();
 		for (CacheListener listener : attrs.getCacheListeners()){
-			if (listener instanceof TraceCacheListener){
+			if (listener instanceof TraceCacheListener || listener instanceof HotKeyListener || listener instanceof WanLagListener){
 				listenersToRemove.add(listener);
 			}
 		}
@@ -48,10 +48,28 @@ public class Untrace implements Function {
 			result = "trace listener not found on " + regionName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();				
 		} else {
 			AttributesMutator ram = region.getAttributesMutator();
+			long traced = 0, dropped = 0, counted = 0, measured = 0;
+			boolean tracing = false, counting = false, measuring = false;
 			for (CacheListener l : listenersToRemove){
+				// closing the listener writes out what it still holds
 				ram.removeCacheListener(l);
+				if (l instanceof TraceCacheListener){
+					tracing = true;
+					traced += ((TraceCacheListener) l).getTraced();
+					dropped += ((TraceCacheListener) l).getDropped();
+				} else if (l instanceof HotKeyListener){
+					counting = true;
+					counted += ((HotKeyListener) l).getCounted();
+				} else {
+					measuring = true;
+					measured += ((WanLagListener) l).getMeasured();
+				}
 			}
-			result = "trace listener removed from " + regionName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName();							
+			List<String> done = new ArrayList<String>(3);
+			if (tracing) done.add("tracing " + traced + " events, " + dropped + " dropped");
+			if (counting) done.add("counting " + counted + " events for hot keys");
+			if (measuring) done.add("measuring the WAN lag of " + measured + " events");
+			result = "trace listener removed from " + regionName + " in " + CacheFactory.getAnyInstance().getDistributedSystem().getDistributedMember().getName() + " after " + String.join(" and ", done);
 		}
 
 		ctx.getResultSender().lastResult(result);
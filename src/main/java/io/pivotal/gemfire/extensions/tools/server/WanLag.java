@@ -0,0 +1,80 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.CacheListener;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.ResultSender;
+
+/**
+ * optionally takes a region name, returns the WanLagReport of the WanLagListener on that region
+ * or, without a region name, on every region that has one.  Sends a message instead if there are
+ * none.
+ */
+
+public class WanLag implements Function {
+
+	@Override
+	public void execute(FunctionContext ctx) {
+		String regionName = (String) ctx.getArguments();
+		Cache cache = CacheFactory.getAnyInstance();
+		String memberName = cache.getDistributedSystem().getDistributedMember().getName();
+		
+		List<Region<?, ?>> regions = new ArrayList<Region<?, ?>>();
+		if (regionName != null){
+			Region region = cache.getRegion(regionName);
+			if (region == null){
+				throw new RuntimeException("region not found: " + regionName);
+			}
+			regions.add(region);
+		} else {
+			for(Region<?, ?> root : cache.rootRegions()){
+				regions.add(root);
+				regions.addAll(root.subregions(true));
+			}
+		}
+		
+		List<WanLagListener> listeners = new ArrayList<WanLagListener>();
+		for(Region<?, ?> region : regions){
+			for (CacheListener listener : region.getAttributes().getCacheListeners()){
+				if (listener instanceof WanLagListener) listeners.add((WanLagListener) listener);
+			}
+		}
+		
+		ResultSender<Object> sender = ctx.getResultSender();
+		if (listeners.size() == 0){
+			sender.lastResult("WAN lag listener not found on " + (regionName == null ? "any region" : regionName) + " in " + memberName);
+			return;  // RETURN
+		}
+		
+		for(int i=0; i < listeners.size() - 1; ++i) sender.sendResult(listeners.get(i).report(memberName));
+		sender.lastResult(listeners.get(listeners.size() - 1).report(memberName));
+	}
+
+	
+	@Override
+	public String getId() {
+		return io.pivotal.gemfire.extensions.tools.WanLag.NAME;
+	}
+
+	@Override
+	public boolean hasResult() {
+		return true;
+	}
+
+	@Override
+	public boolean isHA() {
+		return true;
+	}
+
+	@Override
+	public boolean optimizeForWrite() {
+		return false;
+	}
+
+}
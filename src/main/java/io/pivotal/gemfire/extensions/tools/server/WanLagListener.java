@@ -0,0 +1,136 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import io.pivotal.gemfire.extensions.tools.LatencyHistogram;
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+import io.pivotal.gemfire.extensions.tools.WanLagReport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.EntryEventImpl;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.KeyInfo;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.PartitionedRegionHelper;
+import org.apache.geode.internal.cache.versions.VersionTag;
+
+/**
+ * Measures how far behind the other sites this one is, from the events of a region that arrive
+ * over a gateway receiver.
+ *
+ * The version tag of such an event carries the id of the site where the operation was done and
+ * the time it was done there.  The lag of the event is the time it is applied here less that
+ * time, and is recorded in a LatencyHistogram for the origin site.  Events done on this site are
+ * ignored.  The lag includes any difference between the clocks of the two sites, an event that
+ * seems to arrive before it was done is counted as ahead and recorded as no lag at all.
+ *
+ * The listener fires on every copy of the entry, but an event is measured only where it is first
+ * applied, so it is counted once and without the time taken to copy it within this site: on the
+ * primary of the bucket for a partitioned region and, for a replicated region, on the member that
+ * received it from the other site.
+ *
+ * An event enqueued by gemtouch --enqueue has the version of the entry it was made from, and so the
+ * time the entry was last written.  Its lag is the age of the entry, not the replication lag.
+ */
+public class WanLagListener extends CacheListenerAdapter<Object, Object> {
+	private String regionName;
+	private int localSiteId;
+	private TraceFilter filter;
+	private ConcurrentHashMap<Integer, LatencyHistogram> lagBySite = new ConcurrentHashMap<Integer, LatencyHistogram>();
+	private AtomicLong ahead = new AtomicLong(0l);
+
+	public WanLagListener(TraceArgs args){
+		this.regionName = args.getRegionName();
+		this.localSiteId = ((InternalCache) CacheFactory.getAnyInstance()).getDistributionManager().getDistributedSystemId();
+		this.filter = TraceFilter.create(args);
+	}
+
+	@Override
+	public void afterCreate(EntryEvent<Object, Object> entryEvent) {
+		record(entryEvent);
+	}
+
+	@Override
+	public void afterUpdate(EntryEvent<Object, Object> entryEvent) {
+		record(entryEvent);
+	}
+
+	@Override
+	public void afterDestroy(EntryEvent<Object, Object> entryEvent) {
+		record(entryEvent);
+	}
+
+	@Override
+	public void afterInvalidate(EntryEvent<Object, Object> entryEvent) {
+		record(entryEvent);
+	}
+
+	private void record(EntryEvent<Object, Object> entryEvent){
+		if (!(entryEvent instanceof EntryEventImpl)) return;  // RETURN
+
+		VersionTag tag = ((EntryEventImpl) entryEvent).getVersionTag();
+		if (tag == null) return;  // RETURN
+
+		int siteId = tag.getDistributedSystemId();
+		if (siteId < 0 || siteId == localSiteId) return;  // RETURN
+
+		if (!isFirstApplied((EntryEventImpl) entryEvent)) return;  // RETURN
+		if (filter != null && !filter.accepts(entryEvent)) return;  // RETURN
+
+		// the cache clock, which versions are stamped with
+		long now = entryEvent.getRegion() instanceof LocalRegion ? ((LocalRegion) entryEvent.getRegion()).cacheTimeMillis() : System.currentTimeMillis();
+		long lagMs = now - tag.getVersionTimeStamp();
+		if (lagMs < 0){
+			ahead.incrementAndGet();
+			lagMs = 0;
+		}
+		histogramFor(siteId).recordNanos(TimeUnit.MILLISECONDS.toNanos(lagMs));
+	}
+
+	private boolean isFirstApplied(EntryEventImpl event){
+		if (!(event.getRegion() instanceof PartitionedRegion)) return !event.isOriginRemote();  // RETURN
+
+		PartitionedRegion pr = (PartitionedRegion) event.getRegion();
+		KeyInfo keyInfo = event.getKeyInfo();
+		int bucketId = keyInfo != null && keyInfo.getBucketId() != KeyInfo.UNKNOWN_BUCKET ? keyInfo.getBucketId() : PartitionedRegionHelper.getHashKey(event);
+		BucketRegion bucket = pr.getDataStore() == null ? null : pr.getDataStore().getLocalBucketById(bucketId);
+		return bucket != null && bucket.getBucketAdvisor().isPrimary();
+	}
+
+	private LatencyHistogram histogramFor(int siteId){
+		LatencyHistogram histogram = lagBySite.get(siteId);
+		if (histogram == null){
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = lagBySite.putIfAbsent(siteId, histogram);
+			if (existing != null) histogram = existing;
+		}
+		return histogram;
+	}
+
+	public WanLagReport report(String memberName){
+		Map<Integer, LatencyHistogram> copies = new HashMap<Integer, LatencyHistogram>();
+		for(Map.Entry<Integer, LatencyHistogram> entry : lagBySite.entrySet()) copies.put(entry.getKey(), entry.getValue().copy());
+		return new WanLagReport(memberName, regionName, copies, ahead.get());
+	}
+
+	/**
+	 * @return the number of events from other sites measured
+	 */
+	public long getMeasured(){
+		long measured = 0;
+		for(LatencyHistogram histogram : lagBySite.values()) measured += histogram.getCount();
+		return measured;
+	}
+
+	public String describe(){
+		return "measuring the lag of events from sites other than " + localSiteId + (filter == null ? "" : ", " + filter.describe());
+	}
+}
@@ -0,0 +1,25 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * names the daemon threads used to work on several buckets of a region at once
+ */
+class WorkerThreadFactory implements ThreadFactory {
+	private String task;
+	private String regionName;
+	private AtomicInteger count = new AtomicInteger(0);
+	
+	public WorkerThreadFactory(String task, String regionName){
+		this.task = task;
+		this.regionName = regionName;
+	}
+	
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, task + " worker " + count.incrementAndGet() + " for " + regionName);
+		t.setDaemon(true);
+		return t;
+	}
+}
@@ -0,0 +1,85 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Compares digests the way GemTouch --compare-with does.
+ */
+public class BucketDigestTest {
+	private static int RANGES = DigestArgs.DEFAULT_KEY_RANGE_COUNT;
+
+	@Test
+	public void identicalDigestsDoNotDiffer() {
+		BucketDigest a = digest(3, hashes(1));
+		BucketDigest b = digest(3, hashes(1));
+		assertEquals(a.getRoot(), b.getRoot());
+		assertTrue(a.differingRanges(b).isEmpty());
+
+		Map<Integer, BucketDigest> local = digests(a, digest(4, hashes(2)));
+		Map<Integer, BucketDigest> remote = digests(b, digest(4, hashes(2)));
+		assertTrue(GemTouch.differences(local, remote).isEmpty());
+	}
+
+	@Test
+	public void findsTheOneRangeThatDiffers() {
+		long []changed = hashes(1);
+		changed[17] += BucketDigest.hash(new byte[]{ 42 });
+		BucketDigest a = digest(3, hashes(1));
+		BucketDigest b = digest(3, changed);
+		assertTrue(a.getRoot() != b.getRoot());
+		assertEquals(Collections.singleton(17), a.differingRanges(b));
+		assertEquals(Collections.singleton(17), b.differingRanges(a));
+
+		Map<Integer, BucketDigest> local = digests(a, digest(4, hashes(2)));
+		Map<Integer, BucketDigest> remote = digests(b, digest(4, hashes(2)));
+		Map<Integer, Set<Integer>> differences = GemTouch.differences(local, remote);
+		assertEquals(Collections.singleton(3), differences.keySet());
+		assertEquals(Collections.singleton(17), differences.get(3));
+	}
+
+	@Test
+	public void aMissingDigestDiffersWhole() {
+		BucketDigest a = digest(3, hashes(1));
+		assertNull(a.differingRanges(null));
+		// computed with another number of ranges
+		assertNull(a.differingRanges(new BucketDigest(3, 10, new long[RANGES / 2])));
+
+		// a bucket or slice missing on either site
+		Map<Integer, BucketDigest> local = digests(a, digest(4, hashes(2)));
+		Map<Integer, BucketDigest> remote = digests(digest(3, hashes(1)), digest(5, hashes(3)));
+		Map<Integer, Set<Integer>> differences = GemTouch.differences(local, remote);
+		assertEquals(new TreeSet<Integer>(Arrays.asList(4, 5)), differences.keySet());
+		assertTrue(differences.containsKey(4));
+		assertNull(differences.get(4));
+		assertTrue(differences.containsKey(5));
+		assertNull(differences.get(5));
+	}
+
+	// range hashes that differ with the seed
+	private static long []hashes(int seed){
+		long []result = new long[RANGES];
+		for(int i=0; i < RANGES; ++i) result[i] = BucketDigest.mix(seed * 1000003l + i);
+		return result;
+	}
+
+	private static BucketDigest digest(int bucketId, long []hashes){
+		return new BucketDigest(bucketId, 1000, hashes);
+	}
+
+	private static Map<Integer, BucketDigest> digests(BucketDigest... digests){
+		Map<Integer, BucketDigest> result = new HashMap<Integer, BucketDigest>();
+		for(BucketDigest digest : digests) result.put(digest.getBucketId(), digest);
+		return result;
+	}
+}
@@ -0,0 +1,138 @@
+package io.pivotal.gemfire.extensions.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.pivotal.gemfire.extensions.tools.server.TraceCacheListener;
+import io.pivotal.gemfire.extensions.tools.server.TraceJournalWriter;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.geode.distributed.DistributedMember;
+import org.apache.geode.distributed.internal.membership.InternalDistributedMember;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writes journals with TraceJournalWriter and reads them back with TraceQuery.
+ */
+public class TraceQueryTest {
+	private static String REGION = "/trace";
+	private static long TIME = 1600000000000l;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsWhatWasWrittenAcrossSegments() throws Exception {
+		File dir = folder.newFolder();
+		DistributedMember origin = new InternalDistributedMember("localhost", 12345);
+
+		// the smallest segment holds a few hundred of these
+		TraceJournalWriter writer = new TraceJournalWriter(dir, "server1", REGION, 0, 100);
+		for(int i=0; i < 2000; ++i){
+			writer.write(TraceCacheListener.Op.UPDATE, "key-" + (i % 100), i % 2 == 0 ? origin : null, i, TIME + i);
+		}
+		writer.write(TraceCacheListener.Op.CREATE, Integer.valueOf(42), origin, -1, TIME + 2000);
+		writer.write(TraceCacheListener.Op.DESTROY, Long.valueOf(1l << 40), null, -1, TIME + 2001);
+		writer.flush(7);
+		writer.close();
+
+		List<File> segments = segments(dir);
+		assertTrue("segments: " + segments.size(), segments.size() > 2);
+
+		TraceQuery.Result all = query(null, segments);
+		assertEquals(2002, all.getRecords());
+		assertEquals(2002, all.getMatched());
+		assertEquals(7, all.getDropped());
+		assertEquals(segments.size(), all.getScannedSegments());
+		assertEquals(2003, all.getMatches().size());
+		String []dropped = all.getMatches().get(2002).getLine().split("\t");
+		assertEquals("DROPPED", dropped[3]);
+		assertEquals("7 events", dropped[4]);
+
+		TraceQuery.Result key = query("key-7", segments);
+		assertEquals(20, key.getMatched());
+		for(TraceQuery.Match match : key.getMatches()){
+			String []fields = match.getLine().split("\t");
+			assertEquals("server1", fields[1]);
+			assertEquals(REGION, fields[2]);
+			assertEquals("UPDATE", fields[3]);
+			assertEquals("key-7", fields[4]);
+			int i = (int) (match.getTimestamp() - TIME);
+			assertEquals(7, i % 100);
+			// the origin is defined again in each segment
+			assertEquals(i % 2 == 0 ? origin.getId() : "-", fields[5]);
+			assertEquals(Integer.toString(i), fields[6]);
+		}
+
+		TraceQuery.Result integer = query("42", segments);
+		assertEquals(1, integer.getMatched());
+		String []fields = integer.getMatches().get(0).getLine().split("\t");
+		assertEquals("CREATE", fields[3]);
+		assertEquals(origin.getId(), fields[5]);
+		assertEquals("-", fields[6]);
+
+		TraceQuery.Result along = query(Long.toString(1l << 40), segments);
+		assertEquals(1, along.getMatched());
+		assertEquals("DESTROY", along.getMatches().get(0).getLine().split("\t")[3]);
+
+		assertEquals(0, query("key-100", segments).getMatched());
+	}
+
+	@Test
+	public void keepsTheNewestSegments() throws Exception {
+		File dir = folder.newFolder();
+		TraceJournalWriter writer = new TraceJournalWriter(dir, "server1", REGION, 0, 2);
+		for(int i=0; i < 2000; ++i) writer.write(TraceCacheListener.Op.CREATE, "key-" + i, null, 0, TIME + i);
+		writer.close();
+
+		List<File> segments = segments(dir);
+		assertEquals(2, segments.size());
+		TraceQuery.Result result = query("key-1999", segments);
+		assertEquals(1, result.getMatched());
+		assertTrue(result.getRecords() < 2000);
+	}
+
+	@Test
+	public void stopsAtAnUnknownType() throws Exception {
+		File dir = folder.newFolder();
+		TraceJournalWriter writer = new TraceJournalWriter(dir, "server1", REGION, 0, 100);
+		for(int i=0; i < 10; ++i) writer.write(TraceCacheListener.Op.CREATE, "key-" + i, null, 0, TIME + i);
+		writer.close();
+
+		List<File> segments = segments(dir);
+		assertEquals(1, segments.size());
+		// the type byte of the fourth event
+		int offset = TraceJournal.HEADER_SIZE + 3 * (TraceJournal.EVENT_OVERHEAD + "key-0".length());
+		try (RandomAccessFile raf = new RandomAccessFile(segments.get(0), "rw")){
+			raf.seek(offset);
+			assertEquals(TraceJournal.type(TraceCacheListener.Op.CREATE), raf.readByte());
+			raf.seek(offset);
+			raf.writeByte(TraceJournal.MEMBER - 1);
+		}
+
+		TraceQuery.Result result = query(null, segments);
+		assertEquals(3, result.getRecords());
+	}
+
+	private static TraceQuery.Result query(String key, List<File> segments) throws Exception {
+		return new TraceQuery(key, REGION, Long.MIN_VALUE, Long.MAX_VALUE, false).run(segments, 2);
+	}
+
+	private static List<File> segments(File dir){
+		File []result = dir.listFiles(new FilenameFilter(){
+			@Override
+			public boolean accept(File d, String name) {
+				return name.endsWith(TraceJournal.SUFFIX);
+			}
+		});
+		Arrays.sort(result);
+		return Arrays.asList(result);
+	}
+}
@@ -0,0 +1,101 @@
+package io.pivotal.gemfire.extensions.tools.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.pivotal.gemfire.extensions.tools.HotKeyReport;
+import io.pivotal.gemfire.extensions.tools.HotKeys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Feeds a HotKeySketch known key counts and checks the keys it keeps.
+ */
+public class HotKeySketchTest {
+
+	@Test
+	public void keepsAtMostCapacityKeysAndTheHotOnes() {
+		HotKeySketch sketch = new HotKeySketch(16);
+		for(int i=0; i < 20000; ++i){
+			sketch.add("cold-" + i);
+			if (i % 10 == 0) sketch.add("hot-" + (i / 10) % 4);
+		}
+
+		HotKeyReport report = sketch.report("server1", "/region");
+		assertEquals(22000, report.getEvents());
+		assertTrue("keys: " + report.getKeys().size(), report.getKeys().size() <= 16);
+		for(int i=0; i < 4; ++i){
+			HotKeyReport.HotKey key = report.getKeys().get(i);
+			assertTrue(key.getKey(), key.getKey().startsWith("hot-"));
+			assertTrue(key.getKey() + " " + key.getCount(), key.getCount() >= 500);
+		}
+	}
+
+	@Test
+	public void evictsOnlyKeysWithLowerCounts() {
+		HotKeySketch sketch = new HotKeySketch(8);
+		for(int i=0; i < 8; ++i) add(sketch, "hot-" + i, 100 + i);
+
+		// no higher than any key kept, so it does not join
+		add(sketch, "warm", 100);
+		Set<String> keys = keys(sketch);
+		assertEquals(8, keys.size());
+		assertFalse(keys.contains("warm"));
+		assertEquals(100, sketch.report("server1", "/region").getThreshold());
+
+		// higher than the lowest key kept, which makes room for it
+		add(sketch, "warm", 1);
+		keys = keys(sketch);
+		assertEquals(8, keys.size());
+		assertTrue(keys.contains("warm"));
+		assertFalse(keys.contains("hot-0"));
+		for(int i=1; i < 8; ++i) assertTrue(keys.contains("hot-" + i));
+
+		// a key that was evicted joins again only once it is counted higher than the threshold
+		add(sketch, "hot-0", 1);
+		assertFalse(keys(sketch).contains("hot-0"));
+		add(sketch, "hot-0", 1);
+		keys = keys(sketch);
+		assertEquals(8, keys.size());
+		assertTrue(keys.contains("hot-0"));
+		// in place of warm or hot-1, both at the threshold
+		assertTrue(keys.contains("warm") != keys.contains("hot-1"));
+		for(int i=2; i < 8; ++i) assertTrue(keys.contains("hot-" + i));
+	}
+
+	@Test
+	public void mergeKeepsTheHighestCountOfEachKey() {
+		HotKeyReport a = report("server1", new HotKeyReport.HotKey("k1", 10), new HotKeyReport.HotKey("k2", 50), new HotKeyReport.HotKey("k3", 5));
+		HotKeyReport b = report("server2", new HotKeyReport.HotKey("k1", 30), new HotKeyReport.HotKey("k2", 20), new HotKeyReport.HotKey("k4", 40));
+
+		List<HotKeyReport.HotKey> merged = HotKeys.merge(Arrays.asList(a, b));
+		assertEquals(4, merged.size());
+		String []order = { "k2", "k4", "k1", "k3" };
+		long []counts = { 50, 40, 30, 5 };
+		for(int i=0; i < order.length; ++i){
+			assertEquals(order[i], merged.get(i).getKey());
+			assertEquals(counts[i], merged.get(i).getCount());
+		}
+	}
+
+	private static void add(HotKeySketch sketch, String key, int times){
+		for(int i=0; i < times; ++i) sketch.add(key);
+	}
+
+	private static Set<String> keys(HotKeySketch sketch){
+		Set<String> result = new HashSet<String>();
+		for(HotKeyReport.HotKey key : sketch.report("server1", "/region").getKeys()) result.add(key.getKey());
+		return result;
+	}
+
+	private static HotKeyReport report(String memberName, HotKeyReport.HotKey... keys){
+		return new HotKeyReport(memberName, "/region", 100, 1, 0, new ArrayList<HotKeyReport.HotKey>(Arrays.asList(keys)));
+	}
+}
@@ -0,0 +1,106 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.GemTouch;
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.server.Touch;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.execute.FunctionService;
+
+/**
+ * Compares the throughput of the transactional and compare and swap touch modes while other
+ * threads are updating the same entries.
+ *
+ * Reports the time taken by each touch, the number of writer updates completed while it ran
+ * and the touch's final status message, which includes the number of conflicts.
+ *
+ * Runs in a stand alone peer, no locator required.  Usage: CompareAndSwapBenchmark [writers]
+ */
+public class CompareAndSwapBenchmark {
+	private static int ENTRY_COUNT = 200000;
+	private static int PAYLOAD_SIZE = 256;
+	private static int RUNS = 3;
+
+	public static void main(String []args){
+		int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		Cache cache = null;
+		try {
+			cache = new CacheFactory().set("mcast-port", "0").set("locators", "").set("log-level", "warn").create();
+			FunctionService.registerFunction(new Touch());
+
+			Region<Object,Object> partitioned = cache.createRegionFactory(RegionShortcut.PARTITION).create("Partitioned");
+			Region<Object,Object> replicated = cache.createRegionFactory(RegionShortcut.REPLICATE).create("Replicated");
+			for(int i=0; i < ENTRY_COUNT; ++i){
+				partitioned.put(Integer.valueOf(i), new Value(i));
+				replicated.put(Integer.valueOf(i), new Value(i));
+			}
+
+			System.out.println(writers + " concurrent writers");
+			System.out.println("region\tmode\tms\ttouches/s\twriter updates/s\tresult");
+			for(Region<Object,Object> region : new Region[]{partitioned, replicated}){
+				for(int run=0; run < RUNS; ++run){
+					touch(region, TouchAllArgs.Mode.TRANSACTIONAL, writers);
+					touch(region, TouchAllArgs.Mode.COMPARE_AND_SWAP, writers);
+				}
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (cache != null) cache.close();
+		}
+	}
+
+	private static void touch(final Region<Object,Object> region, TouchAllArgs.Mode mode, int writers) throws InterruptedException {
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong updates = new AtomicLong(0);
+		Thread []threads = new Thread[writers];
+		for(int i=0; i < writers; ++i){
+			final Random random = new Random(i);
+			threads[i] = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					while(running.get()){
+						int key = random.nextInt(ENTRY_COUNT);
+						region.put(Integer.valueOf(key), new Value(key));
+						updates.incrementAndGet();
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		TouchAllArgs touchArgs = new TouchAllArgs();
+		touchArgs.setMode(mode);
+
+		long start = System.currentTimeMillis();
+		List<?> results = (List<?>) FunctionService.onRegion(region).setArguments(touchArgs).execute(GemTouch.NAME).getResult();
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		long updated = updates.get();
+
+		running.set(false);
+		for(Thread t : threads) t.join();
+
+		System.out.println(region.getName() + "\t" + mode + "\t" + elapsed + "\t" + (ENTRY_COUNT * 1000l / elapsed) + "\t" + (updated * 1000l / elapsed) + "\t" + results.get(results.size() - 1));
+	}
+
+	public static class Value implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private byte []payload;
+
+		public Value(int id){
+			this.id = id;
+			this.payload = new byte[PAYLOAD_SIZE];
+		}
+	}
+}
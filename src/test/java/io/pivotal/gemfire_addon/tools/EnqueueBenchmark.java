@@ -0,0 +1,252 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.GemTouch;
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.server.Touch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.Statistics;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.DiskStoreFactory;
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.asyncqueue.AsyncEvent;
+import org.apache.geode.cache.asyncqueue.AsyncEventListener;
+import org.apache.geode.cache.execute.Function;
+import org.apache.geode.cache.execute.FunctionContext;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+import org.apache.geode.distributed.DistributedSystem;
+import org.apache.geode.internal.cache.DiskStoreImpl;
+
+/**
+ * Compares what the put based touch modes and the --enqueue touch cost the cluster for each
+ * entry touched: bytes sent between members, bytes written to disk, cache listener calls
+ * and events delivered to the queue.
+ *
+ * Two members, this one and a second JVM started by the benchmark, host a persistent partitioned
+ * region with one redundant copy feeding a parallel async event queue and a persistent replicated
+ * region feeding a serial async event queue.  The queues stand in for gateway senders so no
+ * second site is needed.  They are persistent, as they must be for a persistent partitioned
+ * region, and use their own disk store so region and queue disk bytes are reported separately.
+ * Each touch is followed by a wait for its events to be delivered and the counters are then
+ * summed over both members.
+ *
+ * Usage: EnqueueBenchmark [locator-port]
+ */
+public class EnqueueBenchmark {
+	private static int ENTRY_COUNT = 100000;
+	private static int PAYLOAD_SIZE = 512;
+	private static int RUNS = 3;
+	private static long DELIVERY_TIMEOUT_MS = 60000l;
+	private static String PEER = "peer";
+	private static int STATS = 5;
+	private static String STATS_FUNCTION = "EnqueueBenchmarkStats";
+	private static String QUEUE_DISK_STORE = "queues";
+
+	private static AtomicLong listenerCalls = new AtomicLong();
+	private static AtomicLong delivered = new AtomicLong();
+
+	public static void main(String []args){
+		if (args.length > 0 && args[0].equals(PEER)){
+			peer(Integer.parseInt(args[1]), args[2]);
+			return;  // RETURN
+		}
+
+		int locatorPort = args.length > 0 ? Integer.parseInt(args[0]) : 10999;
+		Cache cache = null;
+		Process peer = null;
+		try {
+			cache = createCache("benchmark", locatorPort, true, dir("benchmark"));
+
+			peer = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-cp", System.getProperty("java.class.path"),
+					EnqueueBenchmark.class.getName(), PEER, Integer.toString(locatorPort), dir(PEER).getPath()).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(peer.getInputStream()));
+			String line = reader.readLine();
+			for(; line != null && !line.equals("ready"); line = reader.readLine()) System.out.println(PEER + ": " + line);
+			if (line == null) throw new RuntimeException("the peer failed to start");
+
+			Region<Object,Object> data = createRegions(cache)[0];
+			Region<Object,Object> ref = cache.getRegion("Ref");
+			for(int i=0; i < ENTRY_COUNT; ++i){
+				data.put(Integer.valueOf(i), new Value(i));
+				ref.put(Integer.valueOf(i), new Value(i));
+			}
+			awaitDelivery(2l * ENTRY_COUNT, new long[STATS]);
+
+			System.out.println("region\tmode\tms\tsent bytes/entry\tregion disk bytes/entry\tqueue disk bytes/entry\tlistener calls\tevents delivered");
+			int job = 0;
+			for(int run=0; run < RUNS; ++run){
+				for(Region<Object,Object> region : new Region[]{data, ref}){
+					for(TouchAllArgs.Mode mode : TouchAllArgs.Mode.values()) touch(region, mode, ++job);
+				}
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (peer != null) peer.destroy();
+			if (cache != null) cache.close();
+		}
+	}
+
+	private static void touch(Region<Object,Object> region, TouchAllArgs.Mode mode, int job) throws InterruptedException {
+		TouchAllArgs touchArgs = new TouchAllArgs();
+		touchArgs.setMode(mode);
+		touchArgs.setSerializedValues(true);
+		touchArgs.setJobName("benchmark" + job);
+
+		long []before = stats();
+		long start = System.currentTimeMillis();
+		if (region.getAttributes().getDataPolicy().withPartitioning()){
+			FunctionService.onRegion(region).setArguments(touchArgs).execute(GemTouch.NAME).getResult();
+		} else {
+			// as gemtouch does it, every replica is asked and they share the work
+			touchArgs.setRegionName(region.getFullPath());
+			FunctionService.onMembers().setArguments(touchArgs).execute(GemTouch.NAME).getResult();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		long []after = awaitDelivery(ENTRY_COUNT, before);
+
+		System.out.println(region.getName() + "\t" + mode + "\t" + elapsed + "\t" + (after[0] - before[0]) / ENTRY_COUNT + "\t" + (after[1] - before[1]) / ENTRY_COUNT
+				+ "\t" + (after[2] - before[2]) / ENTRY_COUNT + "\t" + (after[3] - before[3]) + "\t" + (after[4] - before[4]));
+	}
+
+	// waits until the queues have delivered the given number of events since before was taken
+	private static long []awaitDelivery(long events, long []before) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+		long []result = stats();
+		while(result[4] - before[4] < events && System.currentTimeMillis() < deadline){
+			Thread.sleep(100);
+			result = stats();
+		}
+		return result;
+	}
+
+	/*
+	 * sent bytes, region and queue disk bytes written, listener calls and events delivered, summed
+	 * over the members
+	 */
+	@SuppressWarnings("unchecked")
+	private static long []stats(){
+		long []result = new long[STATS];
+		for(long []member : (List<long []>) FunctionService.onMembers().execute(STATS_FUNCTION).getResult()){
+			for(int i=0; i < result.length; ++i) result[i] += member[i];
+		}
+		return result;
+	}
+
+	private static void peer(int locatorPort, String dir){
+		Cache cache = createCache(PEER, locatorPort, false, new File(dir));
+		createRegions(cache);
+		System.out.println("ready");
+		try {
+			// runs until the benchmark destroys it
+			Thread.sleep(Long.MAX_VALUE);
+		} catch(InterruptedException x){
+			cache.close();
+		}
+	}
+
+	private static Cache createCache(String name, int locatorPort, boolean startLocator, File dir){
+		// or the transactional touch can not be used on persistent regions
+		System.setProperty("gemfire.ALLOW_PERSISTENT_TRANSACTIONS", "true");
+		CacheFactory factory = new CacheFactory().set("name", name).set("mcast-port", "0").set("locators", "localhost[" + locatorPort + "]").set("log-level", "warn");
+		if (startLocator) factory.set("start-locator", "localhost[" + locatorPort + "]").set("jmx-manager", "false");
+		Cache cache = factory.create();
+		cache.createDiskStoreFactory().setDiskDirs(new File[]{dir}).create(DiskStoreFactory.DEFAULT_DISK_STORE_NAME);
+		cache.createDiskStoreFactory().setDiskDirs(new File[]{dir}).create(QUEUE_DISK_STORE);
+		FunctionService.registerFunction(new Touch());
+		FunctionService.registerFunction(new Stats());
+		return cache;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Region<Object,Object> []createRegions(Cache cache){
+		AsyncEventListener listener = new AsyncEventListener(){
+			@Override
+			public boolean processEvents(List<AsyncEvent> events) {
+				delivered.addAndGet(events.size());
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		CacheListenerAdapter<Object,Object> counter = new CacheListenerAdapter<Object,Object>(){
+			@Override
+			public void afterUpdate(EntryEvent<Object,Object> event) {
+				listenerCalls.incrementAndGet();
+			}
+		};
+
+		cache.createAsyncEventQueueFactory().setParallel(true).setPersistent(true).setDiskStoreName(QUEUE_DISK_STORE).setBatchSize(1000).create("dataQueue", listener);
+		cache.createAsyncEventQueueFactory().setParallel(false).setPersistent(true).setDiskStoreName(QUEUE_DISK_STORE).setBatchSize(1000).create("refQueue", listener);
+		return new Region[]{
+				cache.createRegionFactory(RegionShortcut.PARTITION_REDUNDANT_PERSISTENT).addAsyncEventQueueId("dataQueue").addCacheListener(counter).create("Data"),
+				cache.createRegionFactory(RegionShortcut.REPLICATE_PERSISTENT).addAsyncEventQueueId("refQueue").addCacheListener(counter).create("Ref")
+		};
+	}
+
+	private static File dir(String name){
+		File dir = new File(System.getProperty("java.io.tmpdir"), "EnqueueBenchmark-" + name);
+		dir.mkdirs();
+		for(File f : dir.listFiles()) f.delete();
+		return dir;
+	}
+
+	public static class Stats implements Function {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void execute(FunctionContext ctx) {
+			Cache cache = CacheFactory.getAnyInstance();
+			DistributedSystem system = cache.getDistributedSystem();
+			long sent = 0;
+			for(Statistics stats : system.findStatisticsByType(system.findType("DistributionStats"))) sent += stats.getLong("sentBytes");
+			long regionWritten = ((DiskStoreImpl) cache.findDiskStore(DiskStoreFactory.DEFAULT_DISK_STORE_NAME)).getStats().getBytesWritten();
+			long queueWritten = ((DiskStoreImpl) cache.findDiskStore(QUEUE_DISK_STORE)).getStats().getBytesWritten();
+			ctx.getResultSender().lastResult(new long[]{sent, regionWritten, queueWritten, listenerCalls.get(), delivered.get()});
+		}
+
+		@Override
+		public String getId() {
+			return STATS_FUNCTION;
+		}
+
+		@Override
+		public boolean hasResult() {
+			return true;
+		}
+
+		@Override
+		public boolean isHA() {
+			return false;
+		}
+
+		@Override
+		public boolean optimizeForWrite() {
+			return false;
+		}
+	}
+
+	public static class Value implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private byte []payload;
+
+		public Value(int id){
+			this.id = id;
+			this.payload = new byte[PAYLOAD_SIZE];
+		}
+	}
+}
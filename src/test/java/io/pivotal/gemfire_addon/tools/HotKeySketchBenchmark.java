@@ -0,0 +1,106 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.HotKeyReport;
+import io.pivotal.gemfire.extensions.tools.server.HotKeySketch;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures what HotKeySketch.add costs per event and how well it finds the keys written most often.
+ *
+ * A number of threads add events for String keys drawn from a Zipf distribution over a large key
+ * space, so that a few keys are hot and most are written once or twice, as they would be by the
+ * threads delivering events to a HotKeyListener.  The keys are generated before timing starts.
+ * The true count of every key is kept separately, and the top keys reported by the sketch are
+ * printed next to their true counts and ranks.  The time per event is given both as elapsed time
+ * over all events and as processor time, elapsed time multiplied by the processors in use.  The
+ * first runs include computing the hash code of each String key and compiling add.
+ *
+ * No cluster is needed.  Usage: HotKeySketchBenchmark [threads] [events-per-thread] [keys] [capacity]
+ */
+public class HotKeySketchBenchmark {
+	private static double ZIPF_EXPONENT = 1.1d;
+	private static int TOP = 20;
+	private static int RUNS = 5;
+
+	public static void main(String []args){
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int events = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		final int keyCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000000;
+		int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		try {
+			String []keys = new String[keyCount];
+			for(int i=0; i < keyCount; ++i) keys[i] = "key-" + i;
+			double []cumulative = zipf(keyCount);
+
+			final int [][]draws = new int[threads][events];
+			for(int t=0; t < threads; ++t){
+				Random random = new Random(t);
+				for(int i=0; i < events; ++i) draws[t][i] = draw(cumulative, random.nextDouble());
+			}
+
+			System.out.println(threads + " threads, " + events + " events each, " + keyCount + " keys, capacity " + capacity + ", "
+					+ HotKeySketch.counterBytes() / 1024 + "KB of counters");
+			HotKeySketch sketch = null;
+			for(int run=0; run < RUNS; ++run){
+				sketch = new HotKeySketch(capacity);
+				long elapsed = time(sketch, keys, draws);
+				System.out.println("run " + run + ": " + elapsed / 1000000l + "ms, " + (double) elapsed / ((long) threads * events) + "ns per event, "
+						+ (double) elapsed * Math.min(threads, Runtime.getRuntime().availableProcessors()) / ((long) threads * events) + "ns per event per processor busy");
+			}
+
+			AtomicLongArray exact = new AtomicLongArray(keyCount);
+			for(int t=0; t < threads; ++t) for(int i=0; i < events; ++i) exact.incrementAndGet(draws[t][i]);
+
+			HotKeyReport report = sketch.report("benchmark", "/Hot");
+			System.out.println("counts may be over by " + report.getError() + ", keys not kept were written at most " + report.getThreshold() + " times");
+			System.out.println("rank\tkey\tcount\ttrue count\ttrue rank");
+			for(int i=0; i < TOP && i < report.getKeys().size(); ++i){
+				HotKeyReport.HotKey key = report.getKeys().get(i);
+				int index = Integer.parseInt(key.getKey().substring("key-".length()));
+				// keys are drawn with falling probability, so the index is the expected rank
+				System.out.println((i + 1) + "\t" + key.getKey() + "\t" + key.getCount() + "\t" + exact.get(index) + "\t" + (index + 1));
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		}
+	}
+
+	private static long time(final HotKeySketch sketch, final String []keys, final int [][]draws) throws InterruptedException {
+		Thread []workers = new Thread[draws.length];
+		for(int t=0; t < draws.length; ++t){
+			final int []mine = draws[t];
+			workers[t] = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					for(int i=0; i < mine.length; ++i) sketch.add(keys[mine[i]]);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for(Thread t : workers) t.start();
+		for(Thread t : workers) t.join();
+		return System.nanoTime() - start;
+	}
+
+	private static double []zipf(int n){
+		double []cumulative = new double[n];
+		double total = 0;
+		for(int i=0; i < n; ++i){
+			total += 1.0d / Math.pow(i + 1, ZIPF_EXPONENT);
+			cumulative[i] = total;
+		}
+		for(int i=0; i < n; ++i) cumulative[i] /= total;
+		return cumulative;
+	}
+
+	private static int draw(double []cumulative, double u){
+		int lo = 0, hi = cumulative.length - 1;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] < u) lo = mid + 1; else hi = mid;
+		}
+		return lo;
+	}
+}
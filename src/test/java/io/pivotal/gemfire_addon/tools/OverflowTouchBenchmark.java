@@ -0,0 +1,140 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.GemTouch;
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.server.Touch;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.EvictionAction;
+import org.apache.geode.cache.EvictionAttributes;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.DiskStoreImpl;
+import org.apache.geode.internal.cache.DiskStoreStats;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.RegionEntry;
+
+/**
+ * Compares the default Touch path (get, copy, put), the --serialized-values path and the
+ * --overflow-aware path on a partitioned region that can hold only a tenth of its entries in
+ * memory.
+ *
+ * Before each run the region is reloaded and an application thread starts reading a "hot" set
+ * of entries, which it keeps doing throughout the touch.  Reports the elapsed time, the disk
+ * reads made during the touch and their throughput, how many of the application's reads had to
+ * go to disk and how much of the hot set is in memory when the touch finishes.
+ *
+ * Runs in a stand alone peer, no locator required.
+ */
+public class OverflowTouchBenchmark {
+	private static int ENTRY_COUNT = 200000;
+	private static int IN_MEMORY = 20000;
+	private static int HOT_COUNT = 10000;
+	private static int PAYLOAD_SIZE = 1024;
+	private static int RUNS = 2;
+	private static String DISK_STORE = "overflow";
+
+	public static void main(String []args){
+		Cache cache = null;
+		try {
+			File dir = new File(System.getProperty("java.io.tmpdir"), "OverflowTouchBenchmark");
+			dir.mkdirs();
+			for(File f : dir.listFiles()) f.delete();
+
+			cache = new CacheFactory().set("mcast-port", "0").set("locators", "").set("log-level", "warn").set("enable-time-statistics", "true").create();
+			FunctionService.registerFunction(new Touch());
+			cache.createDiskStoreFactory().setDiskDirs(new File[]{dir}).setMaxOplogSize(64).create(DISK_STORE);
+			DiskStoreStats stats = ((DiskStoreImpl) cache.findDiskStore(DISK_STORE)).getStats();
+
+			System.out.println("mode\tms\tdisk reads\tread MB\tread MB/s\tapp reads\tapp disk reads\thot in memory");
+			for(int run=0; run < RUNS; ++run){
+				for(String mode : new String[]{"get/put", "serialized", "overflow-aware"}){
+					final Region<Object,Object> region = load(cache);
+
+					final AtomicBoolean running = new AtomicBoolean(true);
+					final AtomicLong appReads = new AtomicLong();
+					final AtomicLong appMisses = new AtomicLong();
+					Thread app = new Thread(new Runnable(){
+						@Override
+						public void run() {
+							while(running.get()){
+								Integer key = Integer.valueOf(ThreadLocalRandom.current().nextInt(HOT_COUNT));
+								if (!inMemory(region, key)) appMisses.incrementAndGet();
+								region.get(key);
+								appReads.incrementAndGet();
+							}
+						}
+					});
+					app.start();
+
+					long reads = stats.getReads();
+					long bytesRead = stats.getBytesRead();
+					long readNanos = stats.getReadTime();
+					long start = System.currentTimeMillis();
+					touch(region, mode);
+					long elapsed = System.currentTimeMillis() - start;
+					reads = stats.getReads() - reads;
+					bytesRead = stats.getBytesRead() - bytesRead;
+					readNanos = stats.getReadTime() - readNanos;
+
+					running.set(false);
+					app.join();
+
+					int hot = 0;
+					for(int i=0; i < HOT_COUNT; ++i) if (inMemory(region, Integer.valueOf(i))) ++hot;
+
+					double mb = bytesRead / (1024d * 1024d);
+					System.out.println(String.format("%s\t%d\t%d\t%.1f\t%.1f\t%d\t%d\t%d/%d", mode, elapsed, reads, mb, readNanos == 0 ? 0d : mb * 1e9 / readNanos,
+							appReads.get(), appMisses.get(), hot, HOT_COUNT));
+					region.destroyRegion();
+				}
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (cache != null) cache.close();
+		}
+	}
+
+	private static Region<Object,Object> load(Cache cache){
+		Region<Object,Object> region = cache.createRegionFactory(RegionShortcut.PARTITION_OVERFLOW).setDiskStoreName(DISK_STORE)
+				.setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(IN_MEMORY, EvictionAction.OVERFLOW_TO_DISK)).create("Overflow");
+		for(int i=0; i < ENTRY_COUNT; ++i) region.put(Integer.valueOf(i), new Value(i));
+		for(int i=0; i < HOT_COUNT; ++i) region.get(Integer.valueOf(i));
+		return region;
+	}
+
+	private static void touch(Region<Object,Object> region, String mode){
+		TouchAllArgs touchArgs = new TouchAllArgs();
+		touchArgs.setSerializedValues(mode.equals("serialized"));
+		touchArgs.setOverflowAware(mode.equals("overflow-aware"));
+		FunctionService.onRegion(region).setArguments(touchArgs).execute(GemTouch.NAME).getResult();
+	}
+
+	private static boolean inMemory(Region<Object,Object> region, Integer key){
+		BucketRegion bucket = ((PartitionedRegion) region).getDataStore().getLocalBucketById(((PartitionedRegion) region).getKeyInfo(key).getBucketId());
+		RegionEntry entry = bucket.getRegionEntry(key);
+		return entry != null && !entry.isValueNull();
+	}
+
+	public static class Value implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private byte []payload;
+
+		public Value(int id){
+			this.id = id;
+			this.payload = new byte[PAYLOAD_SIZE];
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.GemTouch;
+import io.pivotal.gemfire.extensions.tools.TouchAllArgs;
+import io.pivotal.gemfire.extensions.tools.server.Touch;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.execute.FunctionService;
+import org.apache.geode.pdx.PdxReader;
+import org.apache.geode.pdx.PdxSerializable;
+import org.apache.geode.pdx.PdxWriter;
+
+/**
+ * Compares the default Touch path (get, copy, put) with the --serialized-values path
+ * for java serialized, PDX and off-heap values.
+ *
+ * Reports elapsed time and the bytes allocated by all threads during the touch.
+ *
+ * Runs in a stand alone peer, no locator required.
+ */
+public class SerializedTouchBenchmark {
+	private static int ENTRY_COUNT = 100000;
+	private static int PAYLOAD_SIZE = 1024;
+	private static int RUNS = 3;
+
+	private static com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String []args){
+		Cache cache = null;
+		try {
+			cache = new CacheFactory().set("mcast-port", "0").set("locators", "").set("log-level", "warn").set("off-heap-memory-size", "512m").create();
+			FunctionService.registerFunction(new Touch());
+
+			Region<Object,Object> javaRegion = cache.createRegionFactory(RegionShortcut.PARTITION).create("JavaSerialized");
+			Region<Object,Object> pdxRegion = cache.createRegionFactory(RegionShortcut.PARTITION).create("Pdx");
+			Region<Object,Object> offHeapRegion = cache.createRegionFactory(RegionShortcut.PARTITION).setOffHeap(true).create("OffHeap");
+			for(int i=0; i < ENTRY_COUNT; ++i){
+				javaRegion.put(Integer.valueOf(i), new JavaValue(i));
+				pdxRegion.put(Integer.valueOf(i), new PdxValue(i));
+				offHeapRegion.put(Integer.valueOf(i), new JavaValue(i));
+			}
+
+			System.out.println("region\tmode\tms\tallocated MB");
+			for(Region<Object,Object> region : new Region[]{javaRegion, pdxRegion, offHeapRegion}){
+				for(int run=0; run < RUNS; ++run){
+					touch(region, false);
+					touch(region, true);
+				}
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (cache != null) cache.close();
+		}
+	}
+
+	private static void touch(Region<Object,Object> region, boolean serializedValues){
+		TouchAllArgs touchArgs = new TouchAllArgs();
+		touchArgs.setSerializedValues(serializedValues);
+
+		long allocatedBefore = allocatedBytes();
+		long start = System.currentTimeMillis();
+		FunctionService.onRegion(region).setArguments(touchArgs).execute(GemTouch.NAME).getResult();
+		long elapsed = System.currentTimeMillis() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+
+		System.out.println(region.getName() + "\t" + (serializedValues ? "serialized" : "get/put") + "\t" + elapsed + "\t" + (allocated / (1024 * 1024)));
+	}
+
+	private static long allocatedBytes(){
+		long result = 0;
+		long []ids = threads.getAllThreadIds();
+		for(long allocated : threads.getThreadAllocatedBytes(ids)){
+			if (allocated > 0) result += allocated;
+		}
+		return result;
+	}
+
+	public static class JavaValue implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int id;
+		private String name;
+		private byte []payload;
+
+		public JavaValue(int id){
+			this.id = id;
+			this.name = "value " + id;
+			this.payload = new byte[PAYLOAD_SIZE];
+		}
+	}
+
+	public static class PdxValue implements PdxSerializable {
+		private int id;
+		private String name;
+		private byte []payload;
+
+		public PdxValue(){
+		}
+
+		public PdxValue(int id){
+			this.id = id;
+			this.name = "value " + id;
+			this.payload = new byte[PAYLOAD_SIZE];
+		}
+
+		@Override
+		public void toData(PdxWriter writer) {
+			writer.writeInt("id", id).writeString("name", name).writeByteArray("payload", payload);
+		}
+
+		@Override
+		public void fromData(PdxReader reader) {
+			id = reader.readInt("id");
+			name = reader.readString("name");
+			payload = reader.readByteArray("payload");
+		}
+	}
+}
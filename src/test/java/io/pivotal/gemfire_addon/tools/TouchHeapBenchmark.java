@@ -0,0 +1,95 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.server.KeyCursor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+
+/**
+ * Compares the heap held while walking the keys of a partitioned region using
+ * keySet().toArray() (the old Touch implementation) with the heap held by a KeyCursor
+ * walking one bucket at a time.
+ *
+ * The retained heap is sampled half way through the walk, after a full gc, so
+ * only objects that are still reachable are counted.
+ *
+ * Runs in a stand alone peer, no locator required.
+ */
+public class TouchHeapBenchmark {
+	private static int BATCHSIZE = 100;
+	private static int []ENTRY_COUNTS = {250000, 500000, 1000000, 2000000};
+
+	private static MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	public static void main(String []args){
+		Cache cache = null;
+		try {
+			cache = new CacheFactory().set("mcast-port", "0").set("locators", "").set("log-level", "warn").create();
+
+			System.out.println("entries\ttoArray retained bytes\tcursor retained bytes");
+			for(int entryCount : ENTRY_COUNTS){
+				Region<Object,Object> region = cache.createRegionFactory(RegionShortcut.PARTITION).create("Test" + entryCount);
+				for(int i=0; i < entryCount; ++i){
+					region.put(Integer.valueOf(i), Integer.valueOf(i));
+				}
+
+				long cursorBytes = walkWithCursor(region);
+				long arrayBytes = walkWithArray(region);
+				System.out.println(entryCount + "\t" + arrayBytes + "\t" + cursorBytes);
+
+				region.destroyRegion();
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (cache != null) cache.close();
+		}
+	}
+
+	private static long walkWithArray(Region<Object,Object> region){
+		long baseline = usedHeap();
+		long retained = 0;
+
+		Object []keys = region.keySet().toArray();
+		int half = keys.length / 2;
+		for(int i=0; i < keys.length; i += BATCHSIZE){
+			if (i <= half && half < i + BATCHSIZE) retained = usedHeap() - baseline;
+		}
+
+		return retained;
+	}
+
+	private static long walkWithCursor(Region<Object,Object> region){
+		PartitionedRegion pr = (PartitionedRegion) region;
+		Object []batch = new Object[BATCHSIZE];
+		long baseline = usedHeap();
+		long retained = 0;
+
+		int half = region.size() / 2;
+		int walked = 0;
+		for(Integer bucketId : pr.getDataStore().getAllLocalPrimaryBucketIds()){
+			BucketRegion bucket = pr.getDataStore().getLocalBucketById(bucketId);
+			KeyCursor cursor = new KeyCursor(bucket);
+			for(int count = cursor.next(batch); count > 0; count = cursor.next(batch)){
+				if (walked <= half && half < walked + count) retained = usedHeap() - baseline;
+				walked += count;
+			}
+		}
+
+		return retained;
+	}
+
+	private static long usedHeap(){
+		// a couple of passes so that garbage from the load phase is really gone
+		System.gc();
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,93 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.TraceJournal;
+import io.pivotal.gemfire.extensions.tools.TraceQuery;
+import io.pivotal.gemfire.extensions.tools.server.TraceCacheListener;
+import io.pivotal.gemfire.extensions.tools.server.TraceJournalWriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how fast trace journals are written and how fast TraceQuery reads them.
+ *
+ * Each of a number of simulated members writes the same number of events for one region to its
+ * own journal, from its own thread as the trace writer thread would, with String keys drawn from a
+ * fixed set.  The journals are then queried for all events, for one key and for a time range
+ * covering a tenth of the events.  Queries are run twice, the first run may be reading from disk,
+ * the second from the page cache.
+ *
+ * No cluster is needed.  Usage: TraceJournalBenchmark [members] [events-per-member] [threads]
+ */
+public class TraceJournalBenchmark {
+	private static int KEY_COUNT = 100000;
+	private static long SEGMENT_SIZE = 64l * 1024l * 1024l;
+	private static int RUNS = 2;
+	private static String REGION = "/Traced";
+
+	public static void main(String []args){
+		final int members = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int events = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		try {
+			final File dir = new File(System.getProperty("java.io.tmpdir"), "TraceJournalBenchmark");
+			dir.mkdirs();
+			for(File f : dir.listFiles()) f.delete();
+
+			// one timestamp per event, in ms, so the time range can be chosen exactly
+			final long start = System.currentTimeMillis() - events;
+			long writeStart = System.nanoTime();
+			Thread []writers = new Thread[members];
+			for(int m=0; m < members; ++m){
+				final String member = "member" + m;
+				writers[m] = new Thread(new Runnable(){
+					@Override
+					public void run() {
+						try {
+							TraceJournalWriter writer = new TraceJournalWriter(dir, member, REGION, SEGMENT_SIZE, Integer.MAX_VALUE);
+							for(int i=0; i < events; ++i){
+								writer.write(i % 10 == 0 ? TraceCacheListener.Op.CREATE : TraceCacheListener.Op.UPDATE, "key-" + (i % KEY_COUNT), null, 512, start + i);
+							}
+							writer.close();
+						} catch(Exception x){
+							x.printStackTrace(System.err);
+						}
+					}
+				});
+				writers[m].start();
+			}
+			for(Thread t : writers) t.join();
+			long writeNanos = System.nanoTime() - writeStart;
+
+			long bytes = 0;
+			List<File> segments = new ArrayList<File>();
+			for(File f : dir.listFiles()){
+				if (f.getName().endsWith(TraceJournal.SUFFIX)){
+					segments.add(f);
+					bytes += f.length();
+				}
+			}
+			System.out.println(members + " members wrote " + (long) members * events + " events in " + writeNanos / 1000000l + "ms, "
+					+ (long) members * events * 1000000000l / writeNanos + " events/s, " + segments.size() + " segments of " + SEGMENT_SIZE / 1024 / 1024 + "MB");
+
+			System.out.println("query\tthreads\tms\tevents scanned\tevents scanned/s\tmatched");
+			for(int run=0; run < RUNS; ++run){
+				query("all", new TraceQuery(null, null, Long.MIN_VALUE, Long.MAX_VALUE, true), segments, threads);
+				query("one key", new TraceQuery("key-4242", null, Long.MIN_VALUE, Long.MAX_VALUE, true), segments, threads);
+				query("one key, printed", new TraceQuery("key-4242", null, Long.MIN_VALUE, Long.MAX_VALUE, false), segments, threads);
+				query("last tenth", new TraceQuery(null, REGION, start + events - events / 10, Long.MAX_VALUE, true), segments, threads);
+				query("one key, 1 thread", new TraceQuery("key-4242", null, Long.MIN_VALUE, Long.MAX_VALUE, true), segments, 1);
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		}
+	}
+
+	private static void query(String name, TraceQuery query, List<File> segments, int threads) throws Exception {
+		long start = System.nanoTime();
+		TraceQuery.Result result = query.run(segments, threads);
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+		System.out.println(name + "\t" + threads + "\t" + elapsed / 1000000l + "\t" + result.getRecords() + "\t" + result.getRecords() * 1000000000l / elapsed + "\t" + result.getMatched());
+	}
+}
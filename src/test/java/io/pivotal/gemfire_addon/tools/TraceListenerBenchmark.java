@@ -0,0 +1,160 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.TraceArgs;
+import io.pivotal.gemfire.extensions.tools.server.TraceCacheListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.geode.LogWriter;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.CacheListener;
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+
+/**
+ * Measures what the trace listener adds to each put, as seen by the threads doing the puts.
+ *
+ * Puts are timed with no listener, with a listener that logs each event on the calling thread as
+ * TraceCacheListener used to, and with the buffered TraceCacheListener: dropping and blocking when
+ * full, blocking when full while writing to a journal (see TraceJournalWriter) in the temporary
+ * directory rather than the log, and blocking when full while tracing only one key and only a 1%
+ * sample of the keys.  The per event overhead is the time per put less the time per put without a
+ * listener.  For the buffered listener the time its writer thread then needs to empty the buffer,
+ * and the number of events dropped, are reported too.
+ *
+ * Runs in a stand alone peer, no locator required, which logs at info level to a file in the
+ * temporary directory.  Usage: TraceListenerBenchmark [writers] [buffer-size]
+ */
+public class TraceListenerBenchmark {
+	private static int PUT_COUNT = 400000;
+	private static int KEY_COUNT = 10000;
+	private static int RUNS = 3;
+
+	private static String NONE = "none";
+	private static String SYNCHRONOUS = "synchronous";
+	private static String JOURNAL = "journal";
+	private static String ONE_KEY = "one-key";
+	private static String SAMPLED = "sampled";
+	private static double SAMPLE_RATE = 0.01d;
+
+	public static void main(String []args){
+		int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int bufferSize = args.length > 1 ? Integer.parseInt(args[1]) : TraceArgs.DEFAULT_BUFFER_SIZE;
+		Cache cache = null;
+		try {
+			File log = new File(System.getProperty("java.io.tmpdir"), "TraceListenerBenchmark.log");
+			log.delete();
+			cache = new CacheFactory().set("mcast-port", "0").set("locators", "").set("log-level", "info").set("log-file", log.getPath()).create();
+			Region<Object,Object> region = cache.createRegionFactory(RegionShortcut.REPLICATE).create("Traced");
+
+			System.out.println(writers + " writers, buffer of " + bufferSize + " events, logging to " + log);
+			System.out.println("listener\tms\tns/put\toverhead ns/event\tdrain ms\ttraced\tdropped");
+			for(int run=0; run < RUNS; ++run){
+				long baseline = put(region, NONE, writers, bufferSize, 0l);
+				put(region, SYNCHRONOUS, writers, bufferSize, baseline);
+				put(region, TraceArgs.WhenFull.DROP.name(), writers, bufferSize, baseline);
+				put(region, TraceArgs.WhenFull.BLOCK.name(), writers, bufferSize, baseline);
+				put(region, JOURNAL, writers, bufferSize, baseline);
+				put(region, ONE_KEY, writers, bufferSize, baseline);
+				put(region, SAMPLED, writers, bufferSize, baseline);
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		} finally {
+			if (cache != null) cache.close();
+		}
+	}
+
+	/*
+	 * returns the ns per put
+	 */
+	private static long put(final Region<Object,Object> region, String listenerType, int writers, int bufferSize, long baseline) throws InterruptedException, IOException {
+		CacheListener<Object,Object> listener = null;
+		if (listenerType.equals(SYNCHRONOUS)){
+			listener = new SynchronousTraceListener(region.getFullPath());
+		} else if (!listenerType.equals(NONE)){
+			TraceArgs traceArgs = new TraceArgs();
+			traceArgs.setRegionName(region.getFullPath());
+			traceArgs.setBufferSize(bufferSize);
+			if (listenerType.equals(JOURNAL)){
+				traceArgs.setJournalDir(new File(System.getProperty("java.io.tmpdir"), "TraceListenerBenchmark-journal").getPath());
+				traceArgs.setWhenFull(TraceArgs.WhenFull.BLOCK);
+			} else if (listenerType.equals(ONE_KEY)){
+				traceArgs.setKeys(Arrays.asList("42"));
+				traceArgs.setWhenFull(TraceArgs.WhenFull.BLOCK);
+			} else if (listenerType.equals(SAMPLED)){
+				traceArgs.setSampleRate(SAMPLE_RATE);
+				traceArgs.setWhenFull(TraceArgs.WhenFull.BLOCK);
+			} else {
+				traceArgs.setWhenFull(TraceArgs.WhenFull.valueOf(listenerType));
+			}
+			listener = new TraceCacheListener(traceArgs);
+		}
+		if (listener != null) region.getAttributesMutator().addCacheListener(listener);
+
+		Thread []threads = new Thread[writers];
+		final int puts = PUT_COUNT / writers;
+		for(int i=0; i < writers; ++i){
+			final Random random = new Random(i);
+			threads[i] = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					for(int j=0; j < puts; ++j){
+						region.put(Integer.valueOf(random.nextInt(KEY_COUNT)), "value " + j);
+					}
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		for(Thread t : threads) t.start();
+		for(Thread t : threads) t.join();
+		long elapsed = System.nanoTime() - start;
+		long perPut = elapsed / puts;  // as seen by each writer
+
+		long drainMs = 0l;
+		String traced = "-", dropped = "-";
+		if (listener instanceof TraceCacheListener){
+			TraceCacheListener traceListener = (TraceCacheListener) listener;
+			long drainStart = System.nanoTime();
+			while(traceListener.getBacklog() > 0) Thread.sleep(1);
+			drainMs = (System.nanoTime() - drainStart) / 1000000l;
+			traced = Long.toString(traceListener.getTraced());
+			dropped = Long.toString(traceListener.getDropped());
+		}
+		if (listener != null) region.getAttributesMutator().removeCacheListener(listener);
+
+		System.out.println(listenerType + "\t" + elapsed / 1000000l + "\t" + perPut + "\t" + (listener == null ? "-" : Long.toString(perPut - baseline))
+				+ "\t" + (listener instanceof TraceCacheListener ? Long.toString(drainMs) : "-") + "\t" + traced + "\t" + dropped);
+		return perPut;
+	}
+
+	/*
+	 * what TraceCacheListener did before events were buffered: format and log on the calling thread
+	 */
+	private static class SynchronousTraceListener extends CacheListenerAdapter<Object,Object> {
+		private LogWriter log;
+		private String regionName;
+
+		SynchronousTraceListener(String regionName){
+			this.log = CacheFactory.getAnyInstance().getLogger();
+			this.regionName = regionName;
+		}
+
+		@Override
+		public void afterCreate(EntryEvent<Object,Object> event) {
+			log.info("TRACE: created key " + event.getKey().toString() + " in " + regionName);
+		}
+
+		@Override
+		public void afterUpdate(EntryEvent<Object,Object> event) {
+			log.info("TRACE: updated key " + event.getKey().toString() + " in " + regionName);
+		}
+	}
+}
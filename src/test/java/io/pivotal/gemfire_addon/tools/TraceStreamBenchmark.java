@@ -0,0 +1,83 @@
+package io.pivotal.gemfire_addon.tools;
+
+import io.pivotal.gemfire.extensions.tools.TraceChunk;
+import io.pivotal.gemfire.extensions.tools.TraceStreamCollector;
+import io.pivotal.gemfire.extensions.tools.server.TraceCacheListener;
+import io.pivotal.gemfire.extensions.tools.server.TraceStreamSink;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.geode.cache.execute.ResultSender;
+
+/**
+ * Measures how fast a member can batch and compress trace events for streaming, and how fast the
+ * client can decompress and write them, which bound the event rate a trace stream can keep up with.
+ *
+ * Events for String keys drawn from a fixed set are written to a TraceStreamSink, as its writer
+ * thread would, which sends its chunks to a ResultSender that keeps them.  The chunks are then
+ * given to a TraceStreamCollector writing to a stream that discards its output, as if they came
+ * from a number of members.  The compressed size of the events is reported too.
+ *
+ * No cluster is needed.  Usage: TraceStreamBenchmark [events] [members]
+ */
+public class TraceStreamBenchmark {
+	private static int KEY_COUNT = 100000;
+	private static int RUNS = 3;
+
+	public static void main(String []args){
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int members = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		try {
+			for(int run=0; run < RUNS; ++run){
+				final List<TraceChunk> chunks = new ArrayList<TraceChunk>();
+				ResultSender<Object> sender = new ResultSender<Object>(){
+					@Override
+					public void sendResult(Object result) {
+						chunks.add((TraceChunk) result);
+					}
+
+					@Override
+					public void lastResult(Object result) {
+					}
+
+					@Override
+					public void sendException(Throwable x) {
+					}
+				};
+
+				TraceStreamSink sink = new TraceStreamSink("member", "/Traced", sender);
+				long start = System.nanoTime();
+				long timestamp = System.currentTimeMillis();
+				for(int i=0; i < events; ++i){
+					sink.write(i % 10 == 0 ? TraceCacheListener.Op.CREATE : TraceCacheListener.Op.UPDATE, "key-" + (i % KEY_COUNT), null, 512, timestamp + i / 1000);
+				}
+				sink.close();
+				long sinkNanos = System.nanoTime() - start;
+
+				TraceStreamCollector collector = new TraceStreamCollector(new PrintWriter(new OutputStream(){
+					@Override
+					public void write(int b) {
+					}
+
+					@Override
+					public void write(byte []b, int off, int len) {
+					}
+				}));
+				start = System.nanoTime();
+				for(int i=0; i < chunks.size(); ++i) collector.addResult(null, chunks.get(i));
+				long collectorNanos = System.nanoTime() - start;
+
+				long bytes = 0;
+				for(TraceChunk chunk : chunks) bytes += chunk.getData().length;
+				System.out.println("run " + run + ": member sent " + events + " events in " + chunks.size() + " chunks, " + bytes / 1024 + "KB, "
+						+ (double) bytes / events + " bytes per event, " + (long) events * 1000000000l / sinkNanos + " events/s; client wrote "
+						+ (long) events * 1000000000l / collectorNanos + " events/s, " + (long) events * 1000000000l / collectorNanos / members + " events/s from each of " + members + " members");
+			}
+		} catch(Exception x){
+			x.printStackTrace(System.err);
+		}
+	}
+}